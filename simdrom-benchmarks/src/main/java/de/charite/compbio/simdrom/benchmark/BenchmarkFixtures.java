@@ -0,0 +1,104 @@
+package de.charite.compbio.simdrom.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * The bgzipped and tabix indexed VCF files and the indexed reference used by the benchmarks, generated by the
+ * {@link SyntheticVCFGenerator}. All files are written once into a temporary folder and are fully determined by a fixed
+ * seed, so every run of a benchmark sees the same input.
+ * <p>
+ * The sizes can be changed with the system properties <code>simdrom.benchmark.sites</code>,
+ * <code>simdrom.benchmark.genotypes</code> and <code>simdrom.benchmark.samples</code>.
+ *
+ * @author <a href="mailto:max.schubach@charite.de">Max Schubach</a>
+ *
+ */
+public final class BenchmarkFixtures {
+
+	private static final long SEED = 42L;
+
+	private static BenchmarkFixtures instance;
+
+	private final File folder;
+	private final int sites;
+	private final int genotypeRecords;
+	private final int samples;
+
+	private BenchmarkFixtures() throws IOException {
+		this.folder = Files.createTempDirectory("simdrom-benchmark").toFile();
+		this.folder.deleteOnExit();
+		this.sites = Integer.getInteger("simdrom.benchmark.sites", 200000);
+		this.genotypeRecords = Integer.getInteger("simdrom.benchmark.genotypes", 20000);
+		this.samples = Integer.getInteger("simdrom.benchmark.samples", 500);
+
+		SyntheticVCFGenerator generator = new SyntheticVCFGenerator(SEED);
+		generator.setInfoPayloadSize(100);
+		generator.setRecords(sites);
+		generator.writeVCF(getBackgroundVCF());
+		generator.setRecords(sites / 100);
+		generator.setClinicalSignificance(true);
+		generator.writeVCF(getMutationsVCF());
+		generator.setClinicalSignificance(false);
+		generator.setInfoPayloadSize(0);
+		generator.setRecords(genotypeRecords);
+		generator.setSamples(samples);
+		generator.writeVCF(getGenotypesVCF());
+		generator.writeReference(getReference());
+		// registered after the folder, so they are deleted before it
+		for (File file : folder.listFiles())
+			file.deleteOnExit();
+	}
+
+	/**
+	 * @return the fixtures of this JVM. They are generated on the first call.
+	 * @throws IOException
+	 *             if the files cannot be written
+	 */
+	public static synchronized BenchmarkFixtures get() throws IOException {
+		if (instance == null)
+			instance = new BenchmarkFixtures();
+		return instance;
+	}
+
+	/**
+	 * @return Sites VCF with <code>AF</code>, <code>AC</code> and <code>AN</code> in the INFO column.
+	 */
+	public File getBackgroundVCF() {
+		return new File(folder, "background.vcf.gz");
+	}
+
+	/**
+	 * @return Small sites VCF with a <code>CLNSIG</code> INFO field, used as mutations.
+	 */
+	public File getMutationsVCF() {
+		return new File(folder, "mutations.vcf.gz");
+	}
+
+	/**
+	 * @return Multi-sample VCF with one genotype column per sample.
+	 */
+	public File getGenotypesVCF() {
+		return new File(folder, "genotypes.vcf.gz");
+	}
+
+	/**
+	 * @return Reference FASTA with <code>.fai</code> and <code>.dict</code>.
+	 */
+	public File getReference() {
+		return new File(folder, "reference.fa");
+	}
+
+	/**
+	 * @return The name of the first sample in {@link #getGenotypesVCF()}.
+	 */
+	public String getFirstSample() {
+		return SyntheticVCFGenerator.sampleName(0);
+	}
+
+	public int getSites() {
+		return sites;
+	}
+
+}
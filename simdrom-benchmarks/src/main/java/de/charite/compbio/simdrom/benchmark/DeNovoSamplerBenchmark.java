@@ -0,0 +1,77 @@
+package de.charite.compbio.simdrom.benchmark;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.charite.compbio.simdrom.sampler.DeNovoSampler;
+import de.charite.compbio.simdrom.sampler.signature.ContextIndex;
+import de.charite.compbio.simdrom.sampler.signature.TrinucleotideContext;
+
+/**
+ * Construction of a {@link DeNovoSampler}, which samples and materializes all de novo variants of the fixture
+ * reference, uniformly or by a mutational signature with a {@link ContextIndex} of the reference.
+ * 
+ * @author <a href="mailto:max.schubach@charite.de">Max Schubach</a>
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DeNovoSamplerBenchmark {
+
+	@Param({ "1.2e-8", "1e-6", "1e-5" })
+	private double rate;
+
+	private String reference;
+	private ContextIndex index;
+	private double[] signature;
+
+	@Setup(Level.Trial)
+	public void load() throws IOException {
+		reference = BenchmarkFixtures.get().getReference().getPath();
+		File indexFile = File.createTempFile("reference", ".ctx");
+		indexFile.deleteOnExit();
+		ContextIndex.build(BenchmarkFixtures.get().getReference(), indexFile);
+		index = new ContextIndex(indexFile);
+		// C>T at CpG
+		signature = new double[TrinucleotideContext.CHANNELS];
+		for (char left : new char[] { 'A', 'C', 'G', 'T' })
+			signature[TrinucleotideContext.getChannel(left + "[C>T]G")] = 1.0;
+	}
+
+	@TearDown(Level.Trial)
+	public void close() throws IOException {
+		index.close();
+	}
+
+	@Benchmark
+	public DeNovoSampler construct() throws FileNotFoundException {
+		return new DeNovoSampler(rate, reference);
+	}
+
+	@Benchmark
+	public DeNovoSampler constructBySignature() throws IOException {
+		return new DeNovoSampler(rate, index, signature, new Random());
+	}
+
+}
@@ -0,0 +1,68 @@
+package de.charite.compbio.simdrom.benchmark;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import de.charite.compbio.simdrom.filter.IFilter;
+import de.charite.compbio.simdrom.filter.InfoFieldFilter;
+import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.variant.variantcontext.VariantContext;
+import htsjdk.variant.vcf.VCFFileReader;
+
+/**
+ * {@link InfoFieldFilter#filter(VariantContext)} on already decoded mutations with single and multi valued
+ * <code>CLNSIG</code> fields. Reported per filtered variant.
+ * 
+ * @author <a href="mailto:max.schubach@charite.de">Max Schubach</a>
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class InfoFieldFilterBenchmark {
+
+	private List<VariantContext> variants;
+	private IFilter filter = new InfoFieldFilter("CLNSIG", 5);
+	private int position;
+
+	@Setup(Level.Trial)
+	public void load() throws IOException {
+		variants = new ArrayList<VariantContext>();
+		VCFFileReader reader = new VCFFileReader(BenchmarkFixtures.get().getMutationsVCF(), false);
+		CloseableIterator<VariantContext> iterator = reader.iterator();
+		while (iterator.hasNext()) {
+			VariantContext vc = iterator.next();
+			// decode the lazy attributes once, we only want to measure the filter
+			vc.getCommonInfo().getAttribute("CLNSIG");
+			variants.add(vc);
+		}
+		iterator.close();
+		reader.close();
+	}
+
+	@Benchmark
+	public void filter(Blackhole blackhole) {
+		if (position == variants.size())
+			position = 0;
+		blackhole.consume(filter.filter(variants.get(position++)));
+	}
+
+}
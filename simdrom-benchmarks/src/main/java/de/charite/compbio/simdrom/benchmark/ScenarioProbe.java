@@ -0,0 +1,96 @@
+package de.charite.compbio.simdrom.benchmark;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.Properties;
+
+import de.charite.compbio.simdrom.Main;
+
+/**
+ * Runs {@link Main} in the current JVM and writes wall time, GC time and peak memory of the run into a properties
+ * file when the JVM exits. {@link Main} always ends with {@link System#exit(int)}, so the numbers are collected in a
+ * shutdown hook. Used by the {@link ThroughputSuite} as child process.
+ * 
+ * @author <a href="mailto:max.schubach@charite.de">Max Schubach</a>
+ *
+ */
+public class ScenarioProbe {
+
+	/**
+	 * @param args
+	 *            first argument is the report file, all others are passed to {@link Main}
+	 * @throws Exception
+	 *             of {@link Main}
+	 */
+	public static void main(String[] args) throws Exception {
+		final File report = new File(args[0]);
+		String[] mainArgs = new String[args.length - 1];
+		System.arraycopy(args, 1, mainArgs, 0, mainArgs.length);
+
+		final long start = System.nanoTime();
+		Runtime.getRuntime().addShutdownHook(new Thread() {
+			@Override
+			public void run() {
+				try {
+					writeReport(report, System.nanoTime() - start);
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		});
+		Main.main(mainArgs);
+	}
+
+	private static void writeReport(File report, long nanos) throws IOException {
+		long gcTime = 0;
+		long gcCount = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			gcTime += Math.max(0, gc.getCollectionTime());
+			gcCount += Math.max(0, gc.getCollectionCount());
+		}
+		long peakHeap = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null)
+				peakHeap += pool.getPeakUsage().getUsed();
+		}
+
+		Properties properties = new Properties();
+		properties.setProperty("wall.millis", Long.toString(nanos / 1000000));
+		properties.setProperty("gc.millis", Long.toString(gcTime));
+		properties.setProperty("gc.count", Long.toString(gcCount));
+		properties.setProperty("heap.peak.bytes", Long.toString(peakHeap));
+		properties.setProperty("rss.peak.bytes", Long.toString(readPeakRss()));
+		OutputStream out = new FileOutputStream(report);
+		properties.store(out, "SIMdrom scenario report");
+		out.close();
+	}
+
+	/**
+	 * @return the peak resident set size (<code>VmHWM</code>) of this process in bytes, or -1 if <code>/proc</code>
+	 *         is not available.
+	 */
+	private static long readPeakRss() {
+		File status = new File("/proc/self/status");
+		if (!status.canRead())
+			return -1;
+		try (BufferedReader reader = new BufferedReader(new FileReader(status))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.startsWith("VmHWM:"))
+					return Long.parseLong(line.replaceAll("[^0-9]", "")) * 1024;
+			}
+		} catch (IOException | NumberFormatException e) {
+			return -1;
+		}
+		return -1;
+	}
+
+}
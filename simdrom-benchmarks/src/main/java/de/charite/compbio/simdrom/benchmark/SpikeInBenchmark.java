@@ -0,0 +1,76 @@
+package de.charite.compbio.simdrom.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import de.charite.compbio.simdrom.sampler.IVariantSink;
+import de.charite.compbio.simdrom.sampler.SpikeIn;
+import de.charite.compbio.simdrom.sampler.vcf.VCFSampler;
+import htsjdk.variant.variantcontext.VariantContext;
+
+/**
+ * Full merge of the sampled background with all mutations of the mutation fixture by {@link SpikeIn}, including the
+ * spike in log, pulled by the iterator or pushed into a sink.
+ * 
+ * @author <a href="mailto:max.schubach@charite.de">Max Schubach</a>
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SpikeInBenchmark {
+
+	private SpikeIn spikeIn;
+
+	@Setup(Level.Invocation)
+	public void open() throws IOException {
+		BenchmarkFixtures fixtures = BenchmarkFixtures.get();
+		VCFSampler background = new VCFSampler(fixtures.getBackgroundVCF().getPath());
+		background.setAFIdentifier("AF");
+		VCFSampler mutations = new VCFSampler(fixtures.getMutationsVCF().getPath());
+		mutations.setProbability(1.0);
+		spikeIn = new SpikeIn(background, mutations, true);
+	}
+
+	@TearDown(Level.Invocation)
+	public void close() {
+		spikeIn.close();
+	}
+
+	@Benchmark
+	public void merge(Blackhole blackhole) {
+		while (spikeIn.hasNext())
+			blackhole.consume(spikeIn.next());
+		blackhole.consume(spikeIn.getVcLogs());
+	}
+
+	@Benchmark
+	public void drainTo(final Blackhole blackhole) throws IOException {
+		spikeIn.drainTo(new IVariantSink() {
+
+			@Override
+			public void add(VariantContext vc) {
+				blackhole.consume(vc);
+			}
+		});
+		blackhole.consume(spikeIn.getVcLogs());
+	}
+
+}
@@ -0,0 +1,465 @@
+package de.charite.compbio.simdrom.benchmark;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+
+import htsjdk.samtools.util.BlockCompressedOutputStream;
+import htsjdk.tribble.SimpleFeature;
+import htsjdk.tribble.index.Index;
+import htsjdk.tribble.index.tabix.TabixFormat;
+import htsjdk.tribble.index.tabix.TabixIndexCreator;
+
+/**
+ * Deterministic generator of synthetic sites and multi-sample VCF files and of a matching reference FASTA.
+ * <p>
+ * The reference base at every position is a hash of the seed, the contig and the position. So the REF alleles of every
+ * generated VCF match the generated reference without keeping the reference in memory, and files generated with the
+ * same seed and layout always fit together. Files ending with <code>.gz</code> are written as BGZF and get a tabix
+ * index on the fly.
+ * <p>
+ * Per record the generator draws an allele frequency skewed towards rare alleles, like in real populations. If samples
+ * are requested the genotypes are drawn from these frequencies and <code>AC</code>/<code>AN</code>/<code>AF</code> are
+ * computed from the genotypes, otherwise from 2,504 virtual individuals.
+ *
+ * @author <a href="mailto:max.schubach@charite.de">Max Schubach</a>
+ *
+ */
+public class SyntheticVCFGenerator {
+
+	private static final char[] BASES = { 'A', 'C', 'G', 'T' };
+	private static final int VIRTUAL_ALLELES = 5008;
+	private static final int MAX_DELETION = 4;
+	private static final int MAX_INSERTION = 6;
+
+	private final long seed;
+	private int contigs = 3;
+	private int contigLength = 5000000;
+	private long records = 100000;
+	private int samples = 0;
+	private double multiAllelicRatio = 0.1;
+	private double indelRatio = 0.1;
+	private int infoPayloadSize = 0;
+	private boolean clinicalSignificance = false;
+
+	public SyntheticVCFGenerator(long seed) {
+		this.seed = seed;
+	}
+
+	/**
+	 * Writes a VCF with the current settings. Uses BGZF and a tabix index if the file ends with <code>.gz</code>.
+	 *
+	 * @param file
+	 *            output VCF
+	 * @return number of written records
+	 * @throws IOException
+	 *             if the file cannot be written
+	 */
+	public long writeVCF(File file) throws IOException {
+		long genomeLength = (long) contigs * contigLength;
+		if (records > genomeLength / (MAX_DELETION + 1))
+			throw new IllegalArgumentException(
+					"Cannot place " + records + " records into a reference of " + genomeLength + " bases.");
+
+		RecordWriter writer = file.getName().endsWith(".gz") ? new IndexingRecordWriter(file)
+				: new RecordWriter(file);
+		writer.write(buildHeader());
+
+		Random random = new Random(seed ^ records ^ ((long) samples << 32) ^ (clinicalSignificance ? 1 : 0));
+		byte[] payload = buildPayloadAlphabet(random);
+		int[] genotypes = new int[samples * 2];
+		int[] alleleCounts = new int[4];
+		StringBuilder line = new StringBuilder(256 + samples * 4 + infoPayloadSize);
+		long written = 0;
+		for (int c = 0; c < contigs; c++) {
+			String contig = contigName(c);
+			long contigRecords = records / contigs + (c < records % contigs ? 1 : 0);
+			double gap = contigLength / (double) contigRecords;
+			for (long i = 0; i < contigRecords; i++) {
+				int pos = (int) (i * gap) + 1 + random.nextInt(Math.max(1, (int) gap - MAX_DELETION));
+				line.setLength(0);
+				line.append(contig).append('\t').append(pos).append('\t').append("rs").append(written + 1)
+						.append('\t');
+
+				// alleles
+				int alts = 1;
+				double type = random.nextDouble();
+				char ref = base(c, pos);
+				if (type < indelRatio / 2) { // deletion
+					int length = 2 + random.nextInt(MAX_DELETION - 1);
+					for (int p = pos; p < pos + length; p++)
+						line.append(base(c, p));
+					line.append('\t').append(ref);
+				} else if (type < indelRatio) { // insertion
+					line.append(ref).append('\t').append(ref);
+					int length = 1 + random.nextInt(MAX_INSERTION);
+					for (int p = 0; p < length; p++)
+						line.append(BASES[random.nextInt(4)]);
+				} else { // SNV
+					if (random.nextDouble() < multiAllelicRatio)
+						alts = 2 + random.nextInt(2);
+					line.append(ref).append('\t');
+					int refIndex = indexOf(ref);
+					for (int a = 0; a < alts; a++) {
+						if (a > 0)
+							line.append(',');
+						line.append(BASES[(refIndex + a + 1) % 4]);
+					}
+				}
+				line.append("\t100\tPASS\t");
+
+				// frequencies and genotypes
+				double[] af = new double[alts];
+				double left = 0.5;
+				for (int a = 0; a < alts; a++) {
+					af[a] = Math.max(1.0 / VIRTUAL_ALLELES, left * Math.pow(random.nextDouble(), 4));
+					left -= af[a];
+				}
+				int an;
+				if (samples > 0) {
+					an = samples * 2;
+					alleleCounts[0] = alleleCounts[1] = alleleCounts[2] = alleleCounts[3] = 0;
+					for (int g = 0; g < genotypes.length; g++) {
+						genotypes[g] = drawAllele(random, af);
+						alleleCounts[genotypes[g]]++;
+					}
+				} else {
+					an = VIRTUAL_ALLELES;
+					for (int a = 0; a < alts; a++)
+						alleleCounts[a + 1] = Math.max(1, (int) Math.round(af[a] * an));
+				}
+				line.append("AC=");
+				for (int a = 0; a < alts; a++) {
+					if (a > 0)
+						line.append(',');
+					line.append(alleleCounts[a + 1]);
+				}
+				line.append(";AN=").append(an).append(";AF=");
+				for (int a = 0; a < alts; a++) {
+					if (a > 0)
+						line.append(',');
+					appendFrequency(line, alleleCounts[a + 1] / (double) an);
+				}
+				if (clinicalSignificance) {
+					line.append(";CLNSIG=");
+					for (int a = 0; a < alts; a++) {
+						if (a > 0)
+							line.append(',');
+						line.append(random.nextInt(8));
+					}
+				}
+				if (infoPayloadSize > 0) {
+					line.append(";CSQ=");
+					int offset = random.nextInt(payload.length - infoPayloadSize);
+					for (int p = 0; p < infoPayloadSize; p++)
+						line.append((char) payload[offset + p]);
+				}
+				if (samples > 0) {
+					line.append("\tGT");
+					for (int g = 0; g < genotypes.length; g += 2)
+						line.append('\t').append(genotypes[g]).append('|').append(genotypes[g + 1]);
+				}
+				line.append('\n');
+				writer.writeRecord(contig, pos, line);
+				written++;
+			}
+		}
+		writer.close();
+		return written;
+	}
+
+	/**
+	 * Writes the reference FASTA of the current contig layout together with its <code>.fai</code> index and a
+	 * <code>.dict</code> sequence dictionary (<code>reference.fa</code> gets <code>reference.dict</code>).
+	 *
+	 * @param file
+	 *            FASTA file
+	 * @throws IOException
+	 *             if the files cannot be written
+	 */
+	public void writeReference(File file) throws IOException {
+		int lineLength = 60;
+		OutputStream fasta = new BufferedOutputStream(new FileOutputStream(file), 1 << 16);
+		BufferedWriter fai = new BufferedWriter(new FileWriter(file.getPath() + ".fai"));
+		BufferedWriter dict = new BufferedWriter(
+				new FileWriter(file.getPath().replaceAll("\\.(fa|fasta)(\\.gz)?$", "") + ".dict"));
+		dict.write("@HD\tVN:1.4\n");
+		long offset = 0;
+		byte[] row = new byte[lineLength + 1];
+		for (int c = 0; c < contigs; c++) {
+			String contig = contigName(c);
+			byte[] name = (">" + contig + "\n").getBytes(StandardCharsets.US_ASCII);
+			fasta.write(name);
+			offset += name.length;
+			fai.write(contig + "\t" + contigLength + "\t" + offset + "\t" + lineLength + "\t" + (lineLength + 1)
+					+ "\n");
+			dict.write("@SQ\tSN:" + contig + "\tLN:" + contigLength + "\n");
+			for (int written = 0; written < contigLength; written += lineLength) {
+				int length = Math.min(lineLength, contigLength - written);
+				for (int i = 0; i < length; i++)
+					row[i] = (byte) base(c, written + i + 1);
+				row[length] = '\n';
+				fasta.write(row, 0, length + 1);
+				offset += length + 1;
+			}
+		}
+		fasta.close();
+		fai.close();
+		dict.close();
+	}
+
+	private String buildHeader() {
+		StringBuilder header = new StringBuilder();
+		header.append("##fileformat=VCFv4.1\n");
+		header.append("##source=SyntheticVCFGenerator(seed=").append(seed).append(")\n");
+		for (int c = 0; c < contigs; c++)
+			header.append("##contig=<ID=").append(contigName(c)).append(",length=").append(contigLength)
+					.append(">\n");
+		header.append("##INFO=<ID=AC,Number=A,Type=Integer,Description=\"Allele count in genotypes\">\n");
+		header.append("##INFO=<ID=AN,Number=1,Type=Integer,Description=\"Total number of alleles\">\n");
+		header.append("##INFO=<ID=AF,Number=A,Type=Float,Description=\"Allele Frequency\">\n");
+		if (clinicalSignificance)
+			header.append("##INFO=<ID=CLNSIG,Number=.,Type=String,Description=\"Clinical significance\">\n");
+		if (infoPayloadSize > 0)
+			header.append("##INFO=<ID=CSQ,Number=.,Type=String,Description=\"Synthetic annotation payload\">\n");
+		if (samples > 0)
+			header.append("##FORMAT=<ID=GT,Number=1,Type=String,Description=\"Genotype\">\n");
+		header.append("#CHROM\tPOS\tID\tREF\tALT\tQUAL\tFILTER\tINFO");
+		if (samples > 0) {
+			header.append("\tFORMAT");
+			for (int s = 0; s < samples; s++)
+				header.append('\t').append(sampleName(s));
+		}
+		header.append('\n');
+		return header.toString();
+	}
+
+	private byte[] buildPayloadAlphabet(Random random) {
+		byte[] alphabet = "ACGTacgt_|&0123456789".getBytes(StandardCharsets.US_ASCII);
+		byte[] payload = new byte[Math.max(1024, infoPayloadSize * 4)];
+		for (int i = 0; i < payload.length; i++)
+			payload[i] = alphabet[random.nextInt(alphabet.length)];
+		return payload;
+	}
+
+	private static int drawAllele(Random random, double[] af) {
+		double r = random.nextDouble();
+		for (int a = 0; a < af.length; a++) {
+			if (r < af[a])
+				return a + 1;
+			r -= af[a];
+		}
+		return 0;
+	}
+
+	private static void appendFrequency(StringBuilder line, double value) {
+		long scaled = Math.round(value * 1000000);
+		line.append(scaled / 1000000).append('.');
+		String fraction = Long.toString(scaled % 1000000);
+		for (int i = fraction.length(); i < 6; i++)
+			line.append('0');
+		line.append(fraction);
+	}
+
+	/**
+	 * @param contig
+	 *            index of the contig
+	 * @param pos
+	 *            1-based position
+	 * @return the reference base of this generator at the position.
+	 */
+	public char base(int contig, long pos) {
+		long z = seed + contig * 0x9E3779B97F4A7C15L + pos * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		z = z ^ (z >>> 31);
+		return BASES[(int) (z & 3)];
+	}
+
+	private static int indexOf(char base) {
+		switch (base) {
+		case 'A':
+			return 0;
+		case 'C':
+			return 1;
+		case 'G':
+			return 2;
+		default:
+			return 3;
+		}
+	}
+
+	public static String contigName(int i) {
+		return Integer.toString(i + 1);
+	}
+
+	public static String sampleName(int i) {
+		return String.format("S%05d", i);
+	}
+
+	public void setContigs(int contigs) {
+		this.contigs = contigs;
+	}
+
+	public void setContigLength(int contigLength) {
+		this.contigLength = contigLength;
+	}
+
+	public void setRecords(long records) {
+		this.records = records;
+	}
+
+	public void setSamples(int samples) {
+		this.samples = samples;
+	}
+
+	public void setMultiAllelicRatio(double multiAllelicRatio) {
+		this.multiAllelicRatio = multiAllelicRatio;
+	}
+
+	public void setIndelRatio(double indelRatio) {
+		this.indelRatio = indelRatio;
+	}
+
+	public void setInfoPayloadSize(int infoPayloadSize) {
+		this.infoPayloadSize = infoPayloadSize;
+	}
+
+	public void setClinicalSignificance(boolean clinicalSignificance) {
+		this.clinicalSignificance = clinicalSignificance;
+	}
+
+	/**
+	 * Writes VCF text into a plain file.
+	 */
+	private static class RecordWriter {
+
+		protected final OutputStream out;
+		private byte[] buffer = new byte[1024];
+
+		RecordWriter(File file) throws IOException {
+			this(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+		}
+
+		RecordWriter(OutputStream out) {
+			this.out = out;
+		}
+
+		void write(String text) throws IOException {
+			out.write(text.getBytes(StandardCharsets.US_ASCII));
+		}
+
+		void writeRecord(String contig, int pos, CharSequence line) throws IOException {
+			if (buffer.length < line.length())
+				buffer = new byte[line.length() * 2];
+			for (int i = 0; i < line.length(); i++)
+				buffer[i] = (byte) line.charAt(i);
+			out.write(buffer, 0, line.length());
+		}
+
+		void close() throws IOException {
+			out.close();
+		}
+	}
+
+	/**
+	 * Writes VCF text into a BGZF file and creates its tabix index on the fly.
+	 */
+	private static class IndexingRecordWriter extends RecordWriter {
+
+		private final File file;
+		private final TabixIndexCreator indexCreator = new TabixIndexCreator(TabixFormat.VCF);
+
+		IndexingRecordWriter(File file) {
+			super(new BlockCompressedOutputStream(file));
+			this.file = file;
+		}
+
+		@Override
+		void writeRecord(String contig, int pos, CharSequence line) throws IOException {
+			indexCreator.addFeature(new SimpleFeature(contig, pos, pos),
+					((BlockCompressedOutputStream) out).getFilePointer());
+			super.writeRecord(contig, pos, line);
+		}
+
+		@Override
+		void close() throws IOException {
+			Index index = indexCreator.finalizeIndex(((BlockCompressedOutputStream) out).getFilePointer());
+			super.close();
+			index.writeBasedOnFeatureFile(file);
+		}
+	}
+
+	/**
+	 * Command line interface of the generator.
+	 *
+	 * @param args
+	 *            see <code>--help</code>
+	 * @throws IOException
+	 *             if the files cannot be written
+	 */
+	public static void main(String[] args) throws IOException {
+		Options options = new Options();
+		options.addOption(Option.builder("o").longOpt("output").hasArg().required()
+				.desc("Output VCF. BGZF with tabix index if it ends with .gz.").build());
+		options.addOption(Option.builder("r").longOpt("reference").hasArg()
+				.desc("Optional. Also write the matching reference FASTA (with .fai and .dict).").build());
+		options.addOption(Option.builder().longOpt("records").hasArg().desc("Default 100000. Number of records.")
+				.build());
+		options.addOption(Option.builder().longOpt("samples").hasArg()
+				.desc("Default 0. Number of genotype columns. 0 writes a sites VCF.").build());
+		options.addOption(Option.builder().longOpt("multi-allelic-ratio").hasArg()
+				.desc("Default 0.1. Fraction of SNV records with two or three ALT alleles.").build());
+		options.addOption(Option.builder().longOpt("indel-ratio").hasArg()
+				.desc("Default 0.1. Fraction of insertion and deletion records.").build());
+		options.addOption(Option.builder().longOpt("info-payload").hasArg()
+				.desc("Default 0. Size in bytes of an additional CSQ INFO field per record.").build());
+		options.addOption(Option.builder().longOpt("clinical-significance")
+				.desc("Add a CLNSIG INFO field with values 0-7 per ALT allele.").build());
+		options.addOption(Option.builder().longOpt("contigs").hasArg().desc("Default 3. Number of contigs.")
+				.build());
+		options.addOption(Option.builder().longOpt("contig-length").hasArg()
+				.desc("Default 5000000. Length of every contig.").build());
+		options.addOption(Option.builder().longOpt("seed").hasArg().desc("Default 42.").build());
+
+		CommandLine cmd;
+		try {
+			cmd = new DefaultParser().parse(options, args);
+		} catch (ParseException e) {
+			HelpFormatter formatter = new HelpFormatter();
+			formatter.setWidth(120);
+			formatter.printHelp("SyntheticVCFGenerator", options);
+			return;
+		}
+		SyntheticVCFGenerator generator = new SyntheticVCFGenerator(Long.parseLong(cmd.getOptionValue("seed", "42")));
+		generator.setRecords(Long.parseLong(cmd.getOptionValue("records", "100000")));
+		generator.setSamples(Integer.parseInt(cmd.getOptionValue("samples", "0")));
+		generator.setMultiAllelicRatio(Double.parseDouble(cmd.getOptionValue("multi-allelic-ratio", "0.1")));
+		generator.setIndelRatio(Double.parseDouble(cmd.getOptionValue("indel-ratio", "0.1")));
+		generator.setInfoPayloadSize(Integer.parseInt(cmd.getOptionValue("info-payload", "0")));
+		generator.setClinicalSignificance(cmd.hasOption("clinical-significance"));
+		generator.setContigs(Integer.parseInt(cmd.getOptionValue("contigs", "3")));
+		generator.setContigLength(Integer.parseInt(cmd.getOptionValue("contig-length", "5000000")));
+
+		long written = generator.writeVCF(new File(cmd.getOptionValue("output")));
+		System.err.println("Wrote " + written + " records to " + cmd.getOptionValue("output"));
+		if (cmd.hasOption("reference")) {
+			generator.writeReference(new File(cmd.getOptionValue("reference")));
+			System.err.println("Wrote reference to " + cmd.getOptionValue("reference"));
+		}
+	}
+
+}
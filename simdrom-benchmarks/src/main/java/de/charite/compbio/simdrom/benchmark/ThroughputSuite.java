@@ -0,0 +1,293 @@
+package de.charite.compbio.simdrom.benchmark;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+
+import de.charite.compbio.simdrom.Main;
+
+/**
+ * End-to-end throughput suite. Generates synthetic inputs with the {@link SyntheticVCFGenerator} (cached in the work
+ * folder), runs typical {@link Main} scenarios on them, each in its own JVM via the {@link ScenarioProbe}, and records
+ * records/s, peak RSS and GC time per scenario as TSV.
+ * <p>
+ * If a previous result is given as baseline, every scenario is compared with it and the suite exits with 1 if the
+ * throughput dropped or the peak RSS grew by more than the tolerance.
+ *
+ * @author <a href="mailto:max.schubach@charite.de">Max Schubach</a>
+ *
+ */
+public class ThroughputSuite {
+
+	private static final String[] COLUMNS = { "scenario", "exit", "records", "seconds", "records_per_second",
+			"peak_rss_mb", "gc_millis", "gc_count" };
+
+	private final File folder;
+	private final long records;
+	private final int samples;
+	private final String heap;
+
+	private File background;
+	private File mutations;
+	private File genotypes;
+	private File reference;
+
+	public ThroughputSuite(File folder, long records, int samples, String heap) {
+		this.folder = folder;
+		this.records = records;
+		this.samples = samples;
+		this.heap = heap;
+	}
+
+	/**
+	 * Generates the inputs of the scenarios if they do not exist yet.
+	 *
+	 * @throws IOException
+	 *             if the files cannot be written
+	 */
+	public void prepare() throws IOException {
+		folder.mkdirs();
+		background = new File(folder, "background." + records + ".vcf.gz");
+		mutations = new File(folder, "mutations." + records + ".vcf.gz");
+		genotypes = new File(folder, "genotypes." + records + "." + samples + ".vcf.gz");
+		reference = new File(folder, "reference." + records + ".fa");
+
+		SyntheticVCFGenerator generator = new SyntheticVCFGenerator(42L);
+		// about one record per 30 bases, like dense genome releases
+		generator.setContigLength((int) Math.max(5000000, records * 30 / 3));
+		if (!background.exists()) {
+			generator.setRecords(records);
+			generator.setInfoPayloadSize(200);
+			generator.writeVCF(background);
+		}
+		if (!mutations.exists()) {
+			generator.setRecords(Math.max(1000, records / 100));
+			generator.setInfoPayloadSize(0);
+			generator.setClinicalSignificance(true);
+			generator.writeVCF(mutations);
+			generator.setClinicalSignificance(false);
+		}
+		if (!genotypes.exists()) {
+			generator.setRecords(Math.max(1000, records / 10));
+			generator.setInfoPayloadSize(0);
+			generator.setSamples(samples);
+			generator.writeVCF(genotypes);
+			generator.setSamples(0);
+		}
+		if (!reference.exists())
+			generator.writeReference(reference);
+	}
+
+	/**
+	 * @return scenario name and the {@link Main} arguments of every scenario of the suite (without output)
+	 */
+	public Map<String, List<String>> getScenarios() {
+		Map<String, List<String>> scenarios = new LinkedHashMap<String, List<String>>();
+		String bg = background.getPath();
+		scenarios.put("af", Arrays.asList("-b", bg, "-bAF", "AF"));
+		scenarios.put("ac-an", Arrays.asList("-b", bg, "-bAC", "AC", "-bAN", "AN"));
+		scenarios.put("probability", Arrays.asList("-b", bg, "--background-probability", "0.5"));
+		scenarios.put("counts",
+				Arrays.asList("-b", bg, "--background-variants-amount", Long.toString(Math.max(1, records / 10))));
+		scenarios.put("single-sample", Arrays.asList("-b", genotypes.getPath(), "--single-sample",
+				SyntheticVCFGenerator.sampleName(0)));
+		scenarios.put("spike-in",
+				Arrays.asList("-b", bg, "-bAF", "AF", "-m", mutations.getPath(), "--mutations-info-filter",
+						"CLNSIG=5", "--mutations-variants-amount", "1", "--spike-in-log",
+						new File(folder, "spike-in.log.tsv").getPath()));
+		scenarios.put("de-novo", Arrays.asList("-b", bg, "-bAF", "AF", "--de-novo", "--reference",
+				reference.getPath()));
+		return scenarios;
+	}
+
+	/**
+	 * @return the number of input records of the scenario, used for the throughput.
+	 */
+	private long getInputRecords(String scenario) {
+		if (scenario.equals("single-sample"))
+			return Math.max(1000, records / 10);
+		return records;
+	}
+
+	/**
+	 * Runs one scenario in a new JVM.
+	 *
+	 * @return the measured values, keyed like {@link #COLUMNS}
+	 */
+	public Map<String, String> run(String scenario, List<String> mainArgs) throws IOException, InterruptedException {
+		File report = new File(folder, scenario + ".report.properties");
+		report.delete();
+		File output = new File(folder, scenario + ".out.vcf.gz");
+
+		List<String> command = new ArrayList<String>();
+		command.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getPath());
+		command.add("-Xmx" + heap);
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(ScenarioProbe.class.getName());
+		command.add(report.getPath());
+		command.addAll(mainArgs);
+		command.add("--output");
+		command.add(output.getPath());
+
+		Process process = new ProcessBuilder(command).redirectErrorStream(true)
+				.redirectOutput(new File(folder, scenario + ".log")).start();
+		int exit = process.waitFor();
+
+		Properties properties = new Properties();
+		if (report.exists()) {
+			InputStream in = new FileInputStream(report);
+			properties.load(in);
+			in.close();
+		}
+		double seconds = Long.parseLong(properties.getProperty("wall.millis", "0")) / 1000.0;
+		long rss = Long.parseLong(properties.getProperty("rss.peak.bytes", "-1"));
+
+		Map<String, String> result = new LinkedHashMap<String, String>();
+		result.put("scenario", scenario);
+		result.put("exit", Integer.toString(exit));
+		result.put("records", Long.toString(getInputRecords(scenario)));
+		result.put("seconds", String.format(Locale.ROOT, "%.3f", seconds));
+		result.put("records_per_second",
+				String.format(Locale.ROOT, "%.1f", exit == 0 && seconds > 0 ? getInputRecords(scenario) / seconds : 0.0));
+		result.put("peak_rss_mb", String.format(Locale.ROOT, "%.1f", rss < 0 ? -1.0 : rss / (1024.0 * 1024.0)));
+		result.put("gc_millis", properties.getProperty("gc.millis", "-1"));
+		result.put("gc_count", properties.getProperty("gc.count", "-1"));
+		return result;
+	}
+
+	private static void write(File file, List<Map<String, String>> results) throws IOException {
+		BufferedWriter writer = new BufferedWriter(new FileWriter(file));
+		writer.write(String.join("\t", COLUMNS));
+		writer.newLine();
+		for (Map<String, String> result : results) {
+			List<String> values = new ArrayList<String>();
+			for (String column : COLUMNS)
+				values.add(result.get(column));
+			writer.write(String.join("\t", values));
+			writer.newLine();
+		}
+		writer.close();
+	}
+
+	private static Map<String, Map<String, String>> read(File file) throws IOException {
+		Map<String, Map<String, String>> results = new LinkedHashMap<String, Map<String, String>>();
+		BufferedReader reader = new BufferedReader(new FileReader(file));
+		String[] header = reader.readLine().split("\t");
+		String line;
+		while ((line = reader.readLine()) != null) {
+			String[] values = line.split("\t");
+			Map<String, String> result = new LinkedHashMap<String, String>();
+			for (int i = 0; i < header.length && i < values.length; i++)
+				result.put(header[i], values[i]);
+			results.put(result.get("scenario"), result);
+		}
+		reader.close();
+		return results;
+	}
+
+	/**
+	 * Compares the results with a baseline and prints one line per scenario.
+	 *
+	 * @return number of regressions
+	 */
+	private static int compare(List<Map<String, String>> results, Map<String, Map<String, String>> baseline,
+			double tolerance) {
+		int regressions = 0;
+		for (Map<String, String> result : results) {
+			Map<String, String> base = baseline.get(result.get("scenario"));
+			if (base == null)
+				continue;
+			double throughput = ratio(result, base, "records_per_second");
+			double rss = ratio(result, base, "peak_rss_mb");
+			double gc = ratio(result, base, "gc_millis");
+			boolean regression = !result.get("exit").equals(base.get("exit")) || throughput < 1.0 - tolerance
+					|| rss > 1.0 + tolerance;
+			if (regression)
+				regressions++;
+			System.err.println(String.format(Locale.ROOT, "%-16s throughput %6.2fx  peak RSS %6.2fx  GC time %6.2fx  %s",
+					result.get("scenario"), throughput, rss, gc, regression ? "REGRESSION" : "ok"));
+		}
+		return regressions;
+	}
+
+	private static double ratio(Map<String, String> result, Map<String, String> baseline, String column) {
+		double base = Double.parseDouble(baseline.get(column));
+		if (base <= 0)
+			return 1.0;
+		return Double.parseDouble(result.get(column)) / base;
+	}
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		Options options = new Options();
+		options.addOption(Option.builder("d").longOpt("work-dir").hasArg().required()
+				.desc("Folder for the generated inputs, outputs and logs. Inputs are reused between runs.").build());
+		options.addOption(Option.builder().longOpt("records").hasArg()
+				.desc("Default 1000000. Records of the background VCF.").build());
+		options.addOption(Option.builder().longOpt("samples").hasArg()
+				.desc("Default 100. Samples of the genotype VCF for the single sample scenario.").build());
+		options.addOption(Option.builder().longOpt("scenario").hasArgs()
+				.desc("Optional. Only run the given scenarios.").build());
+		options.addOption(Option.builder().longOpt("heap").hasArg().desc("Default 4g. -Xmx of the SIMdrom JVM.")
+				.build());
+		options.addOption(Option.builder("o").longOpt("output").hasArg()
+				.desc("Default <work-dir>/throughput.tsv. Result TSV, can be used as later baseline.").build());
+		options.addOption(Option.builder().longOpt("baseline").hasArg()
+				.desc("Optional. Result TSV of an earlier run to compare with.").build());
+		options.addOption(Option.builder().longOpt("tolerance").hasArg()
+				.desc("Default 0.1. Allowed relative loss of throughput or growth of peak RSS.").build());
+
+		CommandLine cmd;
+		try {
+			cmd = new DefaultParser().parse(options, args);
+		} catch (ParseException e) {
+			HelpFormatter formatter = new HelpFormatter();
+			formatter.setWidth(120);
+			formatter.printHelp("ThroughputSuite", options);
+			return;
+		}
+		File folder = new File(cmd.getOptionValue("work-dir"));
+		ThroughputSuite suite = new ThroughputSuite(folder, Long.parseLong(cmd.getOptionValue("records", "1000000")),
+				Integer.parseInt(cmd.getOptionValue("samples", "100")), cmd.getOptionValue("heap", "4g"));
+		suite.prepare();
+
+		List<String> selected = cmd.hasOption("scenario") ? Arrays.asList(cmd.getOptionValues("scenario")) : null;
+		List<Map<String, String>> results = new ArrayList<Map<String, String>>();
+		for (Map.Entry<String, List<String>> scenario : suite.getScenarios().entrySet()) {
+			if (selected != null && !selected.contains(scenario.getKey()))
+				continue;
+			Map<String, String> result = suite.run(scenario.getKey(), scenario.getValue());
+			System.err.println(result);
+			results.add(result);
+		}
+		File output = new File(cmd.getOptionValue("output", new File(folder, "throughput.tsv").getPath()));
+		write(output, results);
+
+		if (cmd.hasOption("baseline")) {
+			int regressions = compare(results, read(new File(cmd.getOptionValue("baseline"))),
+					Double.parseDouble(cmd.getOptionValue("tolerance", "0.1")));
+			if (regressions > 0)
+				System.exit(1);
+		}
+	}
+
+}
@@ -0,0 +1,95 @@
+package de.charite.compbio.simdrom.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import de.charite.compbio.simdrom.sampler.vcf.VCFSampler;
+
+/**
+ * Full passes of {@link VCFSampler#next()} over the background fixture, one benchmark per sampling mode. Opening the
+ * sampler (and the counting pass of the exact counts mode) is part of the setup and not measured.
+ * 
+ * @author <a href="mailto:max.schubach@charite.de">Max Schubach</a>
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class VCFSamplerBenchmark {
+
+	/**
+	 * Sampling modes of the {@link VCFSampler}.
+	 */
+	public enum SamplingMode {
+		AF, AC_AN, PROBABILITY, COUNTS, SINGLE_SAMPLE;
+	}
+
+	@Param
+	private SamplingMode mode;
+
+	private VCFSampler sampler;
+
+	@Setup(Level.Invocation)
+	public void open() throws IOException {
+		BenchmarkFixtures fixtures = BenchmarkFixtures.get();
+		switch (mode) {
+		case AF:
+			sampler = new VCFSampler(fixtures.getBackgroundVCF().getPath());
+			sampler.setAFIdentifier("AF");
+			break;
+		case AC_AN:
+			sampler = new VCFSampler(fixtures.getBackgroundVCF().getPath());
+			sampler.setACIdentifier("AC");
+			sampler.setANIdentifier("AN");
+			break;
+		case PROBABILITY:
+			sampler = new VCFSampler(fixtures.getBackgroundVCF().getPath());
+			sampler.setProbability(0.1);
+			break;
+		case COUNTS:
+			sampler = new VCFSampler(fixtures.getBackgroundVCF().getPath());
+			sampler.setVariantsAmount(fixtures.getSites() / 10);
+			sampler.setProbability(1.0);
+			// the counting pass runs on the first use of the selection, so it is done here
+			sampler.getSelection();
+			break;
+		case SINGLE_SAMPLE:
+			sampler = new VCFSampler(fixtures.getGenotypesVCF().getPath());
+			sampler.setSample(fixtures.getFirstSample());
+			sampler.setProbability(1.0);
+			break;
+		default:
+			throw new IllegalStateException("Unknown mode " + mode);
+		}
+	}
+
+	@TearDown(Level.Invocation)
+	public void close() {
+		sampler.close();
+	}
+
+	@Benchmark
+	public void next(Blackhole blackhole) {
+		while (sampler.hasNext())
+			blackhole.consume(sampler.next());
+	}
+
+}
@@ -0,0 +1,77 @@
+package de.charite.compbio.simdrom.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.charite.compbio.simdrom.io.writer.VCFTSVWriter;
+import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.variant.variantcontext.VariantContext;
+import htsjdk.variant.vcf.VCFFileReader;
+
+/**
+ * {@link VCFTSVWriter#add(VariantContext)} of decoded mutations into a temporary spike in log.
+ * 
+ * @author <a href="mailto:max.schubach@charite.de">Max Schubach</a>
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class VCFTSVWriterBenchmark {
+
+	private List<VariantContext> variants;
+	private File file;
+	private VCFTSVWriter writer;
+	private int position;
+
+	@Setup(Level.Trial)
+	public void load() throws IOException {
+		variants = new ArrayList<VariantContext>();
+		VCFFileReader reader = new VCFFileReader(BenchmarkFixtures.get().getMutationsVCF(), false);
+		CloseableIterator<VariantContext> iterator = reader.iterator();
+		while (iterator.hasNext())
+			variants.add(iterator.next());
+		iterator.close();
+		reader.close();
+		file = File.createTempFile("simdrom-benchmark", ".tsv");
+		file.deleteOnExit();
+	}
+
+	@Setup(Level.Iteration)
+	public void open() throws IOException {
+		writer = new VCFTSVWriter(file.getPath());
+		writer.writeHeader(variants.get(0));
+	}
+
+	@TearDown(Level.Iteration)
+	public void close() throws IOException {
+		writer.close();
+	}
+
+	@Benchmark
+	public void add() throws IOException {
+		if (position == variants.size())
+			position = 0;
+		writer.add(variants.get(position++));
+	}
+
+}
@@ -1,18 +1,55 @@
 package de.charite.compbio.simdrom;
 
+import htsjdk.samtools.util.BlockCompressedInputStream;
+import htsjdk.samtools.util.BlockCompressedOutputStream;
 import htsjdk.variant.variantcontext.VariantContext;
 import htsjdk.variant.variantcontext.writer.Options;
 import htsjdk.variant.variantcontext.writer.VariantContextWriter;
 import htsjdk.variant.variantcontext.writer.VariantContextWriterBuilder;
+import htsjdk.variant.vcf.VCFCodec;
+import htsjdk.variant.vcf.VCFHeaderVersion;
 
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import javax.management.JMException;
 
 import org.apache.commons.cli.ParseException;
 
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.CountingOutputStream;
+
 import de.charite.compbio.simdrom.cli.SIMdromSetting;
+import de.charite.compbio.simdrom.filter.ExcludeFilter;
+import de.charite.compbio.simdrom.filter.IFilter;
+import de.charite.compbio.simdrom.io.reader.SpikeInLogReader;
+import de.charite.compbio.simdrom.io.writer.BGZFVCFWriter;
+import de.charite.compbio.simdrom.io.writer.ConsensusFASTAWriter;
+import de.charite.compbio.simdrom.io.writer.MeasuredVariantContextWriter;
+import de.charite.compbio.simdrom.io.writer.MetricsJSONWriter;
+import de.charite.compbio.simdrom.io.writer.PEDWriter;
+import de.charite.compbio.simdrom.io.writer.PopulationSplitVariantContextWriter;
+import de.charite.compbio.simdrom.io.writer.ShardCheckpoint;
+import de.charite.compbio.simdrom.io.writer.ShardConcatenator;
+import de.charite.compbio.simdrom.io.writer.ShardManifest;
 import de.charite.compbio.simdrom.io.writer.VCFTSVWriter;
+import de.charite.compbio.simdrom.metrics.SIMdromMetrics;
+import de.charite.compbio.simdrom.metrics.TimedDeflaterFactory;
 import de.charite.compbio.simdrom.sampler.DeNovoSampler;
+import de.charite.compbio.simdrom.sampler.ParallelSpikeIn;
 import de.charite.compbio.simdrom.sampler.SpikeIn;
+import de.charite.compbio.simdrom.sampler.signature.ContextIndex;
+import de.charite.compbio.simdrom.sampler.vcf.InfoProjection;
 import de.charite.compbio.simdrom.sampler.vcf.VCFRandomSampleSelecter;
 import de.charite.compbio.simdrom.sampler.vcf.VCFSampler;
 
@@ -24,98 +61,367 @@ import de.charite.compbio.simdrom.sampler.vcf.VCFSampler;
  */
 public class Main {
 
-	public static void main(String[] args) throws ParseException, IOException {
+	public static void main(String[] args) throws ParseException, IOException, JMException {
 
 		// 1) Parse options
 		SIMdromSetting.parse(args);
+		SIMdromMetrics metrics = SIMdromMetrics.get();
+		if (SIMdromSetting.METRICS_REPORT != null || SIMdromSetting.METRICS_JMX) {
+			metrics.setEnabled(true);
+			BlockCompressedOutputStream.setDefaultDeflaterFactory(new TimedDeflaterFactory());
+		}
+		if (SIMdromSetting.METRICS_JMX)
+			metrics.registerMBean();
 
-		// 2) Set VCF for background population and settings
-		VCFSampler backgroundSampler = new VCFSampler(SIMdromSetting.BACKGROUND_VCF);
+		// all random number generators are derived from the seed in a fixed order
+		ShardCheckpoint checkpoint = null;
+		if (SIMdromSetting.OUTPUT_SHARDS != null)
+			checkpoint = createCheckpoint();
+		long seed = checkpoint != null ? checkpoint.getSeed()
+				: SIMdromSetting.SEED != null ? SIMdromSetting.SEED : new Random().nextLong();
+		Random random = new Random(seed);
 
-		backgroundSampler.setProbability(SIMdromSetting.BACKGROUND_PROBABILITY);
+		// 2) Set VCF for background population and settings
+		String sample = null;
 		if (SIMdromSetting.ONLY_ONE_SAMPLE) {
 			VCFRandomSampleSelecter selecter;
 			if (SIMdromSetting.ONLY_ONE_SAMPLE_NAME == null)
-				selecter = new VCFRandomSampleSelecter(SIMdromSetting.BACKGROUND_VCF);
+				selecter = new VCFRandomSampleSelecter(SIMdromSetting.BACKGROUND_VCF, random);
 			else 
 				selecter = new VCFRandomSampleSelecter(SIMdromSetting.BACKGROUND_VCF, SIMdromSetting.ONLY_ONE_SAMPLE_NAME);
-			backgroundSampler.setSample(selecter.getSample());
+			sample = selecter.getSample();
+		}
+		ImmutableSet<IFilter> backgroundFilters = ImmutableSet.of();
+		if (SIMdromSetting.REMOVE_SPIKE_INS != null)
+			backgroundFilters = ImmutableSet.<IFilter> of(
+					new ExcludeFilter(SpikeInLogReader.read(SIMdromSetting.REMOVE_SPIKE_INS)));
+		List<VCFSampler> backgroundSamplers = new ArrayList<VCFSampler>();
+		for (String path : SIMdromSetting.BACKGROUND_VCFS) {
+			backgroundSamplers.add(createBackgroundSampler(path, sample, backgroundFilters));
+			backgroundSamplers.get(backgroundSamplers.size() - 1).setRandom(new Random(random.nextLong()));
+		}
+		VCFSampler backgroundSampler = backgroundSamplers.get(0);
+		DeNovoSampler deNovoSampler = null;
+		if (SIMdromSetting.USE_DE_NOVO) {
+			if (SIMdromSetting.DE_NOVO_SIGNATURE != null)
+				deNovoSampler = createSignatureDeNovoSampler(new Random(random.nextLong()));
+			else
+				deNovoSampler = new DeNovoSampler(SIMdromSetting.DE_NOVO_RATE, SIMdromSetting.REFERENCE,
+						SIMdromSetting.DE_NOVO_INTERVALS, new Random(random.nextLong()));
+			// de novo mutations of a trio only belong to the child
+			deNovoSampler.setSamples(backgroundSampler.getSampleNames(), SIMdromSetting.TRIO
+					? ImmutableSet.of(VCFSampler.CHILD) : backgroundSampler.getSampleNames());
+		}
+
+		// 3) Set VCF for mutation (if set) and settings
+		List<VCFSampler> mutationSamplers = new ArrayList<VCFSampler>();
+		for (String path : SIMdromSetting.MUTATIONS_VCFS) {
+			mutationSamplers.add(createMutationSampler(path));
+			mutationSamplers.get(mutationSamplers.size() - 1).setRandom(new Random(random.nextLong()));
 		}
+
+		// 4) spike in and write out
+		boolean log = SIMdromSetting.SPLIKE_IN_LOGFILE != null;
+		Set<VariantContext> vcLogs;
+		long outputBytes;
+		if (SIMdromSetting.isParallel()) {
+			ParallelSpikeIn spikein = new ParallelSpikeIn(backgroundSamplers, mutationSamplers, deNovoSampler, log);
+			spikein.setThreads(SIMdromSetting.THREADS);
+			spikein.setSeed(random.nextLong());
+			spikein.setCheckpoint(checkpoint);
+			if (SIMdromSetting.OUTPUT_SHARDS != null)
+				outputBytes = writeOutputShards(spikein);
+			else
+				outputBytes = writeParallel(spikein);
+			vcLogs = spikein.getVcLogs();
+			spikein.close();
+		} else {
+			backgroundSampler.setDeNovoGenerator(deNovoSampler);
+			backgroundSampler.setDecodeThreads(SIMdromSetting.DECODE_THREADS);
+			SpikeIn spikein = new SpikeIn(backgroundSampler, mutationSamplers.isEmpty() ? null : mutationSamplers.get(0),
+					log);
+			outputBytes = write(spikein);
+			vcLogs = spikein.getVcLogs();
+			spikein.close();
+		}
+
+		// 5) write log if set
+		if (log) {
+			VCFTSVWriter logWriter = new VCFTSVWriter(SIMdromSetting.SPLIKE_IN_LOGFILE);
+			boolean header = false;
+			for (VariantContext vc : vcLogs) {
+				if (!header) {
+					logWriter.writeHeader(vc);
+					header = true;
+				}
+				logWriter.add(vc);
+			}
+			logWriter.close();
+		}
+
+		// 6) write pedigree of the trio
+		if (SIMdromSetting.TRIO) {
+			PEDWriter pedWriter = new PEDWriter(SIMdromSetting.PEDIGREE, "SIMdrom");
+			pedWriter.addFounder(VCFSampler.FATHER, 1, 1);
+			pedWriter.addFounder(VCFSampler.MOTHER, 2, 1);
+			pedWriter.add(VCFSampler.CHILD, VCFSampler.FATHER, VCFSampler.MOTHER, 0, 2);
+			pedWriter.close();
+		}
+
+		// 7) write metrics if set
+		if (SIMdromSetting.METRICS_REPORT != null) {
+			metrics.getCounter("output.bytes").add(outputBytes);
+			MetricsJSONWriter metricsWriter = new MetricsJSONWriter(SIMdromSetting.METRICS_REPORT);
+			metricsWriter.write(metrics);
+			metricsWriter.close();
+		}
+		if (checkpoint != null)
+			checkpoint.close();
+		System.exit(0);
+	}
+
+	/**
+	 * Creates the folder of the output shards and starts the checkpoint in it. A resumed run gets the seed of the
+	 * checkpoint if no seed is set.
+	 */
+	private static ShardCheckpoint createCheckpoint() throws IOException {
+		File folder = new File(SIMdromSetting.OUTPUT_SHARDS);
+		if (!folder.isDirectory() && !folder.mkdirs())
+			throw new IOException("Cannot create folder " + folder + " of the output shards.");
+		ShardCheckpoint checkpoint = new ShardCheckpoint(new File(folder, ShardCheckpoint.FILE_NAME));
+		long seed;
+		if (SIMdromSetting.SEED != null)
+			seed = SIMdromSetting.SEED;
+		else if (SIMdromSetting.RESUME && checkpoint.getSeed() != null)
+			seed = checkpoint.getSeed();
+		else
+			seed = new Random().nextLong();
+		checkpoint.start(seed, SIMdromSetting.FINGERPRINT, SIMdromSetting.RESUME);
+		return checkpoint;
+	}
+
+	private static VCFSampler createBackgroundSampler(String path, String sample, ImmutableSet<IFilter> filters) {
+		VCFSampler backgroundSampler = new VCFSampler(path);
+		backgroundSampler.setName("background");
+		backgroundSampler.setFilters(filters);
+		backgroundSampler.setSampled(SIMdromSetting.SAMPLED_BACKGROUND);
+		backgroundSampler.setInfoProjection(getInfoProjection());
+		backgroundSampler.setInflateThreads(SIMdromSetting.INFLATE_THREADS);
+
+		backgroundSampler.setProbability(SIMdromSetting.BACKGROUND_PROBABILITY);
+		if (sample != null)
+			backgroundSampler.setSample(sample);
 		if (SIMdromSetting.BACKGROUND_ALLELE_FREQUENCY_IDENTIFIER != null) {
-			backgroundSampler.setAFIdentifier(SIMdromSetting.BACKGROUND_ALLELE_FREQUENCY_IDENTIFIER);
+			backgroundSampler.setAFIdentifiers(SIMdromSetting.BACKGROUND_ALLELE_FREQUENCY_IDENTIFIER);
 		}
 		if (SIMdromSetting.BACKGROUND_ALT_ALLELE_COUNT != null && SIMdromSetting.BACKGROUND_ALLELE_COUNT != null) {
-			backgroundSampler.setACIdentifier(SIMdromSetting.BACKGROUND_ALT_ALLELE_COUNT);
-			backgroundSampler.setANIdentifier(SIMdromSetting.BACKGROUND_ALLELE_COUNT);
+			backgroundSampler.setACIdentifiers(SIMdromSetting.BACKGROUND_ALT_ALLELE_COUNT);
+			backgroundSampler.setANIdentifiers(SIMdromSetting.BACKGROUND_ALLELE_COUNT);
 		}
+		backgroundSampler.setGenotypeFrequencies(SIMdromSetting.BACKGROUND_GENOTYPE_FREQUENCIES);
+		if (SIMdromSetting.BACKGROUND_GENOTYPE_SAMPLES != null)
+			backgroundSampler.setGenotypeSamples(SIMdromSetting.BACKGROUND_GENOTYPE_SAMPLES);
 		if (SIMdromSetting.BACKGROUND_VARIANT_NUMBER > 0) {
 			backgroundSampler.setVariantsAmount(SIMdromSetting.BACKGROUND_VARIANT_NUMBER);
 		}
+		if (SIMdromSetting.BACKGROUND_ALLELE_FREQUENCY_BINS != null)
+			backgroundSampler.setBins(SIMdromSetting.BACKGROUND_ALLELE_FREQUENCY_BINS);
 		if (SIMdromSetting.INTERVALS != null)
 			backgroundSampler.setIntervals(SIMdromSetting.INTERVALS);
-		if (SIMdromSetting.USE_DE_NOVO)
-			backgroundSampler.setDeNovoGenerator(new DeNovoSampler(SIMdromSetting.DE_NOVO_RATE,SIMdromSetting.REFERENCE));
+		backgroundSampler.setTrio(SIMdromSetting.TRIO);
+		backgroundSampler.setHaplotypeCopying(SIMdromSetting.HAPLOTYPE_COPYING);
+		backgroundSampler.setRecombinationRate(SIMdromSetting.RECOMBINATION_RATE);
+		return backgroundSampler;
+	}
 
-		// 3) Set VCF for mutation (if set) and settings
-		VCFSampler mutationSampler = null;
-		if (SIMdromSetting.MUTATIONS_VCF != null) {
-			mutationSampler = new VCFSampler(SIMdromSetting.MUTATIONS_VCF);
-			mutationSampler.setFilters(SIMdromSetting.MUTATIONS_FILTERS);
-			mutationSampler.setProbability(SIMdromSetting.MUTATIONS_PROBABILITY);
-			if (SIMdromSetting.MUTATIONS_ALLELE_FREQUENCY_IDENTIFIER != null) {
-				mutationSampler.setAFIdentifier(SIMdromSetting.MUTATIONS_ALLELE_FREQUENCY_IDENTIFIER);
-			}
-			if (SIMdromSetting.MUTATIONS_VARIANT_NUMBER > 0) {
-				mutationSampler.setVariantsAmount(SIMdromSetting.MUTATIONS_VARIANT_NUMBER);
-			}
-			if (SIMdromSetting.MUTATIONS_ALT_ALLELE_COUNT != null && SIMdromSetting.MUTATIONS_ALLELE_COUNT != null) {
-				mutationSampler.setACIdentifier(SIMdromSetting.MUTATIONS_ALT_ALLELE_COUNT);
-				mutationSampler.setANIdentifier(SIMdromSetting.MUTATIONS_ALLELE_COUNT);
-			}
-			if (SIMdromSetting.INTERVALS != null)
-				mutationSampler.setIntervals(SIMdromSetting.INTERVALS);
+	/**
+	 * @return De novo sampler by the signature, the context index of the reference is built first if it does not
+	 *         exist.
+	 */
+	private static DeNovoSampler createSignatureDeNovoSampler(Random random) throws IOException {
+		File indexFile = new File(SIMdromSetting.CONTEXT_INDEX);
+		if (!indexFile.exists())
+			ContextIndex.build(new File(SIMdromSetting.REFERENCE), indexFile);
+		ContextIndex index = new ContextIndex(indexFile);
+		try {
+			return new DeNovoSampler(SIMdromSetting.DE_NOVO_RATE, index, SIMdromSetting.DE_NOVO_SIGNATURE,
+					SIMdromSetting.DE_NOVO_INTERVALS, random);
+		} finally {
+			index.close();
 		}
+	}
+
+	private static InfoProjection getInfoProjection() {
+		if (SIMdromSetting.OUTPUT_INFO == null)
+			return InfoProjection.ALL;
+		return new InfoProjection(SIMdromSetting.OUTPUT_INFO);
+	}
+
+	private static VCFSampler createMutationSampler(String path) {
+		VCFSampler mutationSampler = new VCFSampler(path);
+		mutationSampler.setName("mutations");
+		mutationSampler.setFilters(SIMdromSetting.MUTATIONS_FILTERS);
+		mutationSampler.setProbability(SIMdromSetting.MUTATIONS_PROBABILITY);
+		mutationSampler.setInfoProjection(getInfoProjection());
+		mutationSampler.setInflateThreads(SIMdromSetting.INFLATE_THREADS);
+		if (SIMdromSetting.MUTATIONS_ALLELE_FREQUENCY_IDENTIFIER != null) {
+			mutationSampler.setAFIdentifiers(SIMdromSetting.MUTATIONS_ALLELE_FREQUENCY_IDENTIFIER);
+		}
+		if (SIMdromSetting.MUTATIONS_REGION_BINS != null)
+			mutationSampler.setBins(SIMdromSetting.MUTATIONS_REGION_BINS);
+		if (SIMdromSetting.MUTATIONS_VARIANT_NUMBER > 0) {
+			mutationSampler.setVariantsAmount(SIMdromSetting.MUTATIONS_VARIANT_NUMBER);
+		}
+		mutationSampler.setWeight(SIMdromSetting.MUTATIONS_WEIGHT);
+		if (SIMdromSetting.MUTATIONS_ALT_ALLELE_COUNT != null && SIMdromSetting.MUTATIONS_ALLELE_COUNT != null) {
+			mutationSampler.setACIdentifiers(SIMdromSetting.MUTATIONS_ALT_ALLELE_COUNT);
+			mutationSampler.setANIdentifiers(SIMdromSetting.MUTATIONS_ALLELE_COUNT);
+		}
+		if (SIMdromSetting.INTERVALS != null)
+			mutationSampler.setIntervals(SIMdromSetting.INTERVALS);
+		return mutationSampler;
+	}
 
-		// 4) Build writer
+	/**
+	 * Writes the output of a single background file in one stream.
+	 * 
+	 * @return written bytes
+	 */
+	private static long write(SpikeIn spikein) throws IOException {
+		// build writer
 		VariantContextWriter writer;
-		if (SIMdromSetting.OUTPUT == null) 
-			writer = new VariantContextWriterBuilder().setOutputVCFStream(System.out)
+		CountingOutputStream stdout = null;
+		PopulationSplitVariantContextWriter splitWriter = null;
+		if (SIMdromSetting.SPLIT_POPULATIONS) {
+			splitWriter = new PopulationSplitVariantContextWriter(SIMdromSetting.OUTPUT,
+					spikein.getVCFHeader().getGenotypeSamples());
+			writer = splitWriter;
+		} else if (SIMdromSetting.BGZIP) {
+			// also for the standard output or a named pipe, the index is written while writing
+			stdout = new CountingOutputStream(SIMdromSetting.OUTPUT == null ? System.out
+					: new FileOutputStream(SIMdromSetting.OUTPUT));
+			writer = new BGZFVCFWriter(stdout, spikein.getVCFHeader(),
+					SIMdromSetting.INDEX == null ? null : new File(SIMdromSetting.INDEX));
+		} else if (SIMdromSetting.OUTPUT == null) {
+			stdout = new CountingOutputStream(System.out);
+			writer = new VariantContextWriterBuilder().setOutputVCFStream(stdout)
 				.unsetOption(Options.INDEX_ON_THE_FLY).build();
-		else
+		} else
 			writer = new VariantContextWriterBuilder().setOutputFile(SIMdromSetting.OUTPUT).build();
+		writer = new MeasuredVariantContextWriter(writer);
+		ConsensusFASTAWriter consensus = SIMdromSetting.CONSENSUS_FASTA == null ? null : createConsensusWriter();
 
-		// 5) Generate spikein class
-		boolean log = SIMdromSetting.SPLIKE_IN_LOGFILE != null;
-		SpikeIn spikein = new SpikeIn(backgroundSampler, mutationSampler, log);
-
-		// 6) write out VCF header
+		// write out VCF header
 		writer.writeHeader(spikein.getVCFHeader());
 
-		// 7) spike in and write out
+		// spike in and write out
 		while (spikein.hasNext()) {
 			VariantContext vc = spikein.next();
-			if (vc == null)
-				break;
 			writer.add(vc);
+			if (consensus != null)
+				consensus.add(vc);
 		}
+		writer.close();
+		if (consensus != null)
+			consensus.close();
 
-		// 8) write log if set
-		if (log) {
-			VCFTSVWriter logWriter = new VCFTSVWriter(SIMdromSetting.SPLIKE_IN_LOGFILE);
-			boolean header = false;
-			for (VariantContext vc : spikein.getVcLogs()) {
-				if (!header) {
-					logWriter.writeHeader(vc);
-					header = true;
-				}
-				logWriter.add(vc);
-			}
-			logWriter.close();
+		if (stdout != null)
+			return stdout.getCount();
+		long bytes = 0;
+		if (splitWriter != null)
+			for (File file : splitWriter.getFiles())
+				bytes += file.length();
+		else
+			bytes = new File(SIMdromSetting.OUTPUT).length();
+		return bytes;
+	}
+
+	/**
+	 * Samples several background files in parallel into shards and puts them together in the output.
+	 * 
+	 * @return written bytes
+	 */
+	private static long writeParallel(ParallelSpikeIn spikein) throws IOException {
+		File folder;
+		if (SIMdromSetting.OUTPUT == null)
+			folder = Files.createTempDirectory("simdrom").toFile();
+		else
+			folder = Files.createTempDirectory(new File(SIMdromSetting.OUTPUT).getAbsoluteFile().getParentFile().toPath(),
+					".simdrom").toFile();
+		List<File> shards = spikein.writeShards(folder);
+
+		long bytes = concatenate(spikein, shards, Collections.nCopies(shards.size(), 0L));
+		if (SIMdromSetting.CONSENSUS_FASTA != null)
+			writeConsensus(spikein, shards);
+
+		for (File shard : shards)
+			shard.delete();
+		folder.delete();
+		return bytes;
+	}
+
+	/**
+	 * Writes one VCF per contig or chunk into the {@link SIMdromSetting#OUTPUT_SHARDS} folder with a manifest of their
+	 * order and puts them together if {@link SIMdromSetting#CONCATENATE} is set.
+	 * 
+	 * @return written bytes
+	 */
+	private static long writeOutputShards(ParallelSpikeIn spikein) throws IOException {
+		File folder = new File(SIMdromSetting.OUTPUT_SHARDS);
+		spikein.setShardSize(SIMdromSetting.SHARD_SIZE);
+		ShardManifest manifest = spikein.writeOutputShards(folder);
+		manifest.write(new File(folder, ShardManifest.FILE_NAME));
+
+		long bytes = 0;
+		for (File shard : manifest.getFiles())
+			bytes += shard.length();
+		if (SIMdromSetting.CONCATENATE)
+			bytes += concatenate(spikein, manifest.getFiles(), manifest.getDataOffsets());
+		if (SIMdromSetting.CONSENSUS_FASTA != null)
+			writeConsensus(spikein, manifest.getFiles());
+		return bytes;
+	}
+
+	private static ConsensusFASTAWriter createConsensusWriter() throws IOException {
+		List<File> files = new ArrayList<File>();
+		for (String path : SIMdromSetting.CONSENSUS_FASTA)
+			files.add(new File(path));
+		return new ConsensusFASTAWriter(new File(SIMdromSetting.REFERENCE), files, SIMdromSetting.CONSENSUS_SAMPLE);
+	}
+
+	/**
+	 * Writes the {@link SIMdromSetting#CONSENSUS_FASTA} of the shards in output order. The shards of
+	 * {@link ParallelSpikeIn#writeShards(File)} have no header, so the lines are decoded with the output header.
+	 */
+	private static void writeConsensus(ParallelSpikeIn spikein, List<File> shards) throws IOException {
+		ConsensusFASTAWriter consensus = createConsensusWriter();
+		// the records are written by htsjdk, so they have the current version
+		VCFCodec codec = new VCFCodec();
+		codec.setVCFHeader(spikein.getVCFHeader(), VCFHeaderVersion.VCF4_2);
+		for (File shard : shards) {
+			BufferedReader reader = new BufferedReader(
+					new InputStreamReader(new BlockCompressedInputStream(shard), "UTF-8"));
+			String line;
+			while ((line = reader.readLine()) != null)
+				if (!line.startsWith("#"))
+					consensus.add(codec.decode(line));
+			reader.close();
 		}
+		consensus.close();
+	}
 
-		// 9) close properly and exit properly
-		writer.close();
-		spikein.close();
-		System.exit(0);
+	/**
+	 * Puts the shards together into the {@link SIMdromSetting#OUTPUT} or the standard output. The tabix index of a
+	 * bgzipped output is written to {@link SIMdromSetting#INDEX} if set.
+	 * 
+	 * @return written bytes
+	 */
+	private static long concatenate(ParallelSpikeIn spikein, List<File> shards, List<Long> dataOffsets)
+			throws IOException {
+		CountingOutputStream output = new CountingOutputStream(SIMdromSetting.OUTPUT == null ? System.out
+				: new BufferedOutputStream(new FileOutputStream(SIMdromSetting.OUTPUT)));
+		ShardConcatenator.concatenate(spikein.getVCFHeader(), shards, dataOffsets, output, SIMdromSetting.BGZIP,
+				SIMdromSetting.INDEX == null ? null : new File(SIMdromSetting.INDEX));
+		return output.getCount();
 	}
 }
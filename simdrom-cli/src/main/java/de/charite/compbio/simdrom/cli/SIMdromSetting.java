@@ -4,7 +4,10 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -20,16 +23,36 @@ import org.apache.commons.cli.Option;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
 
+import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.Hashing;
+import com.google.common.primitives.Doubles;
+import com.google.common.primitives.Longs;
 
 import de.charite.compbio.simdrom.cli.exception.MissingOptionsException;
 import de.charite.compbio.simdrom.cli.exception.NotAllowedCombinationOfOptionsException;
+import de.charite.compbio.simdrom.cli.exception.WrongAlleleFrequencyBinsException;
 import de.charite.compbio.simdrom.cli.exception.WrongIntervalFormatException;
+import de.charite.compbio.simdrom.cli.exception.WrongNumberOfIdentifiersException;
 import de.charite.compbio.simdrom.filter.IFilter;
 import de.charite.compbio.simdrom.filter.InfoFieldFilter;
+import de.charite.compbio.simdrom.filter.TargetRegionFilter;
 import de.charite.compbio.simdrom.interval.SAMFileHeaderBuilder;
+import de.charite.compbio.simdrom.interval.TargetRegions;
+import de.charite.compbio.simdrom.io.reader.SignatureReader;
+import de.charite.compbio.simdrom.io.reader.TargetRegionReader;
+import de.charite.compbio.simdrom.io.reader.VCFInputResolver;
+import de.charite.compbio.simdrom.io.reader.WeightTableReader;
+import de.charite.compbio.simdrom.io.writer.ShardManifest;
+import de.charite.compbio.simdrom.sampler.haplotype.HaplotypeCopyingModel;
+import de.charite.compbio.simdrom.sampler.selection.AlleleFrequencyBins;
+import de.charite.compbio.simdrom.sampler.selection.RegionBins;
+import de.charite.compbio.simdrom.sampler.vcf.VariantWeight;
 import htsjdk.samtools.util.Interval;
 import htsjdk.samtools.util.IntervalList;
+import htsjdk.samtools.util.IntervalTreeMap;
+import htsjdk.tribble.util.TabixUtils;
 
 /**
  * Command line options class for the SIMdrom.
@@ -40,13 +63,36 @@ import htsjdk.samtools.util.IntervalList;
 public class SIMdromSetting {
 
 	/**
-	 * VCF of the background mutation. These mutations are used to sample a new mutation file. Required.
+	 * VCF of the background mutation. These mutations are used to sample a new mutation file. Required. The first
+	 * file if {@link SIMdromSetting#BACKGROUND_VCFS} has several.
 	 */
 	public static String BACKGROUND_VCF;
 	/**
-	 * If set, mutations of these file are spiked in. Optional.
+	 * All VCF files of the background, e.g. one per chromosome.
+	 */
+	public static ImmutableList<String> BACKGROUND_VCFS;
+	/**
+	 * If set, mutations of these file are spiked in. Optional. The first file if
+	 * {@link SIMdromSetting#MUTATIONS_VCFS} has several.
 	 */
 	public static String MUTATIONS_VCF;
+	/**
+	 * All VCF files of the mutations. Empty if no mutations are spiked in.
+	 */
+	public static ImmutableList<String> MUTATIONS_VCFS = ImmutableList.of();
+	/**
+	 * Number of threads to sample several background files.
+	 */
+	public static int THREADS = Runtime.getRuntime().availableProcessors();
+	/**
+	 * Number of threads to decode and filter the records of a single background file. 1 to decode them while reading.
+	 */
+	public static int DECODE_THREADS = 1;
+	/**
+	 * Number of threads per input file to inflate the blocks of bgzipped VCFs ahead of the parsing. 0 to inflate them
+	 * while parsing.
+	 */
+	public static int INFLATE_THREADS = 0;
 	/**
 	 * Probability so choose a variant in the {@link SIMdromSetting#BACKGROUND_VCF}.
 	 */
@@ -72,29 +118,84 @@ public class SIMdromSetting {
 	 */
 	public static String ONLY_ONE_SAMPLE_NAME;
 	/**
-	 * Identifier in the info-String of the allele frequency in the {@link SIMdromSetting#BACKGROUND_VCF} file.
+	 * Identifiers in the info-String of the allele frequency in the {@link SIMdromSetting#BACKGROUND_VCF} file. One
+	 * individual is sampled per identifier.
+	 */
+	public static ImmutableList<String> BACKGROUND_ALLELE_FREQUENCY_IDENTIFIER;
+	/**
+	 * Allele frequency bins with exact variant counts in the {@link SIMdromSetting#BACKGROUND_VCF}. The last bin takes
+	 * the rest of the {@link SIMdromSetting#BACKGROUND_VARIANT_NUMBER}. null if not set.
+	 */
+	public static AlleleFrequencyBins BACKGROUND_ALLELE_FREQUENCY_BINS;
+	/**
+	 * Identifier in the info-String of the allele frequency of the {@link SIMdromSetting#BACKGROUND_ALLELE_FREQUENCY_BINS}.
+	 */
+	public static String BACKGROUND_BIN_IDENTIFIER = "AF";
+	/**
+	 * Weight of the mutations for the {@link SIMdromSetting#MUTATIONS_VARIANT_NUMBER}. null for a uniform selection.
+	 */
+	public static VariantWeight MUTATIONS_WEIGHT;
+	/**
+	 * Target regions (e.g. genes) of the mutations. Only mutations in these regions are spiked in. null if not set.
+	 */
+	public static TargetRegions MUTATIONS_REGIONS;
+	/**
+	 * Exact number of mutations per region of the {@link SIMdromSetting#MUTATIONS_REGIONS}. null if not set.
+	 */
+	public static RegionBins MUTATIONS_REGION_BINS;
+	/**
+	 * Identifiers in the info-String of the allele frequency in the {@link SIMdromSetting#MUTATIONS_VCF} file.
 	 */
-	public static String BACKGROUND_ALLELE_FREQUENCY_IDENTIFIER;
+	public static ImmutableList<String> MUTATIONS_ALLELE_FREQUENCY_IDENTIFIER;
 	/**
-	 * Identifier in the info-String of the allele frequency in the {@link SIMdromSetting#MUTATIONS_VCF} file.
+	 * Identifiers in the info-String of the ALT allele count in the {@link SIMdromSetting#BACKGROUND_VCF} file. One
+	 * individual is sampled per identifier.
 	 */
-	public static String MUTATIONS_ALLELE_FREQUENCY_IDENTIFIER;
+	public static ImmutableList<String> BACKGROUND_ALT_ALLELE_COUNT;
 	/**
-	 * Identifier in the info-String of the ALT allele count in the {@link SIMdromSetting#MUTATIONS_VCF} file.
+	 * Identifiers in the info-String of the ALT allele count in the {@link SIMdromSetting#MUTATIONS_VCF} file.
 	 */
-	public static String BACKGROUND_ALT_ALLELE_COUNT;
+	public static ImmutableList<String> MUTATIONS_ALT_ALLELE_COUNT;
 	/**
-	 * Identifier in the info-String of the ALT allele count in the {@link SIMdromSetting#BACKGROUND_VCF} file.
+	 * Identifiers in the info-String of the all allele count in the {@link SIMdromSetting#BACKGROUND_VCF} file. Same
+	 * order as {@link SIMdromSetting#BACKGROUND_ALT_ALLELE_COUNT}.
 	 */
-	public static String MUTATIONS_ALT_ALLELE_COUNT;
+	public static ImmutableList<String> BACKGROUND_ALLELE_COUNT;
 	/**
-	 * Identifier in the info-String of the all allele count in the {@link SIMdromSetting#MUTATIONS_VCF} file.
+	 * Identifiers in the info-String of the all allele count in the {@link SIMdromSetting#MUTATIONS_VCF} file. Same
+	 * order as {@link SIMdromSetting#MUTATIONS_ALT_ALLELE_COUNT}.
 	 */
-	public static String BACKGROUND_ALLELE_COUNT;
+	public static ImmutableList<String> MUTATIONS_ALLELE_COUNT;
 	/**
-	 * Identifier in the info-String of the all allele count in the {@link SIMdromSetting#BACKGROUND_VCF} file.
+	 * If set, the allele frequencies of the {@link SIMdromSetting#BACKGROUND_VCF} are counted from its genotypes.
 	 */
-	public static String MUTATIONS_ALLELE_COUNT;
+	public static boolean BACKGROUND_GENOTYPE_FREQUENCIES = false;
+	/**
+	 * Samples whose genotypes are counted for {@link SIMdromSetting#BACKGROUND_GENOTYPE_FREQUENCIES}. All samples if
+	 * <code>null</code>.
+	 */
+	public static ImmutableList<String> BACKGROUND_GENOTYPE_SAMPLES;
+	/**
+	 * If set, every sampled population is written into its own file next to the {@link SIMdromSetting#OUTPUT}.
+	 */
+	public static boolean SPLIT_POPULATIONS = false;
+	/**
+	 * If set, a trio (father, mother and child) is sampled instead of a single individual.
+	 */
+	public static boolean TRIO = false;
+	/**
+	 * If set, one individual is sampled by copying two haplotypes of the phased {@link SIMdromSetting#BACKGROUND_VCF}
+	 * with recombination.
+	 */
+	public static boolean HAPLOTYPE_COPYING = false;
+	/**
+	 * Population scaled recombination rate per base pair of the {@link SIMdromSetting#HAPLOTYPE_COPYING}.
+	 */
+	public static double RECOMBINATION_RATE = HaplotypeCopyingModel.DEFAULT_RECOMBINATION_RATE;
+	/**
+	 * PED file of the trio. Next to the {@link SIMdromSetting#OUTPUT} if not set.
+	 */
+	public static String PEDIGREE;
 	/**
 	 * If set, generate deNovo mutations.
 	 */
@@ -107,6 +208,22 @@ public class SIMdromSetting {
 	 * Reference file
 	 */
 	public static String REFERENCE;
+	/**
+	 * Consensus FASTA of the output, one file or two files for the haplotypes. Not written if <code>null</code>.
+	 */
+	public static ImmutableList<String> CONSENSUS_FASTA;
+	/**
+	 * Sample of the {@link SIMdromSetting#CONSENSUS_FASTA}. The first sample of the output if <code>null</code>.
+	 */
+	public static String CONSENSUS_SAMPLE;
+	/**
+	 * Mutational signature of the de novo mutations, weight per substitution channel. null to place them uniformly.
+	 */
+	public static double[] DE_NOVO_SIGNATURE;
+	/**
+	 * Positions of the {@link SIMdromSetting#REFERENCE} by trinucleotide context, built if it does not exist.
+	 */
+	public static String CONTEXT_INDEX;
 	/**
 	 * Spike in log file to get informations about the spike in.
 	 */
@@ -115,14 +232,76 @@ public class SIMdromSetting {
 	 * Intervals. only write out at these points.
 	 */
 	public static IntervalList INTERVALS;
+	/**
+	 * Intervals of the de novo mutations: the {@link SIMdromSetting#INTERVALS} within the regions of the
+	 * <code>--de-novo-regions</code>. null for the whole reference.
+	 */
+	public static List<Interval> DE_NOVO_INTERVALS;
 	/**
 	 * Output file. null if standard out.
 	 */
 	public static String OUTPUT;
+	/**
+	 * If true the output is bgzipped, also if it is written to the standard output. Set by default for
+	 * {@link SIMdromSetting#OUTPUT} files ending with <code>.gz</code> or <code>.bgz</code>.
+	 */
+	public static boolean BGZIP = false;
+	/**
+	 * Path of the tabix index of a bgzipped output, written together with the output. Default is the
+	 * {@link SIMdromSetting#OUTPUT} with <code>.tbi</code> suffix. null if not indexed.
+	 */
+	public static String INDEX;
+	/**
+	 * INFO fields of the output. Empty to drop all. null to keep all.
+	 */
+	public static ImmutableSet<String> OUTPUT_INFO;
+	/**
+	 * Folder of the output shards, one bgzipped VCF per contig or chunk. null if not sharded.
+	 */
+	public static String OUTPUT_SHARDS;
+	/**
+	 * Length of the chunks of the {@link SIMdromSetting#OUTPUT_SHARDS} in bases. 0 for one shard per contig.
+	 */
+	public static long SHARD_SIZE = 0;
+	/**
+	 * If true the {@link SIMdromSetting#OUTPUT_SHARDS} are put together into the {@link SIMdromSetting#OUTPUT} too.
+	 */
+	public static boolean CONCATENATE = false;
+	/**
+	 * If true the {@link SIMdromSetting#BACKGROUND_VCFS} are an already sampled individual (e.g. an earlier output),
+	 * which is passed through.
+	 */
+	public static boolean SAMPLED_BACKGROUND = false;
+	/**
+	 * Spike in log of an earlier run. Its mutations are removed from the {@link SIMdromSetting#SAMPLED_BACKGROUND}.
+	 * null if not set.
+	 */
+	public static String REMOVE_SPIKE_INS;
+	/**
+	 * Seed of all random number generators. null for a random seed.
+	 */
+	public static Long SEED;
+	/**
+	 * If true the shards in the checkpoint of the {@link SIMdromSetting#OUTPUT_SHARDS} are kept and only the others are
+	 * sampled.
+	 */
+	public static boolean RESUME = false;
+	/**
+	 * Fingerprint of the options that change the output shards, to check that a run is resumed with the same settings.
+	 */
+	public static String FINGERPRINT;
 	/**
 	 * Mutation filter
 	 */
 	public static ImmutableSet<IFilter> MUTATIONS_FILTERS;
+	/**
+	 * If set, counters and stage timings of the run are written as JSON into this file.
+	 */
+	public static String METRICS_REPORT;
+	/**
+	 * If set, counters and stage timings are exposed over JMX while running.
+	 */
+	public static boolean METRICS_JMX = false;
 
 	/**
 	 * parse the option arguments of the command line and set the static fields.
@@ -139,13 +318,22 @@ public class SIMdromSetting {
 		options.addOption(Option.builder("h").longOpt("help").desc("Show this help message").build());
 
 		// background vcf
-		options.addOption(Option.builder("b").longOpt("background-population").hasArg().required()
-				.desc("VCF of the background population. variants will be used to sample a new mutation file.")
+		options.addOption(Option.builder("b").longOpt("background-population").hasArgs().required()
+				.desc("VCF of the background population. variants will be used to sample a new mutation file. "
+						+ "Can be several files, a folder or a glob (e.g. 'ALL.chr*.vcf.gz'), which are sampled in parallel.")
 				.build());
 
 		// mutations vcf
-		options.addOption(
-				Option.builder("m").longOpt("mutations").hasArg().desc("Optional. Mutation VCF to spike in.").build());
+		options.addOption(Option.builder("m").longOpt("mutations").hasArgs()
+				.desc("Optional. Mutation VCF to spike in. Can be several files, a folder or a glob.").build());
+
+		// threads
+		options.addOption(Option.builder().longOpt("threads").hasArg()
+				.desc("Default number of cores. Threads to sample several background files in parallel.").build());
+		options.addOption(Option.builder().longOpt("decode-threads").hasArg()
+				.desc("Optional. Threads that decode and filter the records of a single background file. Default 1, records are decoded while reading.").build());
+		options.addOption(Option.builder().longOpt("inflate-threads").hasArg()
+				.desc("Optional. Threads per bgzipped input file that inflate the next blocks while the records are parsed. Default 0, blocks are inflated while parsing.").build());
 
 		// background probability
 		options.addOption(Option.builder().longOpt("background-probability").hasArg()
@@ -155,6 +343,14 @@ public class SIMdromSetting {
 		options.addOption(Option.builder().longOpt("background-variants-amount").hasArg()
 				.desc("Optional. Choose exact the given number of variants in the background population.").build());
 
+		options.addOption(Option.builder().longOpt("background-allele-frequency-bins").hasArg()
+				.desc("Optional. Choose exact variant counts per allele frequency bin, e.g. 0.001:40,0.05:200 for 40 variants with AF<0.001 and 200 with 0.001<=AF<0.05. "
+						+ "With --background-variants-amount the rest of the variants is chosen with AF>=0.05. The achieved counts per bin are in the --metrics.")
+				.build());
+		options.addOption(Option.builder().longOpt("background-bin-identifier").hasArg()
+				.desc("Default AF. Identifier of the allele frequency in the info string of the background VCF for --background-allele-frequency-bins.")
+				.build());
+
 		// mutations probability
 		options.addOption(Option.builder().longOpt("mutations-probability").hasArg()
 				.desc("Default 1.0. Choose mutations with this probability.").build());
@@ -162,49 +358,122 @@ public class SIMdromSetting {
 		// background exact counts
 		options.addOption(Option.builder().longOpt("mutations-variants-amount").hasArg()
 				.desc("Optional. Choose exact the given number of variants in the mutation population.").build());
+		options.addOption(Option.builder().longOpt("mutations-weight-identifier").hasArg()
+				.desc("Optional. Choose the --mutations-variants-amount by the weight in this numeric info field of the mutations VCF instead of uniformly. Mutations without the field are not chosen.")
+				.build());
+		options.addOption(Option.builder().longOpt("mutations-weight-table").hasArg()
+				.desc("Optional. Choose the --mutations-variants-amount by weights per info value instead of uniformly. Tab separated file with info field, value and weight per line, e.g. CLNREVSTAT, reviewed_by_expert_panel, 10. Other values weight 1.")
+				.build());
+
+		options.addOption(Option.builder().longOpt("mutations-regions").hasArg()
+				.desc("Optional. Spike in only mutations in these target regions, e.g. the genes of a panel. BED file (regions with the same name in column 4 are one region) or GTF file (.gtf, genes by gene_name), can be gzipped.")
+				.build());
+		options.addOption(Option.builder().longOpt("mutations-per-region").hasArg()
+				.desc("Optional. Choose exact the given number of mutations in every region of --mutations-regions, e.g. one per gene.")
+				.build());
 
 		// only one sample
 		options.addOption(Option.builder().longOpt("single-sample").hasArg().optionalArg(true)
 				.desc("Default false. If present, a random sample will be chosen of the background VCF.").build());
 
 		// background allele frequency identifier
-		options.addOption(Option.builder("bAF").longOpt("background-allele-frequency-identifier").hasArg()
-				.desc("Optional. If set, the identifier in the info string of the background VCF will be used as single probabilities to call variants.")
+		options.addOption(Option.builder("bAF").longOpt("background-allele-frequency-identifier").hasArgs()
+				.desc("Optional. If set, the identifier in the info string of the background VCF will be used as single probabilities to call variants. "
+						+ "Several identifiers (space or comma separated) sample one individual per identifier in the same pass.")
 				.build());
 
 		// mutations allele frequency identifier
-		options.addOption(Option.builder("mAF").hasArg().longOpt("mutations-allele-frequency-identifier")
+		options.addOption(Option.builder("mAF").hasArgs().longOpt("mutations-allele-frequency-identifier")
 				.desc("Optional. If set, the identifier in the info string of the mutations VCF will be used as single probabilities to call variants.")
 				.build());
 
 		// background allele ALT allele count
-		options.addOption(Option.builder("bAC").hasArg().longOpt("background-alt-allele-count")
-				.desc("Optional. If set, the identifier in the info string of the background VCF will be used to compute single probabilities per variant. (bAC/bAN)")
+		options.addOption(Option.builder("bAC").hasArgs().longOpt("background-alt-allele-count")
+				.desc("Optional. If set, the identifier in the info string of the background VCF will be used to compute single probabilities per variant. (bAC/bAN) "
+						+ "Several identifiers sample one individual per bAC/bAN pair in the same pass.")
 				.build());
 
 		// mutations allele ALT allele count
-		options.addOption(Option.builder("mAC").hasArg().longOpt("mutations-alt-allele-count")
+		options.addOption(Option.builder("mAC").hasArgs().longOpt("mutations-alt-allele-count")
 				.desc("Optional. If set, the identifier in the info string of the mutations VCF will be used to compute single probabilities per variant. (mAC/mAN)")
 				.build());
 
 		// background allele allele count
-		options.addOption(Option.builder("bAN").hasArg().longOpt("background-allele-count")
+		options.addOption(Option.builder("bAN").hasArgs().longOpt("background-allele-count")
 				.desc("Optional. If set, the identifier in the info string of the background VCF will be used to compute single probabilities per variant. (bAC/bAN)")
 				.build());
 
 		// mutations allele allele count
-		options.addOption(Option.builder("mAN").hasArg().longOpt("mutations-allele-count")
+		options.addOption(Option.builder("mAN").hasArgs().longOpt("mutations-allele-count")
 				.desc("Optional. If set, the identifier in the info string of the mutations VCF will be used to compute single probabilities per variant. (mAC/mAN)")
 				.build());
 
+		// allele frequencies of the genotypes
+		options.addOption(Option.builder().longOpt("background-genotype-frequencies")
+				.desc("Optional. Counts AC/AN of every variant from the GT fields of the background VCF instead of reading AF or AC/AN from the info string, e.g. for a cohort VCF without these fields. The individual is sampled by the Hardy-Weinberg principle like with -bAF.")
+				.build());
+		options.addOption(Option.builder().hasArgs().longOpt("background-genotype-samples")
+				.desc("Optional. Samples (space or comma separated, or a file with one sample per line) whose genotypes are counted for --background-genotype-frequencies. Default all samples.")
+				.build());
+
+		// split populations
+		options.addOption(Option.builder().longOpt("split-populations")
+				.desc("Optional. Writes every population of -bAF or -bAC/-bAN into its own VCF file next to the --output file (e.g. out.EUR_AF.vcf.gz) instead of one multi-sample VCF.")
+				.build());
+
+		// re-spike
+		options.addOption(Option.builder().longOpt("sampled-background")
+				.desc("Optional. The background VCF is already sampled, e.g. an earlier output of SIMdrom. Its variants and genotypes are passed through, so only new mutations are spiked in.")
+				.build());
+		options.addOption(Option.builder().hasArg().longOpt("remove-spike-ins")
+				.desc("Optional. Spike in log (see --spike-in-log) of the run that wrote the --sampled-background. Its mutations are removed before the new ones are spiked in.")
+				.build());
+
+		// trio
+		options.addOption(Option.builder().longOpt("trio")
+				.desc("Optional. Samples a trio in one pass: both parents by the Hardy-Weinberg principle and the child by Mendelian transmission. De novo mutations (see --de-novo) are only added to the child. A PED file is written too (see --pedigree).")
+				.build());
+		options.addOption(Option.builder().hasArg().longOpt("pedigree")
+				.desc("Optional. Path of the PED file of the trio. Default is the --output file with .ped suffix.")
+				.build());
+
+		// haplotypes
+		options.addOption(Option.builder().longOpt("haplotype-copying")
+				.desc("Optional. Samples one individual by copying two haplotypes of the phased genotypes of the background VCF (e.g. 1000 Genomes genotypes) with recombination switches, so the linkage between the variants is kept.")
+				.build());
+		options.addOption(Option.builder().hasArg().longOpt("recombination-rate")
+				.desc("Default 4e-4. Population scaled recombination rate per base pair of --haplotype-copying. The copied haplotype switches with probability 1 - exp(-rate * distance / haplotypes) between two variants.")
+				.build());
+
 		// deNovo rate
-		options.addOption(Option.builder().optionalArg(true).longOpt("de-novo")
+		options.addOption(Option.builder().hasArg().optionalArg(true).longOpt("de-novo")
 				.desc("Optional. If set, de-novo mutations are spiked in. Standard rate is 1.2*10^-8. But you can provide your own rate with this option. An indexed reference have to be set (see option --reference).")
 				.build());
 
 		// Reference file
 		options.addOption(Option.builder().hasArg().longOpt("reference")
-				.desc("Needed for option --de-novo. Please enter the paths to an indexed multi-FASTA file of your reference genome.")
+				.desc("Needed for options --de-novo and --consensus-fasta. Please enter the paths to an indexed multi-FASTA file of your reference genome.")
+				.build());
+
+		// consensus
+		options.addOption(Option.builder().hasArgs().longOpt("consensus-fasta")
+				.desc("Optional. Writes the --reference with the sampled alleles as FASTA (with .fai index) while writing the output. One file gets the alternative alleles of the sample, two files (space or comma separated) one haplotype each, e.g. as input of a read simulator.")
+				.build());
+		options.addOption(Option.builder().hasArg().longOpt("consensus-sample")
+				.desc("Optional. Sample of the output for --consensus-fasta, e.g. Child of a --trio. Default is the first sample.")
+				.build());
+
+		options.addOption(Option.builder().hasArg().longOpt("de-novo-regions")
+				.desc("Optional. Places the --de-novo mutations only in these regions, e.g. the callable regions. BED or GTF file (.gtf, genes), can be gzipped. Without it the de novo mutations are placed in the --interval if set, otherwise in the whole reference.")
+				.build());
+		options.addOption(Option.builder().hasArg().longOpt("de-novo-signature")
+				.desc("Optional. Places the --de-novo mutations by a mutational signature instead of uniformly. Tab separated file with header, the channel like A[C>T]G in the first column and the weights of a signature per column, e.g. the COSMIC SBS signatures.")
+				.build());
+		options.addOption(Option.builder().hasArg().longOpt("de-novo-signature-name")
+				.desc("Optional. Column of the signature in --de-novo-signature, e.g. SBS1. Default is the second column.")
+				.build());
+		options.addOption(Option.builder().hasArg().longOpt("context-index")
+				.desc("Optional. Index of the reference positions by trinucleotide context for --de-novo-signature. Built once if it does not exist. Default is the --reference with suffix .ctx.")
 				.build());
 
 		// spike in log
@@ -226,6 +495,43 @@ public class SIMdromSetting {
 				.desc("Optional. Writes the variants into this (bgzip) VCF file instead of printing it to the standard output.")
 				.build());
 
+		options.addOption(Option.builder().longOpt("bgzip")
+				.desc("Optional. Writes a bgzipped VCF, also to the standard output. Default for --output files ending with .gz or .bgz.")
+				.build());
+		options.addOption(Option.builder().hasArg().longOpt("index")
+				.desc("Optional. Path of the tabix index of the bgzipped output, which is written together with the output (e.g. if writing to the standard output or a named pipe). Default is the --output file with .tbi suffix.")
+				.build());
+		options.addOption(Option.builder().hasArgs().longOpt("output-info")
+				.desc("Optional. INFO fields of the output, comma separated. \"none\" drops all, \"sampling\" keeps the fields of -bAF, -bAC/-bAN, -mAF and -mAC/-mAN. The header only contains the kept fields. Default keeps all.")
+				.build());
+
+		// output shards
+		options.addOption(Option.builder().hasArg().longOpt("output-shards")
+				.desc("Optional. Writes one bgzipped and indexed VCF per contig (or per chunk, see --shard-size) into this folder, in parallel (see --threads). The order of the shards is listed in the file "
+						+ ShardManifest.FILE_NAME + " of the folder. Background files need a tabix index to be split.")
+				.build());
+		options.addOption(Option.builder().hasArg().longOpt("shard-size")
+				.desc("Optional. Length of the chunks of --output-shards in bases. Default one shard per contig.")
+				.build());
+		options.addOption(Option.builder().longOpt("concatenate")
+				.desc("Optional. Puts the --output-shards together into the --output file (or standard output) at the end. A bgzipped output is concatenated block by block without compressing again.")
+				.build());
+
+		// seed and resume
+		options.addOption(Option.builder().hasArg().longOpt("seed")
+				.desc("Optional. Seed of the random number generators. The same seed and options give the same output.")
+				.build());
+		options.addOption(Option.builder().longOpt("resume")
+				.desc("Optional. Resumes a failed run with --output-shards. Shards in the checkpoint of the folder are kept, only the other ones are sampled. Uses the seed of the checkpoint if --seed is not set.")
+				.build());
+
+		// metrics
+		options.addOption(Option.builder().hasArg().longOpt("metrics")
+				.desc("Optional. Writes counters and the time per stage (decode, filter, sample, merge, encode, compress) of the run as JSON into this file.")
+				.build());
+		options.addOption(Option.builder().longOpt("metrics-jmx")
+				.desc("Optional. Exposes counters and the time per stage over JMX while running.").build());
+
 		CommandLineParser parser = new DefaultParser();
 		try {
 			CommandLine cmd = parser.parse(options, args);
@@ -240,11 +546,58 @@ public class SIMdromSetting {
 					"mutations-allele-frequency-identifier", "mutations-allele-count");
 			checkMissingOption(cmd, "background-allele-count", "background-alt-allele-count");
 			checkMissingOption(cmd, "mutations-allele-count", "mutations-alt-allele-count");
-			checkMissingOption(cmd, "de-novo", "reference");
+			for (String opt : new String[] { "de-novo", "consensus-fasta" })
+				if (cmd.hasOption(opt) && !cmd.hasOption("reference"))
+					throw new MissingOptionsException(Arrays.asList(opt), Arrays.asList("reference"));
+			if (cmd.hasOption("consensus-sample") && !cmd.hasOption("consensus-fasta"))
+				throw new MissingOptionsException(Arrays.asList("consensus-sample"), Arrays.asList("consensus-fasta"));
+			checkNotAllowedOptions(cmd, "trio", "single-sample");
+			checkNotAllowedOptions(cmd, "trio", "background-variants-amount");
+			for (String opt : new String[] { "background-probability", "background-allele-frequency-identifier",
+					"background-alt-allele-count", "trio" })
+				checkNotAllowedOptions(cmd, "background-allele-frequency-bins", opt);
+			if (cmd.hasOption("background-bin-identifier") && !cmd.hasOption("background-allele-frequency-bins"))
+				throw new MissingOptionsException(Arrays.asList("background-bin-identifier"),
+						Arrays.asList("background-allele-frequency-bins"));
+			if (cmd.hasOption("mutations-per-region") && !cmd.hasOption("mutations-regions"))
+				throw new MissingOptionsException(Arrays.asList("mutations-per-region"),
+						Arrays.asList("mutations-regions"));
+			for (String opt : new String[] { "mutations-probability", "mutations-variants-amount",
+					"mutations-allele-frequency-identifier", "mutations-alt-allele-count", "mutations-weight-identifier",
+					"mutations-weight-table" })
+				checkNotAllowedOptions(cmd, "mutations-per-region", opt);
+			for (String opt : new String[] { "background-probability", "background-variants-amount",
+					"background-allele-frequency-identifier", "background-alt-allele-count", "single-sample", "trio",
+					"split-populations", "background-allele-frequency-bins", "sampled-background" })
+				checkNotAllowedOptions(cmd, "haplotype-copying", opt);
+			if (cmd.hasOption("recombination-rate") && !cmd.hasOption("haplotype-copying"))
+				throw new MissingOptionsException(Arrays.asList("recombination-rate"),
+						Arrays.asList("haplotype-copying"));
+			for (String opt : new String[] { "background-probability", "background-variants-amount",
+					"background-allele-frequency-identifier", "background-alt-allele-count", "single-sample", "trio",
+					"split-populations", "background-allele-frequency-bins" })
+				checkNotAllowedOptions(cmd, "sampled-background", opt);
+			for (String opt : new String[] { "background-probability", "background-variants-amount",
+					"background-allele-frequency-identifier", "background-alt-allele-count", "single-sample",
+					"split-populations", "background-allele-frequency-bins", "sampled-background",
+					"haplotype-copying" })
+				checkNotAllowedOptions(cmd, "background-genotype-frequencies", opt);
+			if (cmd.hasOption("background-genotype-samples") && !cmd.hasOption("background-genotype-frequencies"))
+				throw new MissingOptionsException(Arrays.asList("background-genotype-samples"),
+						Arrays.asList("background-genotype-frequencies"));
 
-			BACKGROUND_VCF = cmd.getOptionValue("background-population");
-			if (cmd.hasOption("mutations"))
-				MUTATIONS_VCF = cmd.getOptionValue("mutations");
+			BACKGROUND_VCFS = VCFInputResolver.resolve(Arrays.asList(cmd.getOptionValues("background-population")));
+			BACKGROUND_VCF = BACKGROUND_VCFS.get(0);
+			if (cmd.hasOption("mutations")) {
+				MUTATIONS_VCFS = VCFInputResolver.resolve(Arrays.asList(cmd.getOptionValues("mutations")));
+				MUTATIONS_VCF = MUTATIONS_VCFS.get(0);
+			}
+			if (cmd.hasOption("threads"))
+				THREADS = Integer.parseInt(cmd.getOptionValue("threads"));
+			if (cmd.hasOption("decode-threads"))
+				DECODE_THREADS = Integer.parseInt(cmd.getOptionValue("decode-threads"));
+			if (cmd.hasOption("inflate-threads"))
+				INFLATE_THREADS = Integer.parseInt(cmd.getOptionValue("inflate-threads"));
 
 			// probabilities
 			if (cmd.hasOption("background-probability")) {
@@ -257,30 +610,88 @@ public class SIMdromSetting {
 			if (cmd.hasOption("background-variants-amount")) {
 				BACKGROUND_VARIANT_NUMBER = Integer.parseInt(cmd.getOptionValue("background-variants-amount"));
 			}
+			for (String opt : new String[] { "mutations-weight-identifier", "mutations-weight-table" })
+				if (cmd.hasOption(opt) && !cmd.hasOption("mutations-variants-amount"))
+					throw new MissingOptionsException(Arrays.asList(opt), Arrays.asList("mutations-variants-amount"));
+			if (cmd.hasOption("mutations-weight-identifier") || cmd.hasOption("mutations-weight-table"))
+				MUTATIONS_WEIGHT = new VariantWeight(cmd.getOptionValue("mutations-weight-identifier"),
+						cmd.hasOption("mutations-weight-table")
+								? WeightTableReader.read(cmd.getOptionValue("mutations-weight-table")) : null);
+			if (cmd.hasOption("background-allele-frequency-bins")) {
+				if (cmd.hasOption("background-bin-identifier"))
+					BACKGROUND_BIN_IDENTIFIER = cmd.getOptionValue("background-bin-identifier");
+				BACKGROUND_ALLELE_FREQUENCY_BINS = getAlleleFrequencyBins(
+						cmd.getOptionValue("background-allele-frequency-bins"), BACKGROUND_VARIANT_NUMBER);
+				BACKGROUND_VARIANT_NUMBER = (int) BACKGROUND_ALLELE_FREQUENCY_BINS.getSize();
+			}
 			if (cmd.hasOption("mutations-variants-amount")) {
 				MUTATIONS_VARIANT_NUMBER = Integer.parseInt(cmd.getOptionValue("mutations-variants-amount"));
 			}
+			if (cmd.hasOption("mutations-regions")) {
+				MUTATIONS_REGIONS = TargetRegionReader.read(cmd.getOptionValue("mutations-regions"));
+				if (cmd.hasOption("mutations-per-region")) {
+					MUTATIONS_REGION_BINS = new RegionBins(MUTATIONS_REGIONS,
+							Long.parseLong(cmd.getOptionValue("mutations-per-region")));
+					MUTATIONS_VARIANT_NUMBER = (int) (MUTATIONS_REGIONS.size()
+							* Long.parseLong(cmd.getOptionValue("mutations-per-region")));
+				}
+			}
 			// AF identifier
 			if (cmd.hasOption("background-allele-frequency-identifier")) {
-				BACKGROUND_ALLELE_FREQUENCY_IDENTIFIER = cmd.getOptionValue("background-allele-frequency-identifier");
+				BACKGROUND_ALLELE_FREQUENCY_IDENTIFIER = getIdentifiers(cmd, "background-allele-frequency-identifier");
 			}
 			if (cmd.hasOption("mutations-allele-frequency-identifier")) {
-				MUTATIONS_ALLELE_FREQUENCY_IDENTIFIER = cmd.getOptionValue("mutations-allele-frequency-identifier");
+				MUTATIONS_ALLELE_FREQUENCY_IDENTIFIER = getIdentifiers(cmd, "mutations-allele-frequency-identifier");
 			}
 			// AC identifier
 			if (cmd.hasOption("background-alt-allele-count")) {
-				BACKGROUND_ALT_ALLELE_COUNT = cmd.getOptionValue("background-alt-allele-count");
+				BACKGROUND_ALT_ALLELE_COUNT = getIdentifiers(cmd, "background-alt-allele-count");
 			}
 			if (cmd.hasOption("mutations-alt-allele-count")) {
-				MUTATIONS_ALT_ALLELE_COUNT = cmd.getOptionValue("mutations-alt-allele-count");
+				MUTATIONS_ALT_ALLELE_COUNT = getIdentifiers(cmd, "mutations-alt-allele-count");
 			}
 			// AN identifier
 			if (cmd.hasOption("background-allele-count")) {
-				BACKGROUND_ALLELE_COUNT = cmd.getOptionValue("background-allele-count");
+				BACKGROUND_ALLELE_COUNT = getIdentifiers(cmd, "background-allele-count");
 			}
 			if (cmd.hasOption("mutations-allele-count")) {
-				MUTATIONS_ALLELE_COUNT = cmd.getOptionValue("mutations-allele-count");
+				MUTATIONS_ALLELE_COUNT = getIdentifiers(cmd, "mutations-allele-count");
+			}
+			checkSameNumberOfIdentifiers(BACKGROUND_ALT_ALLELE_COUNT, BACKGROUND_ALLELE_COUNT);
+			// allele frequencies of the genotypes
+			BACKGROUND_GENOTYPE_FREQUENCIES = cmd.hasOption("background-genotype-frequencies");
+			if (cmd.hasOption("background-genotype-samples"))
+				BACKGROUND_GENOTYPE_SAMPLES = getSamples(cmd, "background-genotype-samples");
+			checkSameNumberOfIdentifiers(MUTATIONS_ALT_ALLELE_COUNT, MUTATIONS_ALLELE_COUNT);
+			// split populations
+			if (cmd.hasOption("split-populations")) {
+				if (!cmd.hasOption("output"))
+					throw new MissingOptionsException(Arrays.asList("split-populations"), Arrays.asList("output"));
+				if (isParallel())
+					throw new NotAllowedCombinationOfOptionsException(
+							Arrays.asList("split-populations", "several background or mutation files"));
+				SPLIT_POPULATIONS = true;
+			}
+			// trio
+			if (cmd.hasOption("trio")) {
+				TRIO = true;
+				if (BACKGROUND_ALLELE_FREQUENCY_IDENTIFIER != null && BACKGROUND_ALLELE_FREQUENCY_IDENTIFIER.size() > 1)
+					throw new NotAllowedCombinationOfOptionsException(
+							Arrays.asList("trio", "several background-allele-frequency-identifier"));
+				if (BACKGROUND_ALT_ALLELE_COUNT != null && BACKGROUND_ALT_ALLELE_COUNT.size() > 1)
+					throw new NotAllowedCombinationOfOptionsException(
+							Arrays.asList("trio", "several background-alt-allele-count"));
+				if (cmd.hasOption("pedigree"))
+					PEDIGREE = cmd.getOptionValue("pedigree");
+				else if (cmd.hasOption("output"))
+					PEDIGREE = getPEDPath(cmd.getOptionValue("output"));
+				else
+					throw new MissingOptionsException(Arrays.asList("trio"), Arrays.asList("pedigree or output"));
 			}
+			// haplotypes
+			HAPLOTYPE_COPYING = cmd.hasOption("haplotype-copying");
+			if (cmd.hasOption("recombination-rate"))
+				RECOMBINATION_RATE = Double.parseDouble(cmd.getOptionValue("recombination-rate"));
 			// single sample
 			if (cmd.hasOption("single-sample")) {
 				ONLY_ONE_SAMPLE = true;
@@ -293,7 +704,28 @@ public class SIMdromSetting {
 					DE_NOVO_RATE = Double.parseDouble(cmd.getOptionValue("de-novo"));
 				}
 				REFERENCE = cmd.getOptionValue("reference");
+				if (cmd.hasOption("de-novo-signature")) {
+					DE_NOVO_SIGNATURE = SignatureReader.read(cmd.getOptionValue("de-novo-signature"),
+							cmd.getOptionValue("de-novo-signature-name"));
+					CONTEXT_INDEX = cmd.hasOption("context-index") ? cmd.getOptionValue("context-index")
+							: REFERENCE + ".ctx";
+				}
+			}
+			// consensus
+			if (cmd.hasOption("reference"))
+				REFERENCE = cmd.getOptionValue("reference");
+			if (cmd.hasOption("consensus-fasta")) {
+				CONSENSUS_FASTA = getIdentifiers(cmd, "consensus-fasta");
+				if (CONSENSUS_FASTA.size() > 2)
+					throw new NotAllowedCombinationOfOptionsException(
+							Arrays.asList("consensus-fasta", "more than two files"));
+				CONSENSUS_SAMPLE = cmd.getOptionValue("consensus-sample");
 			}
+			for (String opt : new String[] { "de-novo-signature-name", "context-index" })
+				if (cmd.hasOption(opt) && !cmd.hasOption("de-novo-signature"))
+					throw new MissingOptionsException(Arrays.asList(opt), Arrays.asList("de-novo-signature"));
+			if (cmd.hasOption("de-novo-signature") && !cmd.hasOption("de-novo"))
+				throw new MissingOptionsException(Arrays.asList("de-novo-signature"), Arrays.asList("de-novo"));
 			// spike in log
 			if (cmd.hasOption("spike-in-log"))
 				SPLIKE_IN_LOGFILE = cmd.getOptionValue("spike-in-log");
@@ -306,6 +738,12 @@ public class SIMdromSetting {
 				INTERVALS = new IntervalList(SAMFileHeaderBuilder.build());
 				INTERVALS.addall(lst);
 			}
+			if (cmd.hasOption("de-novo-regions") && !cmd.hasOption("de-novo"))
+				throw new MissingOptionsException(Arrays.asList("de-novo-regions"), Arrays.asList("de-novo"));
+			if (USE_DE_NOVO)
+				DE_NOVO_INTERVALS = getDeNovoIntervals(INTERVALS,
+						cmd.hasOption("de-novo-regions") ? TargetRegionReader.read(cmd.getOptionValue("de-novo-regions"))
+								: null);
 			// filters
 			Set<IFilter> filters = new HashSet<IFilter>();
 			if (cmd.hasOption("mutations-info-filter")) {
@@ -320,24 +758,191 @@ public class SIMdromSetting {
 					}
 				}
 			}
+			if (MUTATIONS_REGIONS != null)
+				filters.add(new TargetRegionFilter(MUTATIONS_REGIONS));
 			MUTATIONS_FILTERS = ImmutableSet.<IFilter> builder().addAll(filters).build();
 			
 			// output
 			if (cmd.hasOption("output")) {
 				OUTPUT = cmd.getOptionValue("output");
 			}
+			BGZIP = cmd.hasOption("bgzip")
+					|| (OUTPUT != null && (OUTPUT.endsWith(".gz") || OUTPUT.endsWith(".bgz")));
+			if (cmd.hasOption("index")) {
+				if (!BGZIP)
+					throw new MissingOptionsException(Arrays.asList("index"), Arrays.asList("bgzip"));
+				INDEX = cmd.getOptionValue("index");
+			} else if (BGZIP && OUTPUT != null)
+				INDEX = OUTPUT + TabixUtils.STANDARD_INDEX_EXTENSION;
+			if (cmd.hasOption("output-info"))
+				OUTPUT_INFO = getOutputInfo(getIdentifiers(cmd, "output-info"));
+			// output shards
+			if (cmd.hasOption("output-shards")) {
+				if (SPLIT_POPULATIONS)
+					throw new NotAllowedCombinationOfOptionsException(Arrays.asList("split-populations", "output-shards"));
+				OUTPUT_SHARDS = cmd.getOptionValue("output-shards");
+				if (cmd.hasOption("shard-size"))
+					SHARD_SIZE = Long.parseLong(cmd.getOptionValue("shard-size"));
+				CONCATENATE = cmd.hasOption("concatenate");
+			} else if (cmd.hasOption("shard-size"))
+				throw new MissingOptionsException(Arrays.asList("shard-size"), Arrays.asList("output-shards"));
+			else if (cmd.hasOption("concatenate"))
+				throw new MissingOptionsException(Arrays.asList("concatenate"), Arrays.asList("output-shards"));
+			// re-spike
+			SAMPLED_BACKGROUND = cmd.hasOption("sampled-background");
+			if (cmd.hasOption("remove-spike-ins")) {
+				if (!SAMPLED_BACKGROUND)
+					throw new MissingOptionsException(Arrays.asList("remove-spike-ins"),
+							Arrays.asList("sampled-background"));
+				REMOVE_SPIKE_INS = cmd.getOptionValue("remove-spike-ins");
+			}
+			// seed and resume
+			if (cmd.hasOption("seed"))
+				SEED = Long.parseLong(cmd.getOptionValue("seed"));
+			if (cmd.hasOption("resume")) {
+				if (OUTPUT_SHARDS == null)
+					throw new MissingOptionsException(Arrays.asList("resume"), Arrays.asList("output-shards"));
+				RESUME = true;
+			}
+			FINGERPRINT = getFingerprint(cmd);
+			// metrics
+			if (cmd.hasOption("metrics"))
+				METRICS_REPORT = cmd.getOptionValue("metrics");
+			METRICS_JMX = cmd.hasOption("metrics-jmx");
 		} catch (MissingOptionException e) {
 			HelpFormatter formatter = new HelpFormatter();
 			formatter.setWidth(120);
 			formatter.printHelp("SIMdrom", options);
 			System.exit(0);
 		} catch (NotAllowedCombinationOfOptionsException | MissingOptionsException | IOException
-				| WrongIntervalFormatException e) {
+				| WrongIntervalFormatException | WrongNumberOfIdentifiersException | WrongAlleleFrequencyBinsException e) {
 			e.printStackTrace();
 			System.exit(0);
 		}
 	}
 
+	/**
+	 * @return MD5 of the options without the ones that do not change the output shards of a resumed run.
+	 */
+	private static String getFingerprint(CommandLine cmd) {
+		Set<String> ignored = ImmutableSet.of("resume", "seed", "threads", "decode-threads", "inflate-threads",
+				"concatenate", "output", "bgzip", "index", "metrics", "metrics-jmx", "spike-in-log", "pedigree");
+		List<String> kept = new ArrayList<String>();
+		for (Option option : cmd.getOptions()) {
+			String name = option.getLongOpt() == null ? option.getOpt() : option.getLongOpt();
+			if (!ignored.contains(name))
+				kept.add(name + "=" + option.getValuesList());
+		}
+		Collections.sort(kept);
+		return Hashing.md5().hashString(Joiner.on('\n').join(kept), StandardCharsets.UTF_8).toString();
+	}
+
+	/**
+	 * @return <code>true</code> if there are several background or mutation files, which are sampled in parallel.
+	 */
+	public static boolean isParallel() {
+		return BACKGROUND_VCFS.size() > 1 || MUTATIONS_VCFS.size() > 1 || OUTPUT_SHARDS != null;
+	}
+
+	private static String getPEDPath(String output) {
+		for (String suffix : new String[] { ".vcf.gz", ".vcf.bgz", ".vcf" }) {
+			if (output.endsWith(suffix))
+				return output.substring(0, output.length() - suffix.length()) + ".ped";
+		}
+		return output + ".ped";
+	}
+
+	/**
+	 * @return All identifiers of the option. Values can be given space or comma separated.
+	 */
+	private static ImmutableList<String> getIdentifiers(CommandLine cmd, String option) {
+		ImmutableList.Builder<String> identifiers = ImmutableList.builder();
+		for (String value : cmd.getOptionValues(option)) {
+			for (String identifier : value.split(",")) {
+				if (!identifier.trim().isEmpty())
+					identifiers.add(identifier.trim());
+			}
+		}
+		return identifiers.build();
+	}
+
+	/**
+	 * Resolves the keywords <code>none</code> and <code>sampling</code> of the INFO fields.
+	 */
+	private static ImmutableSet<String> getOutputInfo(List<String> fields) {
+		ImmutableSet.Builder<String> output = ImmutableSet.builder();
+		for (String field : fields) {
+			if (field.equals("sampling")) {
+				for (List<String> identifiers : Arrays.asList(BACKGROUND_ALLELE_FREQUENCY_IDENTIFIER,
+						BACKGROUND_ALT_ALLELE_COUNT, BACKGROUND_ALLELE_COUNT, MUTATIONS_ALLELE_FREQUENCY_IDENTIFIER,
+						MUTATIONS_ALT_ALLELE_COUNT, MUTATIONS_ALLELE_COUNT))
+					if (identifiers != null)
+						output.addAll(identifiers);
+			} else if (!field.equals("none"))
+				output.add(field);
+		}
+		return output.build();
+	}
+
+	/**
+	 * Parses bins like <code>0.001:40,0.05:200</code>. If the variants amount is set, a last bin up to AF 1 gets the
+	 * remaining variants.
+	 */
+	private static AlleleFrequencyBins getAlleleFrequencyBins(String input, int variantsAmount)
+			throws WrongAlleleFrequencyBinsException {
+		List<Double> upperBounds = new ArrayList<Double>();
+		List<Long> counts = new ArrayList<Long>();
+		long sum = 0;
+		try {
+			for (String bin : input.split(",")) {
+				String[] split = bin.trim().split(":");
+				if (split.length != 2)
+					throw new WrongAlleleFrequencyBinsException(input);
+				upperBounds.add(Double.parseDouble(split[0]));
+				counts.add(Long.parseLong(split[1]));
+				sum += counts.get(counts.size() - 1);
+			}
+		} catch (NumberFormatException e) {
+			throw new WrongAlleleFrequencyBinsException(input);
+		}
+		if (variantsAmount > 0) {
+			if (sum > variantsAmount)
+				throw new WrongAlleleFrequencyBinsException(sum, variantsAmount);
+			upperBounds.add(Double.POSITIVE_INFINITY);
+			counts.add(variantsAmount - sum);
+		}
+		try {
+			return new AlleleFrequencyBins(BACKGROUND_BIN_IDENTIFIER, Doubles.toArray(upperBounds),
+					Longs.toArray(counts));
+		} catch (IllegalArgumentException e) {
+			throw new WrongAlleleFrequencyBinsException(input);
+		}
+	}
+
+	private static void checkSameNumberOfIdentifiers(List<String> acIdentifiers, List<String> anIdentifiers)
+			throws WrongNumberOfIdentifiersException {
+		if (acIdentifiers != null && anIdentifiers != null && acIdentifiers.size() != anIdentifiers.size())
+			throw new WrongNumberOfIdentifiersException(acIdentifiers, anIdentifiers);
+	}
+
+	/**
+	 * @return The intervals within the regions, null if both are not set.
+	 */
+	private static List<Interval> getDeNovoIntervals(IntervalList intervals, TargetRegions regions) {
+		if (regions == null)
+			return intervals == null ? null : intervals.getIntervals();
+		if (intervals == null)
+			return regions.getIntervals();
+		List<Interval> output = new ArrayList<Interval>();
+		IntervalTreeMap<Interval> tree = new IntervalTreeMap<Interval>();
+		for (Interval interval : intervals.getIntervals())
+			tree.put(interval, interval);
+		for (Interval region : regions.getIntervals())
+			for (Interval interval : tree.getOverlapping(region))
+				output.add(region.intersect(interval));
+		return output;
+	}
+
 	private static List<Interval> getIntervalOfOption(String intervalString)
 			throws IOException, WrongIntervalFormatException {
 		try {
@@ -373,6 +978,23 @@ public class SIMdromSetting {
 		return output;
 	}
 
+	/**
+	 * @return Samples of the option, read from the file if the only value is a file.
+	 */
+	private static ImmutableList<String> getSamples(CommandLine cmd, String option) throws IOException {
+		if (cmd.getOptionValues(option).length != 1 || !new File(cmd.getOptionValue(option)).isFile())
+			return getIdentifiers(cmd, option);
+		ImmutableList.Builder<String> output = ImmutableList.builder();
+		BufferedReader br = new BufferedReader(new FileReader(cmd.getOptionValue(option)));
+		String line;
+		while ((line = br.readLine()) != null) {
+			if (!line.trim().isEmpty())
+				output.add(line.trim());
+		}
+		br.close();
+		return output.build();
+	}
+
 	private static void checkNotAllowedOptions(CommandLine cmd, String... values)
 			throws NotAllowedCombinationOfOptionsException {
 		List<String> falseOptions = new ArrayList<String>();
@@ -0,0 +1,48 @@
+package de.charite.compbio.simdrom.cli.exception;
+
+/**
+ * Exception if the allele frequency bins (0.001:40,0.05:200) are formatted wrong or select more variants than the
+ * variants amount.
+ * 
+ * @author <a href="mailto:max.schubach@charite.de">Max Schubach</a>
+ *
+ */
+public class WrongAlleleFrequencyBinsException extends Exception {
+
+	/**
+	 * serial key for serialization
+	 */
+	private static final long serialVersionUID = 2817640356138473905L;
+
+	/**
+	 * Constructor that adds the misspelled string of the bins to the message.
+	 * 
+	 * @param input
+	 *            misspelled String of the bins
+	 */
+	public WrongAlleleFrequencyBinsException(String input) {
+		super(buildMessage(input));
+
+	}
+
+	/**
+	 * Constructor if the bins select more variants than the variants amount.
+	 * 
+	 * @param binCounts
+	 *            variants of all bins
+	 * @param variantsAmount
+	 *            the variants amount
+	 */
+	public WrongAlleleFrequencyBinsException(long binCounts, int variantsAmount) {
+		super("The allele frequency bins select " + binCounts + " variants, but the variants amount is only "
+				+ variantsAmount + ".");
+	}
+
+	private static String buildMessage(String input) {
+		StringBuilder message = new StringBuilder("Could not parse allele frequency bins ");
+		message.append(input);
+		message.append("! Format should be like 0.001:40,0.05:200 (upper allele frequency:variants amount).");
+		return message.toString();
+	}
+
+}
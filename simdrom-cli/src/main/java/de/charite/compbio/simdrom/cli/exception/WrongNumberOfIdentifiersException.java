@@ -0,0 +1,41 @@
+package de.charite.compbio.simdrom.cli.exception;
+
+import java.util.List;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Exception if the number of ALT allele count identifiers differs from the number of allele count identifiers.
+ *
+ * @author <a href="mailto:max.schubach@charite.de">Max Schubach</a>
+ *
+ */
+public class WrongNumberOfIdentifiersException extends Exception {
+
+	/**
+	 * serial key for serialization
+	 */
+	private static final long serialVersionUID = -4187230981245369012L;
+
+	/**
+	 * Constructor Will build a message with both lists of identifiers.
+	 *
+	 * @param acIdentifiers
+	 *            ALT allele count identifiers.
+	 * @param anIdentifiers
+	 *            allele count identifiers.
+	 */
+	public WrongNumberOfIdentifiersException(List<String> acIdentifiers, List<String> anIdentifiers) {
+		super(buildMessage(acIdentifiers, anIdentifiers));
+
+	}
+
+	private static String buildMessage(List<String> acIdentifiers, List<String> anIdentifiers) {
+		StringBuilder message = new StringBuilder("Every ALT allele count identifier needs an allele count identifier, but got ");
+		message.append(StringUtils.join(acIdentifiers, ", "));
+		message.append(" and ");
+		message.append(StringUtils.join(anIdentifiers, ", "));
+		return message.toString();
+	}
+
+}
@@ -0,0 +1,61 @@
+package de.charite.compbio.simdrom.filter;
+
+import htsjdk.variant.variantcontext.Allele;
+import htsjdk.variant.variantcontext.VariantContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import com.google.common.base.Joiner;
+
+/**
+ * Removes variants that are in a list, compared by contig, position, reference and alternative alleles. Used to take
+ * out the mutations an earlier run has spiked in (see the spike in log).
+ * 
+ * @author <a href="mailto:max.schubach@charite.de">Max Schubach</a>
+ *
+ */
+public class ExcludeFilter implements IFilter {
+
+	/**
+	 * Filter type
+	 */
+	private final FilterType filterType = FilterType.EXCLUDE_FILTER;
+	/**
+	 * Keys of the variants to remove, see {@link #getKey(String, int, String, List)}.
+	 */
+	private final Set<String> excluded;
+
+	public ExcludeFilter(Set<String> excluded) {
+		this.excluded = excluded;
+	}
+
+	/**
+	 * @return Key of a variant, like <code>1:12345:A:C,T</code>.
+	 */
+	public static String getKey(String contig, int position, String ref, List<String> alts) {
+		return contig + ":" + position + ":" + ref + ":" + Joiner.on(',').join(alts);
+	}
+
+	@Override
+	public VariantContext filter(VariantContext vc) {
+		if (excluded.isEmpty())
+			return vc;
+		List<String> alts = new ArrayList<String>(vc.getAlternateAlleles().size());
+		for (Allele alt : vc.getAlternateAlleles())
+			alts.add(alt.getDisplayString());
+		String key = getKey(vc.getContig(), vc.getStart(), vc.getReference().getDisplayString(), alts);
+		return excluded.contains(key) ? null : vc;
+	}
+
+	@Override
+	public FilterType getFilterType() {
+		return this.filterType;
+	}
+
+	@Override
+	public String toString() {
+		return filterType + "(" + excluded.size() + " variants)";
+	}
+}
@@ -11,5 +11,17 @@ public enum FilterType {
 	 * Filter that uses the VCF-INFO field with a specific key=value tag to
 	 * remove variants without this key=value.
 	 */
-	INFO_FIELD_FILTER;
+	INFO_FIELD_FILTER,
+	/**
+	 * Filter that keeps only variants starting in a region of the genome, e.g. one shard of the output.
+	 */
+	REGION_FILTER,
+	/**
+	 * Filter that removes listed variants, e.g. the mutations spiked in by an earlier run.
+	 */
+	EXCLUDE_FILTER,
+	/**
+	 * Filter that keeps only variants in target regions, e.g. the genes of a panel.
+	 */
+	TARGET_REGION_FILTER;
 }
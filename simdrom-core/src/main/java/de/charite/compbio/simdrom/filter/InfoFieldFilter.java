@@ -93,4 +93,9 @@ public class InfoFieldFilter implements IFilter {
 	public FilterType getFilterType() {
 		return this.filterType;
 	}
+
+	@Override
+	public String toString() {
+		return filterType + "(" + info + "=" + type + ")";
+	}
 }
@@ -0,0 +1,59 @@
+package de.charite.compbio.simdrom.filter;
+
+import htsjdk.samtools.util.Interval;
+import htsjdk.variant.variantcontext.VariantContext;
+
+import java.util.List;
+
+/**
+ * Keeps only variants that start in the {@link #region}. A variant overlapping two neighbouring regions is so only
+ * used once. If {@link #intervals} are set the variant has to overlap one of them too.
+ * 
+ * @author <a href="mailto:max.schubach@charite.de">Max Schubach</a>
+ *
+ */
+public class RegionFilter implements IFilter {
+
+	/**
+	 * Filter type
+	 */
+	private final FilterType filterType = FilterType.REGION_FILTER;
+	/**
+	 * Region of the start position
+	 */
+	private final Interval region;
+	/**
+	 * Intervals the variant has to overlap, all if empty.
+	 */
+	private final List<Interval> intervals;
+
+	public RegionFilter(Interval region, List<Interval> intervals) {
+		this.region = region;
+		this.intervals = intervals;
+	}
+
+	@Override
+	public VariantContext filter(VariantContext vc) {
+		if (!vc.getContig().equals(region.getContig()) || vc.getStart() < region.getStart()
+				|| vc.getStart() > region.getEnd())
+			return null;
+		if (intervals.isEmpty())
+			return vc;
+		for (Interval interval : intervals) {
+			if (interval.getContig().equals(vc.getContig()) && interval.getStart() <= vc.getEnd()
+					&& interval.getEnd() >= vc.getStart())
+				return vc;
+		}
+		return null;
+	}
+
+	@Override
+	public FilterType getFilterType() {
+		return this.filterType;
+	}
+
+	@Override
+	public String toString() {
+		return filterType + "(" + region.getContig() + ":" + region.getStart() + "-" + region.getEnd() + ")";
+	}
+}
@@ -0,0 +1,43 @@
+package de.charite.compbio.simdrom.filter;
+
+import de.charite.compbio.simdrom.interval.TargetRegions;
+import htsjdk.variant.variantcontext.VariantContext;
+
+/**
+ * Keeps only variants overlapping one of the {@link TargetRegions}, e.g. the genes of a panel.
+ * 
+ * @author <a href="mailto:max.schubach@charite.de">Max Schubach</a>
+ *
+ */
+public class TargetRegionFilter implements IFilter {
+
+	/**
+	 * Filter type
+	 */
+	private final FilterType filterType = FilterType.TARGET_REGION_FILTER;
+	/**
+	 * Regions the variant has to overlap
+	 */
+	private final TargetRegions regions;
+
+	public TargetRegionFilter(TargetRegions regions) {
+		this.regions = regions;
+	}
+
+	@Override
+	public VariantContext filter(VariantContext vc) {
+		if (regions.getRegion(vc.getContig(), vc.getStart(), vc.getEnd()) < 0)
+			return null;
+		return vc;
+	}
+
+	@Override
+	public FilterType getFilterType() {
+		return this.filterType;
+	}
+
+	@Override
+	public String toString() {
+		return filterType + "(" + regions.size() + " regions)";
+	}
+}
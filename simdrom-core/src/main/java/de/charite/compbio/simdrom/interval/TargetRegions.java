@@ -0,0 +1,84 @@
+package de.charite.compbio.simdrom.interval;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import htsjdk.samtools.util.Interval;
+import htsjdk.samtools.util.IntervalTreeMap;
+
+/**
+ * Named target regions, e.g. the genes of a panel. A region can consist of several intervals (e.g. the exons of a
+ * gene), which are added with the same name. The intervals are kept in an interval tree per contig, so the region of a
+ * variant is found in logarithmic time.
+ *
+ * @author <a href="mailto:max.schubach@charite.de">Max Schubach</a>
+ *
+ */
+public class TargetRegions {
+
+	private final List<String> names = new ArrayList<String>();
+	private final Map<String, Integer> indices = new HashMap<String, Integer>();
+	private final IntervalTreeMap<Integer> tree = new IntervalTreeMap<Integer>();
+
+	/**
+	 * Adds an interval to the region with the name, a new region is created for a new name.
+	 *
+	 * @param contig
+	 *            Contig of the interval.
+	 * @param start
+	 *            1-based inclusive start.
+	 * @param end
+	 *            1-based inclusive end.
+	 * @param name
+	 *            Name of the region.
+	 */
+	public void add(String contig, int start, int end, String name) {
+		Integer index = indices.get(name);
+		if (index == null) {
+			index = names.size();
+			names.add(name);
+			indices.put(name, index);
+		}
+		Interval interval = new Interval(contig, start, end);
+		Integer old = tree.get(interval);
+		// the same interval in two regions belongs to the first one
+		if (old == null || old > index)
+			tree.put(interval, index);
+	}
+
+	/**
+	 * @return Number of regions.
+	 */
+	public int size() {
+		return names.size();
+	}
+
+	/**
+	 * @return Name of the region.
+	 */
+	public String getName(int region) {
+		return names.get(region);
+	}
+
+	/**
+	 * @return All intervals of all regions.
+	 */
+	public List<Interval> getIntervals() {
+		return new ArrayList<Interval>(tree.keySet());
+	}
+
+	/**
+	 * @return The first region (in order of {@link #add(String, int, int, String)}) overlapping the 1-based inclusive
+	 *         positions, -1 if no region overlaps them.
+	 */
+	public int getRegion(String contig, int start, int end) {
+		int region = -1;
+		for (Integer index : tree.getOverlapping(new Interval(contig, start, end)))
+			if (region < 0 || index < region)
+				region = index;
+		return region;
+	}
+
+}
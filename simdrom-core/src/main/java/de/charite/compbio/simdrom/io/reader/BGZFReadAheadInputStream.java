@@ -0,0 +1,263 @@
+package de.charite.compbio.simdrom.io.reader;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import htsjdk.samtools.util.BlockCompressedInputStream;
+import htsjdk.samtools.util.BlockCompressedStreamConstants;
+import htsjdk.samtools.util.IOUtil;
+
+/**
+ * Reads a BGZF file and inflates the upcoming blocks on helper threads. The compressed blocks are read with a
+ * {@link FileChannel} on the calling thread and handed out to the helpers, at most two blocks per thread ahead. The
+ * inflated blocks are returned in file order, so the caller only parses while the next blocks are inflated.
+ * <p>
+ * {@link #seek(long)} and {@link #getFilePointer()} use virtual file offsets like the
+ * {@link BlockCompressedInputStream}, e.g. of a tabix index. Blocks read ahead are dropped on a seek.
+ *
+ * @author <a href="mailto:max.schubach@charite.de">Max Schubach</a>
+ *
+ */
+public class BGZFReadAheadInputStream extends InputStream {
+
+	private static final int HEADER_LENGTH = BlockCompressedStreamConstants.BLOCK_HEADER_LENGTH;
+	/** position of the block size in the header */
+	private static final int BLOCK_SIZE_OFFSET = BlockCompressedStreamConstants.BLOCK_LENGTH_OFFSET;
+	/** CRC32 and inflated size at the end of a block */
+	private static final int FOOTER_LENGTH = 8;
+
+	private final File file;
+	private final FileChannel channel;
+	private final ExecutorService executor;
+	private final int blocks;
+	private final Deque<Block> queue = new ArrayDeque<Block>();
+	private final ThreadLocal<Inflater> inflaters = new ThreadLocal<Inflater>() {
+
+		@Override
+		protected Inflater initialValue() {
+			return new Inflater(true);
+		}
+	};
+	/** address of the next block to read ahead */
+	private long nextAddress = 0;
+	/** address of the current block */
+	private long address = 0;
+	private byte[] buffer = new byte[0];
+	private int position = 0;
+
+	/**
+	 * @param threads
+	 *            Number of inflating threads.
+	 */
+	public BGZFReadAheadInputStream(File file, int threads) throws IOException {
+		this.file = file;
+		this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		this.blocks = 2 * threads;
+		this.executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "inflate");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * @return <code>true</code> if the file is BGZF compressed.
+	 */
+	public static boolean isBGZF(File file) throws IOException {
+		InputStream in = new BufferedInputStream(new FileInputStream(file));
+		try {
+			return BlockCompressedInputStream.isValidFile(in);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * @return A {@link BGZFReadAheadInputStream} for BGZF files if threads are set, otherwise the stream of
+	 *         {@link IOUtil#openFileForReading(File)}.
+	 */
+	public static InputStream open(File file, int threads) throws IOException {
+		if (threads > 0 && isBGZF(file))
+			return new BGZFReadAheadInputStream(file, threads);
+		return IOUtil.openFileForReading(file);
+	}
+
+	/**
+	 * Reads compressed blocks until the queue is full or the file is at its end.
+	 */
+	private void fill() throws IOException {
+		while (queue.size() < blocks && nextAddress < channel.size()) {
+			final byte[] compressed = readBlock(nextAddress);
+			queue.add(new Block(nextAddress, executor.submit(new Callable<byte[]>() {
+
+				@Override
+				public byte[] call() throws Exception {
+					return inflate(compressed);
+				}
+			})));
+			nextAddress += compressed.length;
+		}
+	}
+
+	private byte[] readBlock(long blockAddress) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+		readFully(header, blockAddress);
+		if (header.get(0) != BlockCompressedStreamConstants.GZIP_ID1
+				|| (header.get(1) & 0xFF) != BlockCompressedStreamConstants.GZIP_ID2)
+			throw new IOException("No BGZF block at " + blockAddress + " of " + file);
+		int size = (header.getShort(BLOCK_SIZE_OFFSET) & 0xFFFF) + 1;
+		ByteBuffer block = ByteBuffer.allocate(size);
+		header.rewind();
+		block.put(header);
+		readFully(block, blockAddress + HEADER_LENGTH);
+		return block.array();
+	}
+
+	private void readFully(ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			int read = channel.read(buffer, position);
+			if (read < 0)
+				throw new IOException("Truncated BGZF block at " + position + " of " + file);
+			position += read;
+		}
+	}
+
+	private byte[] inflate(byte[] compressed) throws DataFormatException {
+		ByteBuffer footer = ByteBuffer.wrap(compressed, compressed.length - 4, 4).order(ByteOrder.LITTLE_ENDIAN);
+		byte[] output = new byte[footer.getInt()];
+		Inflater inflater = inflaters.get();
+		inflater.reset();
+		inflater.setInput(compressed, HEADER_LENGTH, compressed.length - HEADER_LENGTH - FOOTER_LENGTH);
+		int length = 0;
+		while (length < output.length) {
+			int inflated = inflater.inflate(output, length, output.length - length);
+			if (inflated == 0 && (inflater.finished() || inflater.needsInput()))
+				throw new DataFormatException("Corrupt BGZF block of " + file);
+			length += inflated;
+		}
+		return output;
+	}
+
+	/**
+	 * Moves to the next block with data.
+	 *
+	 * @return <code>false</code> at the end of the file.
+	 */
+	private boolean nextBlock() throws IOException {
+		while (position >= buffer.length) {
+			fill();
+			if (queue.isEmpty())
+				return false;
+			Block block = queue.poll();
+			address = block.address;
+			buffer = block.get();
+			position = 0;
+		}
+		return true;
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (!nextBlock())
+			return -1;
+		return buffer[position++] & 0xFF;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0)
+			return 0;
+		if (!nextBlock())
+			return -1;
+		int read = Math.min(len, buffer.length - position);
+		System.arraycopy(buffer, position, b, off, read);
+		position += read;
+		return read;
+	}
+
+	@Override
+	public int available() throws IOException {
+		return buffer.length - position;
+	}
+
+	/**
+	 * @return Virtual file offset of the next byte.
+	 */
+	public long getFilePointer() throws IOException {
+		if (position >= buffer.length) {
+			if (!nextBlock())
+				return channel.size() << 16;
+		}
+		return (address << 16) | position;
+	}
+
+	/**
+	 * @param virtualOffset
+	 *            Virtual file offset, block address in the upper 48 bits and offset in the inflated block in the lower
+	 *            16.
+	 */
+	public void seek(long virtualOffset) throws IOException {
+		for (Block block : queue)
+			block.data.cancel(false);
+		queue.clear();
+		nextAddress = virtualOffset >>> 16;
+		buffer = new byte[0];
+		position = 0;
+		int offset = (int) (virtualOffset & 0xFFFF);
+		if (offset > 0) {
+			if (!nextBlock() || offset > buffer.length)
+				throw new IOException("Invalid virtual offset " + virtualOffset + " of " + file);
+			position = offset;
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		executor.shutdownNow();
+		channel.close();
+	}
+
+	private static class Block {
+
+		private final long address;
+		private final Future<byte[]> data;
+
+		private Block(long address, Future<byte[]> data) {
+			this.address = address;
+			this.data = data;
+		}
+
+		private byte[] get() throws IOException {
+			try {
+				return data.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException(e);
+			} catch (ExecutionException e) {
+				throw new IOException(e.getCause());
+			}
+		}
+	}
+
+}
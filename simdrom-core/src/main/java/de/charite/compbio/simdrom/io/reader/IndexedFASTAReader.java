@@ -0,0 +1,142 @@
+package de.charite.compbio.simdrom.io.reader;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads ranges of bases of an uncompressed FASTA file with a <code>.fai</code> index by positional reads of a
+ * {@link FileChannel}. The file offsets of a range are computed from the index and the line breaks are removed, so only
+ * the requested range is in memory and the reader can be shared by several cursors on the same contig.
+ *
+ * @author <a href="mailto:max.schubach@charite.de">Max Schubach</a>
+ *
+ */
+public class IndexedFASTAReader implements Closeable {
+
+	private final List<String> contigs = new ArrayList<String>();
+	private final Map<String, Entry> index = new HashMap<String, Entry>();
+	private final FileChannel channel;
+	private ByteBuffer buffer = ByteBuffer.allocate(0);
+
+	/**
+	 * @param fasta
+	 *            Uncompressed FASTA file with the index next to it (<code>fasta.fai</code>).
+	 */
+	public IndexedFASTAReader(File fasta) throws IOException {
+		File indexFile = new File(fasta.getPath() + ".fai");
+		if (!indexFile.exists())
+			throw new IOException("FASTA index " + indexFile + " does not exist.");
+		BufferedReader br = new BufferedReader(new FileReader(indexFile));
+		String line;
+		while ((line = br.readLine()) != null) {
+			if (line.trim().isEmpty())
+				continue;
+			String[] fields = line.split("\t");
+			contigs.add(fields[0]);
+			index.put(fields[0], new Entry(Long.parseLong(fields[1]), Long.parseLong(fields[2]),
+					Integer.parseInt(fields[3]), Integer.parseInt(fields[4])));
+		}
+		br.close();
+		this.channel = FileChannel.open(fasta.toPath(), StandardOpenOption.READ);
+	}
+
+	/**
+	 * @return Contigs of the index in file order.
+	 */
+	public List<String> getContigs() {
+		return contigs;
+	}
+
+	/**
+	 * @return Number of bases of the contig.
+	 */
+	public long getLength(String contig) {
+		return getEntry(contig).length;
+	}
+
+	private Entry getEntry(String contig) {
+		Entry entry = index.get(contig);
+		if (entry == null)
+			throw new IllegalArgumentException("Contig " + contig + " is not in the FASTA index.");
+		return entry;
+	}
+
+	/**
+	 * Reads bases of the contig into the array.
+	 * 
+	 * @param contig
+	 *            Contig of the index.
+	 * @param start
+	 *            0-based position of the first base.
+	 * @param bases
+	 *            Array of the bases.
+	 * @param offset
+	 *            Offset in the array.
+	 * @param length
+	 *            Maximal number of bases.
+	 * @return Number of read bases, less than <code>length</code> only at the end of the contig.
+	 */
+	public int read(String contig, long start, byte[] bases, int offset, int length) throws IOException {
+		Entry entry = getEntry(contig);
+		int size = (int) Math.max(0, Math.min(length, entry.length - start));
+		if (size == 0)
+			return 0;
+		long from = getFileOffset(entry, start);
+		long to = getFileOffset(entry, start + size - 1) + 1;
+		int raw = (int) (to - from);
+		if (buffer.capacity() < raw)
+			buffer = ByteBuffer.allocate(raw);
+		buffer.clear();
+		buffer.limit(raw);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, from + buffer.position()) < 0)
+				throw new IOException("FASTA file ends before the end of contig " + contig + ".");
+		}
+		int read = 0;
+		for (int i = 0; i < raw; i++) {
+			byte b = buffer.get(i);
+			if (b != '\n' && b != '\r')
+				bases[offset + read++] = b;
+		}
+		return read;
+	}
+
+	private static long getFileOffset(Entry entry, long position) {
+		return entry.offset + position / entry.basesPerLine * entry.bytesPerLine + position % entry.basesPerLine;
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	/**
+	 * Line of the <code>.fai</code> index.
+	 */
+	private static class Entry {
+
+		private final long length;
+		private final long offset;
+		private final int basesPerLine;
+		private final int bytesPerLine;
+
+		public Entry(long length, long offset, int basesPerLine, int bytesPerLine) {
+			this.length = length;
+			this.offset = offset;
+			this.basesPerLine = basesPerLine;
+			this.bytesPerLine = bytesPerLine;
+		}
+
+	}
+
+}
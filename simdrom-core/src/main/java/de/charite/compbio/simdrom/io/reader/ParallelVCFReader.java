@@ -0,0 +1,214 @@
+package de.charite.compbio.simdrom.io.reader;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import com.google.common.collect.ImmutableSet;
+
+import de.charite.compbio.simdrom.filter.IFilter;
+import de.charite.compbio.simdrom.metrics.Counter;
+import de.charite.compbio.simdrom.metrics.SIMdromMetrics;
+import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.samtools.util.IOUtil;
+import htsjdk.samtools.util.RuntimeIOException;
+import htsjdk.tribble.readers.AsciiLineReader;
+import htsjdk.tribble.readers.LineReader;
+import htsjdk.variant.variantcontext.VariantContext;
+import htsjdk.variant.vcf.VCFCodec;
+import htsjdk.variant.vcf.VCFHeader;
+
+/**
+ * Reads a whole VCF and decodes its records on several threads. The lines are read (and decompressed, if not by a
+ * {@link ReadAheadVCFReader}) on the calling thread and handed out in batches to a pool of workers, which decode the
+ * site fields and use the filters. The batches are returned in input order, so the records come out as in the file.
+ * At most two batches per thread are read ahead.
+ * <p>
+ * The genotypes are not decoded by the workers, so the raw sample columns stay available (see
+ * {@link de.charite.compbio.simdrom.sampler.vcf.UndecodedGenotypes}) and modes that do not use the genotypes never
+ * decode them. Every batch is decoded with its own {@link VCFCodec}, which the lazy genotypes of its records use after
+ * the worker is done, so they can be decoded on the thread that reads the records.
+ * <p>
+ * Filtered records are counted in {@link SIMdromMetrics#INPUT_RECORDS}, <code>name.records.read</code> and
+ * <code>name.records.filtered.filter</code> like in the sampler.
+ *
+ * @author <a href="mailto:max.schubach@charite.de">Max Schubach</a>
+ *
+ */
+public class ParallelVCFReader implements CloseableIterator<VariantContext> {
+
+	/** lines per batch */
+	public static final int BATCH_SIZE = 1000;
+
+	private final LineReader reader;
+	private final ImmutableSet<IFilter> filters;
+	private final ExecutorService executor;
+	private final int batches;
+	private final Deque<Future<List<VariantContext>>> queue = new ArrayDeque<Future<List<VariantContext>>>();
+	private final VCFHeader header;
+	private final String name;
+	private final SIMdromMetrics metrics = SIMdromMetrics.get();
+	private final Counter inputCounter = metrics.getCounter(SIMdromMetrics.INPUT_RECORDS);
+	private final Counter readCounter;
+	private Iterator<VariantContext> batch = Collections.emptyIterator();
+	private String line;
+
+	/**
+	 * @param filePath
+	 *            Path of the VCF (plain, gzip or bgzip).
+	 * @param header
+	 *            Header of the VCF.
+	 * @param filters
+	 *            Filters used by the workers.
+	 * @param threads
+	 *            Number of decoding threads.
+	 * @param name
+	 *            Name of the sampler for the counters.
+	 */
+	public ParallelVCFReader(String filePath, VCFHeader header, ImmutableSet<IFilter> filters, int threads,
+			String name) {
+		this(new AsciiLineReader(IOUtil.openFileForReading(new File(filePath))), header, filters, threads, name);
+	}
+
+	/**
+	 * @param reader
+	 *            Lines of the VCF, e.g. of a {@link ReadAheadVCFReader}. Header lines are skipped.
+	 * @param header
+	 *            Header of the VCF.
+	 * @param filters
+	 *            Filters used by the workers.
+	 * @param threads
+	 *            Number of decoding threads.
+	 * @param name
+	 *            Name of the sampler for the counters.
+	 */
+	public ParallelVCFReader(LineReader reader, VCFHeader header, ImmutableSet<IFilter> filters, int threads,
+			String name) {
+		this.reader = reader;
+		this.filters = filters == null ? ImmutableSet.<IFilter> of() : filters;
+		this.batches = 2 * threads;
+		this.name = name;
+		this.readCounter = metrics.getCounter(name + ".records.read");
+		this.header = header;
+		this.executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "decode");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		// skip the header
+		do
+			line = readLine();
+		while (line != null && (line.isEmpty() || line.charAt(0) == '#'));
+		fill();
+	}
+
+	private String readLine() {
+		try {
+			return reader.readLine();
+		} catch (IOException e) {
+			throw new RuntimeIOException(e);
+		}
+	}
+
+	/**
+	 * Reads batches until the queue is full or the file is at its end.
+	 */
+	private void fill() {
+		while (line != null && queue.size() < batches) {
+			final List<String> lines = new ArrayList<String>(BATCH_SIZE);
+			while (line != null && lines.size() < BATCH_SIZE) {
+				if (!line.isEmpty())
+					lines.add(line);
+				line = readLine();
+			}
+			queue.add(executor.submit(new Callable<List<VariantContext>>() {
+
+				@Override
+				public List<VariantContext> call() throws Exception {
+					return decode(lines);
+				}
+			}));
+		}
+	}
+
+	private List<VariantContext> decode(List<String> lines) {
+		// only used by this batch, so the lazy genotypes can use it on another thread later
+		VCFCodec codec = new VCFCodec();
+		codec.setVCFHeader(header, SingleSampleVCFReader.getVersion(header));
+		List<VariantContext> output = new ArrayList<VariantContext>(lines.size());
+		for (String line : lines) {
+			VariantContext vc = codec.decode(line);
+			for (IFilter filter : filters) {
+				vc = filter.filter(vc);
+				if (vc == null) {
+					metrics.getCounter(name + ".records.filtered." + filter).increment();
+					inputCounter.increment();
+					readCounter.increment();
+					break;
+				}
+			}
+			if (vc != null)
+				output.add(vc);
+		}
+		return output;
+	}
+
+	@Override
+	public boolean hasNext() {
+		while (!batch.hasNext()) {
+			if (queue.isEmpty())
+				return false;
+			batch = getNextBatch().iterator();
+			fill();
+		}
+		return true;
+	}
+
+	private List<VariantContext> getNextBatch() {
+		try {
+			return queue.poll().get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new RuntimeException(e.getCause());
+		}
+	}
+
+	@Override
+	public VariantContext next() {
+		if (!hasNext())
+			throw new NoSuchElementException();
+		return batch.next();
+	}
+
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void close() {
+		executor.shutdownNow();
+		reader.close();
+	}
+
+}
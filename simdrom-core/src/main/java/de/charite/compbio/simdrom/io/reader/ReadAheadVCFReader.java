@@ -0,0 +1,224 @@
+package de.charite.compbio.simdrom.io.reader;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.samtools.util.RuntimeIOException;
+import htsjdk.tribble.index.Block;
+import htsjdk.tribble.index.Index;
+import htsjdk.tribble.index.IndexFactory;
+import htsjdk.tribble.readers.AsciiLineReader;
+import htsjdk.tribble.readers.LineReader;
+import htsjdk.tribble.util.TabixUtils;
+import htsjdk.variant.variantcontext.VariantContext;
+import htsjdk.variant.vcf.VCFCodec;
+import htsjdk.variant.vcf.VCFHeader;
+
+/**
+ * Reads a bgzipped VCF with a {@link BGZFReadAheadInputStream}, so the blocks are inflated on helper threads while the
+ * lines are parsed. Supports the whole file and queries with the tabix index of the file, as lines or decoded records.
+ * <p>
+ * A query seeks to the first chunk of the index for the interval and reads the lines until the first one behind the
+ * interval. Only lines that overlap the interval are returned, the end of a record is the <code>END</code> INFO field
+ * or given by the length of the reference.
+ *
+ * @author <a href="mailto:max.schubach@charite.de">Max Schubach</a>
+ *
+ */
+public class ReadAheadVCFReader implements Closeable {
+
+	private final File file;
+	private final VCFHeader header;
+	private final int threads;
+	private VCFCodec codec;
+	private Index index;
+	private BGZFReadAheadInputStream queryStream;
+
+	/**
+	 * @param filePath
+	 *            Path of the bgzipped VCF. Queries need a tabix index.
+	 * @param header
+	 *            Header of the VCF.
+	 * @param threads
+	 *            Number of inflating threads.
+	 */
+	public ReadAheadVCFReader(String filePath, VCFHeader header, int threads) {
+		this.file = new File(filePath);
+		this.header = header;
+		this.threads = threads;
+	}
+
+	/**
+	 * @return All lines of the file, including the header.
+	 */
+	public LineReader lines() {
+		try {
+			return new AsciiLineReader(new BGZFReadAheadInputStream(file, threads));
+		} catch (IOException e) {
+			throw new RuntimeIOException(e);
+		}
+	}
+
+	/**
+	 * @return The lines of the records that overlap the interval.
+	 */
+	public LineReader query(String contig, int start, int end) {
+		try {
+			if (index == null)
+				index = IndexFactory.loadIndex(file + TabixUtils.STANDARD_INDEX_EXTENSION);
+			List<Block> blocks = index.containsChromosome(contig) ? index.getBlocks(contig, start, end) : null;
+			if (blocks == null || blocks.isEmpty())
+				return new QueryLineReader(null, contig, start, end);
+			long offset = Long.MAX_VALUE;
+			for (Block block : blocks)
+				offset = Math.min(offset, block.getStartPosition());
+			if (queryStream == null)
+				queryStream = new BGZFReadAheadInputStream(file, threads);
+			queryStream.seek(offset);
+			return new QueryLineReader(new AsciiLineReader(queryStream), contig, start, end);
+		} catch (IOException e) {
+			throw new RuntimeIOException(e);
+		}
+	}
+
+	/**
+	 * @return Iterator over the whole file.
+	 */
+	public CloseableIterator<VariantContext> iterator() {
+		return new VCFLineIterator(lines());
+	}
+
+	/**
+	 * @return Iterator over the records that overlap the interval.
+	 */
+	public CloseableIterator<VariantContext> iterator(String contig, int start, int end) {
+		return new VCFLineIterator(query(contig, start, end));
+	}
+
+	private VCFCodec getCodec() {
+		if (codec == null) {
+			codec = new VCFCodec();
+			codec.setVCFHeader(header, SingleSampleVCFReader.getVersion(header));
+		}
+		return codec;
+	}
+
+	@Override
+	public void close() {
+		try {
+			if (queryStream != null)
+				queryStream.close();
+		} catch (IOException e) {
+			throw new RuntimeIOException(e);
+		}
+	}
+
+	/**
+	 * Lines of a query. The shared stream of the queries is not closed.
+	 */
+	private static class QueryLineReader implements LineReader {
+
+		private final AsciiLineReader reader;
+		private final String contig;
+		private final int start;
+		private final int end;
+		private boolean inContig = false;
+
+		private QueryLineReader(AsciiLineReader reader, String contig, int start, int end) {
+			this.reader = reader;
+			this.contig = contig;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		public String readLine() throws IOException {
+			if (reader == null)
+				return null;
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.isEmpty() || line.charAt(0) == '#')
+					continue;
+				String[] columns = line.split("\t", 9);
+				if (!columns[0].equals(contig)) {
+					if (inContig)
+						return null;
+					continue;
+				}
+				inContig = true;
+				int position = Integer.parseInt(columns[1]);
+				if (position > end)
+					return null;
+				if (getEnd(position, columns) >= start)
+					return line;
+			}
+			return null;
+		}
+
+		private static int getEnd(int position, String[] columns) {
+			if (columns.length > 7) {
+				for (String info : columns[7].split(";")) {
+					if (info.startsWith("END="))
+						return Integer.parseInt(info.substring(4));
+				}
+			}
+			return position + columns[3].length() - 1;
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+	private class VCFLineIterator implements CloseableIterator<VariantContext> {
+
+		private final LineReader reader;
+		private String next;
+
+		private VCFLineIterator(LineReader reader) {
+			this.reader = reader;
+			advance();
+		}
+
+		private void advance() {
+			try {
+				while ((next = reader.readLine()) != null) {
+					if (!next.isEmpty() && next.charAt(0) != '#')
+						return;
+				}
+			} catch (IOException e) {
+				throw new RuntimeIOException(e);
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			return next != null;
+		}
+
+		@Override
+		public VariantContext next() {
+			if (next == null)
+				throw new NoSuchElementException();
+			VariantContext vc = getCodec().decode(next);
+			advance();
+			return vc;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void close() {
+			reader.close();
+		}
+
+	}
+
+}
@@ -0,0 +1,66 @@
+package de.charite.compbio.simdrom.io.reader;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import de.charite.compbio.simdrom.sampler.signature.TrinucleotideContext;
+import htsjdk.samtools.util.IOUtil;
+
+/**
+ * Reads a mutational signature of single base substitutions, e.g. of the COSMIC SBS signatures. The file is tab
+ * separated with a header line. The first column is the channel like <code>A[C&gt;T]G</code> and every other column a
+ * signature with one weight per channel. Channels that are not in the file weight 0.
+ *
+ * @author <a href="mailto:max.schubach@charite.de">Max Schubach</a>
+ *
+ */
+public final class SignatureReader {
+
+	private SignatureReader() {
+	}
+
+	/**
+	 * @param name
+	 *            Column of the signature, e.g. <code>SBS1</code>. The second column if <code>null</code>.
+	 * @return Weight per channel of the {@link TrinucleotideContext}.
+	 * @throws IOException
+	 *             if the file cannot be read, has no column of the signature or a line has an unknown channel or no
+	 *             non-negative weight.
+	 */
+	public static double[] read(String file, String name) throws IOException {
+		double[] weights = new double[TrinucleotideContext.CHANNELS];
+		BufferedReader reader = IOUtil.openFileForBufferedReading(new File(file));
+		try {
+			String line = reader.readLine();
+			if (line == null)
+				throw new IOException("Signature file " + file + " is empty.");
+			int column = name == null ? 1 : Arrays.asList(line.split("\t")).indexOf(name);
+			if (column < 1)
+				throw new IOException("Signature file " + file + " has no signature " + name + ".");
+			int number = 1;
+			while ((line = reader.readLine()) != null) {
+				number++;
+				if (line.trim().isEmpty() || line.startsWith("#"))
+					continue;
+				String[] split = line.split("\t");
+				int channel = TrinucleotideContext.getChannel(split[0].trim());
+				double weight;
+				try {
+					weight = split.length > column ? Double.parseDouble(split[column].trim()) : -1.0;
+				} catch (NumberFormatException e) {
+					weight = -1.0;
+				}
+				if (channel < 0 || weight < 0.0)
+					throw new IOException("Line " + number + " of signature file " + file
+							+ " needs a channel like A[C>T]G and a non-negative weight.");
+				weights[channel] = weight;
+			}
+		} finally {
+			reader.close();
+		}
+		return weights;
+	}
+
+}
@@ -0,0 +1,257 @@
+package de.charite.compbio.simdrom.io.reader;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.NoSuchElementException;
+
+import de.charite.compbio.simdrom.metrics.Counter;
+import de.charite.compbio.simdrom.metrics.SIMdromMetrics;
+import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.samtools.util.IOUtil;
+import htsjdk.samtools.util.RuntimeIOException;
+import htsjdk.tribble.readers.AsciiLineReader;
+import htsjdk.tribble.readers.LineReader;
+import htsjdk.tribble.readers.TabixReader;
+import htsjdk.variant.variantcontext.VariantContext;
+import htsjdk.variant.vcf.VCFCodec;
+import htsjdk.variant.vcf.VCFHeader;
+import htsjdk.variant.vcf.VCFHeaderLine;
+import htsjdk.variant.vcf.VCFHeaderVersion;
+
+/**
+ * Reads the genotypes of only one sample of a multi-sample VCF. The column of the sample is looked up once in the
+ * header. Every line is only split up to this column and records where the sample is homozygous reference are skipped
+ * before any object is created. The remaining lines are cut down to the first nine columns and the sample column and
+ * then decoded by a {@link VCFCodec} with a single-sample header.
+ * <p>
+ * Skipped lines are counted in {@link SIMdromMetrics#INPUT_RECORDS} and the given counter.
+ *
+ * @author <a href="mailto:max.schubach@charite.de">Max Schubach</a>
+ *
+ */
+public class SingleSampleVCFReader implements Closeable {
+
+	/** columns in front of the genotypes: CHROM, POS, ID, REF, ALT, QUAL, FILTER, INFO, FORMAT */
+	private static final int FIXED_COLUMNS = 9;
+
+	private final String filePath;
+	private final VCFCodec codec;
+	private final int column;
+	private final Counter inputCounter = SIMdromMetrics.get().getCounter(SIMdromMetrics.INPUT_RECORDS);
+	private final Counter skippedCounter;
+	private TabixReader tabixReader;
+	private ReadAheadVCFReader readAheadReader;
+
+	/**
+	 * @param filePath
+	 *            Path of the VCF (plain, gzip or bgzip). Queries need a tabix index.
+	 * @param header
+	 *            Header of the VCF with all samples.
+	 * @param sample
+	 *            Name of the sample to read.
+	 * @param skippedCounter
+	 *            Counts the skipped homozygous reference records.
+	 */
+	public SingleSampleVCFReader(String filePath, VCFHeader header, String sample, Counter skippedCounter) {
+		int index = header.getGenotypeSamples().indexOf(sample);
+		if (index < 0)
+			throw new IllegalArgumentException("Sample " + sample + " is not in " + filePath);
+		this.filePath = filePath;
+		this.column = FIXED_COLUMNS + index;
+		this.skippedCounter = skippedCounter;
+		this.codec = new VCFCodec();
+		this.codec.setVCFHeader(new VCFHeader(header.getMetaDataInInputOrder(), Collections.singleton(sample)),
+				getVersion(header));
+	}
+
+	/**
+	 * Reads the lines with the given reader instead, so that the blocks are inflated on helper threads.
+	 */
+	public void setReadAheadReader(ReadAheadVCFReader readAheadReader) {
+		this.readAheadReader = readAheadReader;
+	}
+
+	static VCFHeaderVersion getVersion(VCFHeader header) {
+		for (VCFHeaderLine line : header.getMetaDataInInputOrder()) {
+			if (VCFHeaderVersion.isFormatString(line.getKey()) && VCFHeaderVersion.isVersionString(line.getValue()))
+				return VCFHeaderVersion.toHeaderVersion(line.getValue());
+		}
+		return VCFHeaderVersion.VCF4_2;
+	}
+
+	/**
+	 * @return Iterator over the whole file.
+	 */
+	public CloseableIterator<VariantContext> iterator() {
+		final LineReader reader = readAheadReader == null
+				? new AsciiLineReader(IOUtil.openFileForReading(new File(filePath))) : readAheadReader.lines();
+		return new SampleIterator(new LineSource() {
+
+			@Override
+			public String nextLine() throws IOException {
+				return reader.readLine();
+			}
+
+			@Override
+			public void close() {
+				reader.close();
+			}
+		});
+	}
+
+	/**
+	 * @return Iterator over the records that overlap the interval, using the tabix index of the file.
+	 */
+	public CloseableIterator<VariantContext> query(String contig, int start, int end) {
+		if (readAheadReader != null) {
+			final LineReader reader = readAheadReader.query(contig, start, end);
+			return new SampleIterator(new LineSource() {
+
+				@Override
+				public String nextLine() throws IOException {
+					return reader.readLine();
+				}
+
+				@Override
+				public void close() {
+					reader.close();
+				}
+			});
+		}
+		try {
+			if (tabixReader == null)
+				tabixReader = new TabixReader(filePath);
+			final TabixReader.Iterator iterator = tabixReader.chr2tid(contig) < 0 ? null
+					: tabixReader.query(contig + ":" + start + "-" + end);
+			return new SampleIterator(new LineSource() {
+
+				@Override
+				public String nextLine() throws IOException {
+					return iterator == null ? null : iterator.next();
+				}
+
+				@Override
+				public void close() {
+				}
+			});
+		} catch (IOException e) {
+			throw new RuntimeIOException(e);
+		}
+	}
+
+	@Override
+	public void close() {
+		if (tabixReader != null)
+			tabixReader.close();
+	}
+
+	/**
+	 * @return The line cut down to the fixed columns and the sample column. <code>null</code> if the sample is
+	 *         homozygous reference.
+	 */
+	private String trim(String line) {
+		int formatStart = 0;
+		int start = 0;
+		for (int i = 0; i < column; i++) {
+			start = line.indexOf('\t', start) + 1;
+			if (start == 0)
+				throw new IllegalStateException("Line has no genotype column " + column + ": " + line);
+			if (i == FIXED_COLUMNS - 2)
+				formatStart = start;
+		}
+		int end = line.indexOf('\t', start);
+		if (end < 0)
+			end = line.length();
+
+		// GT has to be the first FORMAT key if present
+		if (line.startsWith("GT", formatStart) && isHomRef(line, start, end))
+			return null;
+		return line.substring(0, formatStart - 1) + "\t" + line.substring(formatStart, line.indexOf('\t', formatStart))
+				+ "\t" + line.substring(start, end);
+	}
+
+	/**
+	 * @return <code>true</code> if the GT of the sample only contains the reference allele, e.g. <code>0/0</code> or
+	 *         <code>0|0</code>.
+	 */
+	private static boolean isHomRef(String line, int start, int end) {
+		boolean ref = false;
+		for (int i = start; i < end; i++) {
+			char c = line.charAt(i);
+			if (c == ':')
+				break;
+			else if (c == '0')
+				ref = true;
+			else if (c != '/' && c != '|')
+				return false;
+		}
+		return ref;
+	}
+
+	/**
+	 * Lines of the whole file or of a query. Returns <code>null</code> at the end.
+	 */
+	private interface LineSource {
+
+		public String nextLine() throws IOException;
+
+		public void close();
+	}
+
+	private class SampleIterator implements CloseableIterator<VariantContext> {
+
+		private final LineSource source;
+		private String next;
+
+		private SampleIterator(LineSource source) {
+			this.source = source;
+			advance();
+		}
+
+		private void advance() {
+			try {
+				next = null;
+				String line;
+				while ((line = source.nextLine()) != null) {
+					if (line.isEmpty() || line.charAt(0) == '#')
+						continue;
+					next = trim(line);
+					if (next != null)
+						return;
+					inputCounter.increment();
+					skippedCounter.increment();
+				}
+			} catch (IOException e) {
+				throw new RuntimeIOException(e);
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			return next != null;
+		}
+
+		@Override
+		public VariantContext next() {
+			if (next == null)
+				throw new NoSuchElementException();
+			VariantContext vc = codec.decode(next);
+			advance();
+			return vc;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void close() {
+			source.close();
+		}
+
+	}
+
+}
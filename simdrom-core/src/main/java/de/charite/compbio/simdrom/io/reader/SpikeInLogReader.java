@@ -0,0 +1,44 @@
+package de.charite.compbio.simdrom.io.reader;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import de.charite.compbio.simdrom.filter.ExcludeFilter;
+
+/**
+ * Reads the variants of a spike in log (written by the {@link de.charite.compbio.simdrom.io.writer.VCFTSVWriter}), e.g.
+ * to remove them from an earlier output with the {@link ExcludeFilter}.
+ *
+ * @author <a href="mailto:max.schubach@charite.de">Max Schubach</a>
+ *
+ */
+public final class SpikeInLogReader {
+
+	private SpikeInLogReader() {
+	}
+
+	/**
+	 * @return Keys of all logged variants, see {@link ExcludeFilter#getKey(String, int, String, java.util.List)}.
+	 */
+	public static Set<String> read(String file) throws IOException {
+		Set<String> keys = new HashSet<String>();
+		BufferedReader reader = new BufferedReader(new FileReader(file));
+		String line;
+		while ((line = reader.readLine()) != null) {
+			line = line.trim();
+			if (line.isEmpty() || line.startsWith("#"))
+				continue;
+			// CHROM, POS, ID, REF, ALT, ...
+			String[] split = line.split("\t");
+			keys.add(ExcludeFilter.getKey(split[0], Integer.parseInt(split[1]), split[3],
+					Arrays.asList(split[4].split(","))));
+		}
+		reader.close();
+		return keys;
+	}
+
+}
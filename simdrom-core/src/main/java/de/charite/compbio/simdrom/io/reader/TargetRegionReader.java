@@ -0,0 +1,86 @@
+package de.charite.compbio.simdrom.io.reader;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+
+import de.charite.compbio.simdrom.interval.TargetRegions;
+import htsjdk.samtools.util.IOUtil;
+
+/**
+ * Reads {@link TargetRegions} of a BED or a GTF file (also gzipped). A GTF file is recognized by the extension
+ * <code>.gtf</code> or <code>.gtf.gz</code>; its <code>gene</code> features are used with the <code>gene_name</code>
+ * (or the <code>gene_id</code>) as name. In a BED file the name is in the fourth column, lines with the same name are
+ * one region. Lines without a name are a region of their own.
+ *
+ * @author <a href="mailto:max.schubach@charite.de">Max Schubach</a>
+ *
+ */
+public final class TargetRegionReader {
+
+	private TargetRegionReader() {
+	}
+
+	/**
+	 * @throws IOException
+	 *             if the file cannot be read or a line has no valid interval.
+	 */
+	public static TargetRegions read(String file) throws IOException {
+		boolean gtf = file.endsWith(".gtf") || file.endsWith(".gtf.gz");
+		TargetRegions regions = new TargetRegions();
+		BufferedReader reader = IOUtil.openFileForBufferedReading(new File(file));
+		String line;
+		int number = 0;
+		try {
+			while ((line = reader.readLine()) != null) {
+				number++;
+				if (line.trim().isEmpty() || line.startsWith("#") || line.startsWith("track")
+						|| line.startsWith("browser"))
+					continue;
+				String[] split = line.split("\t");
+				if (gtf)
+					addGTFLine(regions, split);
+				else
+					addBEDLine(regions, split);
+			}
+		} catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+			throw new IOException("Line " + number + " of target regions " + file + " has no valid interval.");
+		} finally {
+			reader.close();
+		}
+		return regions;
+	}
+
+	private static void addBEDLine(TargetRegions regions, String[] split) {
+		// 0-based half-open
+		int start = Integer.parseInt(split[1].trim()) + 1;
+		int end = Integer.parseInt(split[2].trim());
+		String name = split.length > 3 && !split[3].trim().isEmpty() ? split[3].trim()
+				: split[0] + ":" + start + "-" + end;
+		regions.add(split[0], start, end, name);
+	}
+
+	private static void addGTFLine(TargetRegions regions, String[] split) {
+		if (!split[2].equals("gene"))
+			return;
+		String name = getAttribute(split[8], "gene_name");
+		if (name == null)
+			name = getAttribute(split[8], "gene_id");
+		// 1-based closed
+		regions.add(split[0], Integer.parseInt(split[3].trim()), Integer.parseInt(split[4].trim()),
+				name == null ? split[0] + ":" + split[3] + "-" + split[4] : name);
+	}
+
+	/**
+	 * @return Value of the attribute like <code>gene_name "BRCA2";</code>, null if not present.
+	 */
+	private static String getAttribute(String attributes, String key) {
+		for (String attribute : attributes.split(";")) {
+			attribute = attribute.trim();
+			if (attribute.startsWith(key + " "))
+				return attribute.substring(key.length() + 1).trim().replace("\"", "");
+		}
+		return null;
+	}
+
+}
@@ -0,0 +1,79 @@
+package de.charite.compbio.simdrom.io.reader;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Resolves the VCF inputs of the command line. Every input can be a file, a directory (all <code>.vcf</code>,
+ * <code>.vcf.gz</code> and <code>.vcf.bgz</code> files in it) or a glob in the file name, like
+ * <code>ALL.chr*.genotypes.vcf.gz</code>. Files of a directory or glob are sorted by name.
+ *
+ * @author <a href="mailto:max.schubach@charite.de">Max Schubach</a>
+ *
+ */
+public final class VCFInputResolver {
+
+	private static final String VCF_GLOB = "*.{vcf,vcf.gz,vcf.bgz}";
+
+	private VCFInputResolver() {
+	}
+
+	/**
+	 * @param inputs
+	 *            Files, directories or globs.
+	 * @return Paths of all VCF files in the given order.
+	 * @throws IOException
+	 *             if an input does not exist or a glob or directory matches no VCF file.
+	 */
+	public static ImmutableList<String> resolve(List<String> inputs) throws IOException {
+		ImmutableList.Builder<String> output = ImmutableList.builder();
+		for (String input : inputs) {
+			File file = new File(input);
+			if (file.isDirectory())
+				output.addAll(list(file.toPath(), VCF_GLOB, input));
+			else if (isGlob(file.getName()))
+				output.addAll(list(file.getAbsoluteFile().getParentFile().toPath(), file.getName(), input));
+			else if (file.exists())
+				output.add(input);
+			else
+				throw new FileNotFoundException("VCF file " + input + " does not exist.");
+		}
+		return output.build();
+	}
+
+	private static boolean isGlob(String name) {
+		for (char c : new char[] { '*', '?', '[', '{' })
+			if (name.indexOf(c) >= 0)
+				return true;
+		return false;
+	}
+
+	private static List<String> list(Path folder, String glob, String input) throws IOException {
+		if (!Files.isDirectory(folder))
+			throw new FileNotFoundException("Folder " + folder + " of input " + input + " does not exist.");
+		PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+		List<String> files = new ArrayList<String>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder)) {
+			for (Path path : stream) {
+				if (Files.isRegularFile(path) && matcher.matches(path.getFileName()))
+					files.add(path.toString());
+			}
+		}
+		if (files.isEmpty())
+			throw new FileNotFoundException("No VCF file found for input " + input + ".");
+		Collections.sort(files);
+		return files;
+	}
+
+}
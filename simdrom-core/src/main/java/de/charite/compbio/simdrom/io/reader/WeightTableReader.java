@@ -0,0 +1,56 @@
+package de.charite.compbio.simdrom.io.reader;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+
+import com.google.common.collect.HashBasedTable;
+import com.google.common.collect.Table;
+
+import de.charite.compbio.simdrom.sampler.vcf.VariantWeight;
+
+/**
+ * Reads a weight table of the {@link VariantWeight}. Every line has three tab separated columns: INFO field, value and
+ * weight, e.g. <code>CLNREVSTAT	reviewed_by_expert_panel	10</code>. Lines starting with <code>#</code> are skipped.
+ *
+ * @author <a href="mailto:max.schubach@charite.de">Max Schubach</a>
+ *
+ */
+public final class WeightTableReader {
+
+	private WeightTableReader() {
+	}
+
+	/**
+	 * @return Weights by INFO field (row) and value (column).
+	 * @throws IOException
+	 *             if the file cannot be read or a line has not three columns or a negative weight.
+	 */
+	public static Table<String, String, Double> read(String file) throws IOException {
+		Table<String, String, Double> table = HashBasedTable.create();
+		BufferedReader reader = new BufferedReader(new FileReader(file));
+		String line;
+		int number = 0;
+		while ((line = reader.readLine()) != null) {
+			number++;
+			if (line.trim().isEmpty() || line.startsWith("#"))
+				continue;
+			String[] split = line.split("\t");
+			double weight;
+			try {
+				weight = split.length == 3 ? Double.parseDouble(split[2].trim()) : -1.0;
+			} catch (NumberFormatException e) {
+				weight = -1.0;
+			}
+			if (weight < 0.0) {
+				reader.close();
+				throw new IOException("Line " + number + " of weight table " + file
+						+ " needs an INFO field, a value and a non-negative weight.");
+			}
+			table.put(split[0].trim(), split[1].trim(), weight);
+		}
+		reader.close();
+		return table;
+	}
+
+}
@@ -0,0 +1,129 @@
+package de.charite.compbio.simdrom.io.writer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import htsjdk.samtools.util.BlockCompressedOutputStream;
+import htsjdk.samtools.util.RuntimeIOException;
+import htsjdk.tribble.index.tabix.TabixFormat;
+import htsjdk.tribble.index.tabix.TabixIndex;
+import htsjdk.tribble.index.tabix.TabixIndexCreator;
+import htsjdk.variant.variantcontext.VariantContext;
+import htsjdk.variant.variantcontext.writer.VariantContextWriter;
+import htsjdk.variant.vcf.VCFEncoder;
+import htsjdk.variant.vcf.VCFHeader;
+
+/**
+ * Writes a bgzipped VCF into a file or any stream (e.g. the standard output or a named pipe). If an index file is
+ * given, the tabix index is built while writing from the position of every record and written when the writer is
+ * closed, so the output does not have to be read again.
+ * <p>
+ * The header is written in its own blocks, so that the records start at {@link #getDataOffset()}.
+ *
+ * @author <a href="mailto:max.schubach@charite.de">Max Schubach</a>
+ *
+ */
+public class BGZFVCFWriter implements VariantContextWriter {
+
+	private final String name;
+	private final BlockCompressedOutputStream stream;
+	private final VCFEncoder encoder;
+	private final File index;
+	private final TabixIndexCreator indexCreator;
+	private long dataOffset = 0;
+	private boolean error = false;
+
+	/**
+	 * @param output
+	 *            Stream of the bgzipped VCF, closed with the writer.
+	 * @param header
+	 *            Header to encode the records.
+	 * @param index
+	 *            Path of the tabix index, <code>null</code> for no index.
+	 */
+	public BGZFVCFWriter(OutputStream output, VCFHeader header, File index) {
+		this(new BlockCompressedOutputStream(output, null), "output", header, index);
+	}
+
+	/**
+	 * @param file
+	 *            Path of the bgzipped VCF.
+	 * @param header
+	 *            Header to encode the records.
+	 * @param index
+	 *            Path of the tabix index, <code>null</code> for no index.
+	 */
+	public BGZFVCFWriter(File file, VCFHeader header, File index) {
+		this(new BlockCompressedOutputStream(file), file.toString(), header, index);
+	}
+
+	private BGZFVCFWriter(BlockCompressedOutputStream stream, String name, VCFHeader header, File index) {
+		this.name = name;
+		this.stream = stream;
+		this.encoder = new VCFEncoder(header, false, false);
+		this.index = index;
+		this.indexCreator = index == null ? null : new TabixIndexCreator(TabixFormat.VCF);
+	}
+
+	/**
+	 * Writes the header and flushes it into its own blocks.
+	 */
+	@Override
+	public void writeHeader(VCFHeader header) {
+		try {
+			stream.write(ShardConcatenator.getHeaderText(header));
+			stream.flush();
+			dataOffset = stream.getFilePointer() >>> 16;
+		} catch (IOException e) {
+			error = true;
+			throw new RuntimeIOException("Cannot write header into " + name, e);
+		}
+	}
+
+	@Override
+	public void add(VariantContext vc) {
+		try {
+			if (indexCreator != null)
+				indexCreator.addFeature(vc, stream.getFilePointer());
+			stream.write(encoder.encode(vc).getBytes(StandardCharsets.UTF_8));
+			stream.write('\n');
+		} catch (IOException e) {
+			error = true;
+			throw new RuntimeIOException("Cannot write into " + name, e);
+		}
+	}
+
+	@Override
+	public void close() {
+		try {
+			if (indexCreator != null)
+				((TabixIndex) indexCreator.finalizeIndex(stream.getFilePointer())).write(index);
+			stream.close();
+		} catch (IOException e) {
+			error = true;
+			throw new RuntimeIOException("Cannot close " + name, e);
+		}
+	}
+
+	@Override
+	public boolean checkError() {
+		return error;
+	}
+
+	/**
+	 * @return Offset of the first block with records, 0 if there is no header.
+	 */
+	public long getDataOffset() {
+		return dataOffset;
+	}
+
+	/**
+	 * @return Path of the tabix index, <code>null</code> if not indexed.
+	 */
+	public File getIndex() {
+		return index;
+	}
+
+}
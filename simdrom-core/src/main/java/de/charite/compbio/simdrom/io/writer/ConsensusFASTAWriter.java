@@ -0,0 +1,236 @@
+package de.charite.compbio.simdrom.io.writer;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import de.charite.compbio.simdrom.io.reader.IndexedFASTAReader;
+import de.charite.compbio.simdrom.metrics.Counter;
+import de.charite.compbio.simdrom.metrics.SIMdromMetrics;
+import htsjdk.variant.variantcontext.Allele;
+import htsjdk.variant.variantcontext.Genotype;
+import htsjdk.variant.variantcontext.VariantContext;
+
+/**
+ * Writes the consensus sequence of one sample of the output variants, i.e. the reference with the alleles of the
+ * sample, as FASTA with a <code>.fai</code> index while the variants are written. The variants have to be sorted like
+ * the contigs of the reference index. Every contig of the reference is written, contigs without variants unchanged.
+ * <p>
+ * With one output file the first alternative allele of the genotype is used, e.g. for heterozygous variants. With two
+ * output files each one gets the allele of its haplotype (first or second allele of the GT). Variants that overlap an
+ * already applied variant of the same haplotype, symbolic alleles, spanning deletions and variants whose REF does not
+ * match the reference are skipped and counted in <code>consensus.variants.skipped</code>.
+ * <p>
+ * The reference is read by an {@link IndexedFASTAReader} in chunks of {@link #CHUNK_SIZE} bases, so the memory does
+ * not depend on the contig lengths.
+ *
+ * @author <a href="mailto:max.schubach@charite.de">Max Schubach</a>
+ *
+ */
+public class ConsensusFASTAWriter implements Closeable {
+
+	/** bases per line of the output */
+	public static final int LINE_WIDTH = 60;
+	/** bases copied from the reference at once */
+	public static final int CHUNK_SIZE = 1 << 16;
+
+	private final IndexedFASTAReader reference;
+	private final List<String> contigs;
+	private final String sample;
+	private final List<Haplotype> haplotypes = new ArrayList<Haplotype>();
+	private final byte[] chunk = new byte[CHUNK_SIZE];
+	private final SIMdromMetrics metrics = SIMdromMetrics.get();
+	private final Counter appliedCounter = metrics.getCounter("consensus.variants.applied");
+	private final Counter skippedCounter = metrics.getCounter("consensus.variants.skipped");
+
+	/**
+	 * @param reference
+	 *            Uncompressed reference FASTA with a <code>.fai</code> index.
+	 * @param outputs
+	 *            One output FASTA, or two for the haplotypes.
+	 * @param sample
+	 *            Sample of the variants, the first one if <code>null</code>.
+	 */
+	public ConsensusFASTAWriter(File reference, List<File> outputs, String sample) throws IOException {
+		if (outputs.isEmpty() || outputs.size() > 2)
+			throw new IllegalArgumentException("A consensus is written into one file or two haplotype files.");
+		this.reference = new IndexedFASTAReader(reference);
+		this.contigs = this.reference.getContigs();
+		this.sample = sample;
+		for (File output : outputs)
+			haplotypes.add(new Haplotype(output));
+	}
+
+	/**
+	 * Applies the alleles of the sample.
+	 */
+	public void add(VariantContext vc) throws IOException {
+		Genotype genotype = sample == null ? vc.getGenotype(0) : vc.getGenotype(sample);
+		if (genotype == null)
+			return;
+		for (int i = 0; i < haplotypes.size(); i++) {
+			Allele allele = haplotypes.size() == 1 ? getAlternative(genotype)
+					: genotype.getAllele(Math.min(i, genotype.getPloidy() - 1));
+			if (allele != null && allele.isCalled() && allele.isNonReference())
+				haplotypes.get(i).apply(vc, allele);
+		}
+	}
+
+	private Allele getAlternative(Genotype genotype) {
+		for (Allele allele : genotype.getAlleles())
+			if (allele.isCalled() && allele.isNonReference())
+				return allele;
+		return null;
+	}
+
+	/**
+	 * Writes the remaining reference and the indices.
+	 */
+	@Override
+	public void close() throws IOException {
+		for (Haplotype haplotype : haplotypes)
+			haplotype.close();
+		reference.close();
+	}
+
+	/**
+	 * Output FASTA of one haplotype with the cursor in the reference.
+	 */
+	private class Haplotype {
+
+		private final File file;
+		private final OutputStream out;
+		private final List<String> index = new ArrayList<String>();
+		private long bytes = 0;
+		/** index of the current contig, -1 before the first one */
+		private int contig = -1;
+		/** next 0-based reference position to copy */
+		private long position;
+		private long contigOffset;
+		private long contigLength;
+
+		public Haplotype(File file) throws IOException {
+			this.file = file;
+			this.out = new BufferedOutputStream(new FileOutputStream(file));
+		}
+
+		public void apply(VariantContext vc, Allele allele) throws IOException {
+			moveTo(vc.getContig());
+			byte[] ref = vc.getReference().getBases();
+			long start = vc.getStart() - 1;
+			if (allele.isSymbolic() || allele.equals(Allele.SPAN_DEL) || start < position || !matchesReference(start, ref)) {
+				skippedCounter.increment();
+				return;
+			}
+			copy(start);
+			write(allele.getBases(), 0, allele.length());
+			position = start + ref.length;
+			appliedCounter.increment();
+		}
+
+		private boolean matchesReference(long start, byte[] ref) throws IOException {
+			byte[] bases = new byte[ref.length];
+			if (reference.read(contigs.get(contig), start, bases, 0, bases.length) < bases.length)
+				return false;
+			for (int i = 0; i < ref.length; i++)
+				if (Character.toUpperCase(bases[i]) != Character.toUpperCase(ref[i]))
+					return false;
+			return true;
+		}
+
+		/**
+		 * Finishes the contigs before the one of the variant.
+		 */
+		private void moveTo(String name) throws IOException {
+			if (contig >= 0 && contigs.get(contig).equals(name))
+				return;
+			int next = contig + 1;
+			while (next < contigs.size() && !contigs.get(next).equals(name))
+				next++;
+			if (next == contigs.size())
+				throw new IllegalArgumentException("Contig " + name
+						+ " is not in the reference or the variants are not sorted like the reference.");
+			while (contig < next) {
+				if (contig >= 0)
+					endContig();
+				startContig(contig + 1);
+			}
+		}
+
+		private void startContig(int next) throws IOException {
+			contig = next;
+			position = 0;
+			contigLength = 0;
+			byte[] header = (">" + contigs.get(contig) + "\n").getBytes();
+			out.write(header);
+			bytes += header.length;
+			contigOffset = bytes;
+		}
+
+		private void endContig() throws IOException {
+			copy(reference.getLength(contigs.get(contig)));
+			if (contigLength % LINE_WIDTH != 0) {
+				out.write('\n');
+				bytes++;
+			}
+			index.add(contigs.get(contig) + "\t" + contigLength + "\t" + contigOffset + "\t" + LINE_WIDTH
+					+ "\t" + (LINE_WIDTH + 1));
+		}
+
+		/**
+		 * Copies the reference up to the 0-based position (exclusive).
+		 */
+		private void copy(long end) throws IOException {
+			String name = contigs.get(contig);
+			while (position < end) {
+				int read = reference.read(name, position, chunk, 0, (int) Math.min(chunk.length, end - position));
+				if (read == 0)
+					break;
+				write(chunk, 0, read);
+				position += read;
+			}
+		}
+
+		/**
+		 * Writes bases with a line break after every {@link #LINE_WIDTH} bases.
+		 */
+		private void write(byte[] bases, int offset, int length) throws IOException {
+			while (length > 0) {
+				int size = (int) Math.min(length, LINE_WIDTH - contigLength % LINE_WIDTH);
+				out.write(bases, offset, size);
+				bytes += size;
+				contigLength += size;
+				offset += size;
+				length -= size;
+				if (contigLength % LINE_WIDTH == 0) {
+					out.write('\n');
+					bytes++;
+				}
+			}
+		}
+
+		public void close() throws IOException {
+			if (contig >= 0)
+				endContig();
+			while (contig < contigs.size() - 1) {
+				startContig(contig + 1);
+				endContig();
+			}
+			out.close();
+			Writer writer = new BufferedWriter(new FileWriter(file.getPath() + ".fai"));
+			for (String line : index)
+				writer.write(line + "\n");
+			writer.close();
+		}
+
+	}
+
+}
@@ -0,0 +1,52 @@
+package de.charite.compbio.simdrom.io.writer;
+
+import de.charite.compbio.simdrom.metrics.Counter;
+import de.charite.compbio.simdrom.metrics.SIMdromMetrics;
+import de.charite.compbio.simdrom.metrics.Stage;
+import htsjdk.variant.variantcontext.VariantContext;
+import htsjdk.variant.variantcontext.writer.VariantContextWriter;
+import htsjdk.variant.vcf.VCFHeader;
+
+/**
+ * Decorator of a {@link VariantContextWriter} that counts the written records and adds the time of every write to
+ * {@link Stage#ENCODE}.
+ * 
+ * @author <a href="mailto:max.schubach@charite.de">Max Schubach</a>
+ *
+ */
+public class MeasuredVariantContextWriter implements VariantContextWriter {
+
+	private final VariantContextWriter writer;
+	private final SIMdromMetrics metrics = SIMdromMetrics.get();
+	private final Counter written = metrics.getCounter(SIMdromMetrics.OUTPUT_RECORDS);
+
+	public MeasuredVariantContextWriter(VariantContextWriter writer) {
+		this.writer = writer;
+	}
+
+	@Override
+	public void writeHeader(VCFHeader header) {
+		writer.writeHeader(header);
+	}
+
+	@Override
+	public void add(VariantContext vc) {
+		long start = metrics.start();
+		writer.add(vc);
+		metrics.stop(Stage.ENCODE, start);
+		written.increment();
+	}
+
+	@Override
+	public void close() {
+		long start = metrics.start();
+		writer.close();
+		metrics.stop(Stage.ENCODE, start);
+	}
+
+	@Override
+	public boolean checkError() {
+		return writer.checkError();
+	}
+
+}
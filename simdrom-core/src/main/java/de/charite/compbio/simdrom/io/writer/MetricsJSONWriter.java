@@ -0,0 +1,92 @@
+package de.charite.compbio.simdrom.io.writer;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.Map;
+
+import de.charite.compbio.simdrom.metrics.SIMdromMetrics;
+import de.charite.compbio.simdrom.metrics.Stage;
+
+/**
+ * Writes the {@link SIMdromMetrics} of a run as JSON object with the wall time, the input throughput, the time per
+ * {@link Stage} and all counters.
+ * 
+ * @author <a href="mailto:max.schubach@charite.de">Max Schubach</a>
+ *
+ */
+public class MetricsJSONWriter implements Closeable {
+
+	private final Writer writer;
+
+	public MetricsJSONWriter(String file) throws IOException {
+		this.writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+	}
+
+	public void write(SIMdromMetrics metrics) throws IOException {
+		writer.write("{\n");
+		writer.write("  \"wallTimeMillis\": " + metrics.getWallTimeMillis() + ",\n");
+		writer.write("  \"recordsPerSecond\": " + String.format(Locale.ROOT, "%.1f", metrics.getRecordsPerSecond())
+				+ ",\n");
+		writer.write("  \"timersEnabled\": " + metrics.isEnabled() + ",\n");
+		writer.write("  \"stageMillis\": ");
+		writeMap(metrics.getStageMillis());
+		writer.write(",\n  \"counters\": ");
+		writeMap(metrics.getCounters());
+		writer.write("\n}\n");
+	}
+
+	private void writeMap(Map<String, Long> values) throws IOException {
+		writer.write("{");
+		boolean first = true;
+		for (Map.Entry<String, Long> entry : values.entrySet()) {
+			writer.write(first ? "\n" : ",\n");
+			writer.write("    \"" + escape(entry.getKey()) + "\": " + entry.getValue());
+			first = false;
+		}
+		writer.write(first ? "}" : "\n  }");
+	}
+
+	/**
+	 * @return The value as content of a JSON string, with quotes, backslashes and control characters escaped.
+	 */
+	private static String escape(String value) {
+		StringBuilder output = new StringBuilder(value.length());
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+			case '"':
+				output.append("\\\"");
+				break;
+			case '\\':
+				output.append("\\\\");
+				break;
+			case '\n':
+				output.append("\\n");
+				break;
+			case '\r':
+				output.append("\\r");
+				break;
+			case '\t':
+				output.append("\\t");
+				break;
+			default:
+				if (c < 0x20)
+					output.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+				else
+					output.append(c);
+			}
+		}
+		return output.toString();
+	}
+
+	@Override
+	public void close() throws IOException {
+		writer.close();
+	}
+
+}
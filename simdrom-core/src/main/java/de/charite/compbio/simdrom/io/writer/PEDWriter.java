@@ -0,0 +1,42 @@
+package de.charite.compbio.simdrom.io.writer;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes a pedigree in the PED format (family, individual, father, mother, sex, phenotype), e.g. for a sampled trio.
+ * Sex is 1 for male, 2 for female and 0 for unknown; phenotype is 1 for unaffected and 2 for affected.
+ *
+ * @author <a href="mailto:max.schubach@charite.de">Max Schubach</a>
+ *
+ */
+public class PEDWriter implements Closeable {
+
+	private final Writer writer;
+	private final String family;
+
+	public PEDWriter(String file, String family) throws IOException {
+		this.writer = new BufferedWriter(new FileWriter(file));
+		this.family = family;
+	}
+
+	/**
+	 * Writes a founder of the family.
+	 */
+	public void addFounder(String individual, int sex, int phenotype) throws IOException {
+		add(individual, "0", "0", sex, phenotype);
+	}
+
+	public void add(String individual, String father, String mother, int sex, int phenotype) throws IOException {
+		writer.write(family + "\t" + individual + "\t" + father + "\t" + mother + "\t" + sex + "\t" + phenotype + "\n");
+	}
+
+	@Override
+	public void close() throws IOException {
+		writer.close();
+	}
+
+}
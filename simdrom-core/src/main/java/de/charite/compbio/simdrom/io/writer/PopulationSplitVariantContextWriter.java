@@ -0,0 +1,94 @@
+package de.charite.compbio.simdrom.io.writer;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import htsjdk.variant.variantcontext.Genotype;
+import htsjdk.variant.variantcontext.VariantContext;
+import htsjdk.variant.variantcontext.writer.VariantContextWriter;
+import htsjdk.variant.variantcontext.writer.VariantContextWriterBuilder;
+import htsjdk.variant.vcf.VCFHeader;
+
+/**
+ * Writes every sample of a multi-sample VCF into its own file, e.g. one per population if several populations are
+ * sampled in one pass. A record is only written into the file of a sample if the sample is not homozygous reference.
+ * The file of a sample is the output path with the sample name in front of the <code>.vcf</code> or
+ * <code>.vcf.gz</code> suffix.
+ *
+ * @author <a href="mailto:max.schubach@charite.de">Max Schubach</a>
+ *
+ */
+public class PopulationSplitVariantContextWriter implements VariantContextWriter {
+
+	private final Map<String, VariantContextWriter> writers = new LinkedHashMap<String, VariantContextWriter>();
+	private final List<File> files = new ArrayList<File>();
+
+	/**
+	 * @param output
+	 *            Output path. The files of the samples are written next to it.
+	 * @param sampleNames
+	 *            Samples to split.
+	 */
+	public PopulationSplitVariantContextWriter(String output, Collection<String> sampleNames) {
+		for (String sampleName : sampleNames) {
+			File file = new File(getPath(output, sampleName));
+			files.add(file);
+			writers.put(sampleName, new VariantContextWriterBuilder().setOutputFile(file).build());
+		}
+	}
+
+	/**
+	 * @return The path of the output file of the sample.
+	 */
+	public static String getPath(String output, String sampleName) {
+		for (String suffix : new String[] { ".vcf.gz", ".vcf.bgz", ".vcf" }) {
+			if (output.endsWith(suffix))
+				return output.substring(0, output.length() - suffix.length()) + "." + sampleName + suffix;
+		}
+		return output + "." + sampleName + ".vcf.gz";
+	}
+
+	@Override
+	public void writeHeader(VCFHeader header) {
+		for (Map.Entry<String, VariantContextWriter> entry : writers.entrySet()) {
+			List<String> sampleNames = new ArrayList<String>();
+			sampleNames.add(entry.getKey());
+			entry.getValue().writeHeader(new VCFHeader(header.getMetaDataInInputOrder(), sampleNames));
+		}
+	}
+
+	@Override
+	public void add(VariantContext vc) {
+		for (Map.Entry<String, VariantContextWriter> entry : writers.entrySet()) {
+			Genotype genotype = vc.getGenotype(entry.getKey());
+			if (genotype != null && !genotype.isHomRef())
+				entry.getValue().add(vc.subContextFromSample(entry.getKey()));
+		}
+	}
+
+	@Override
+	public void close() {
+		for (VariantContextWriter writer : writers.values())
+			writer.close();
+	}
+
+	@Override
+	public boolean checkError() {
+		for (VariantContextWriter writer : writers.values())
+			if (writer.checkError())
+				return true;
+		return false;
+	}
+
+	/**
+	 * @return The output files, one per sample.
+	 */
+	public List<File> getFiles() {
+		return files;
+	}
+
+}
@@ -0,0 +1,128 @@
+package de.charite.compbio.simdrom.io.writer;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Map;
+
+import htsjdk.tribble.util.TabixUtils;
+
+/**
+ * Records the output shards that are completely written, so that a failed run can be resumed without sampling them
+ * again. Every finished shard is appended (and flushed) as one TSV line (shard, region, data offset) like in the
+ * {@link ShardManifest}. The file starts with the seed of the run and a fingerprint of its settings.
+ * <p>
+ * A resumed run uses the same seed. All random number generators of a run are derived from it, per shard and in a
+ * fixed order, so the remaining shards are the same as in a run without interruption.
+ *
+ * @author <a href="mailto:max.schubach@charite.de">Max Schubach</a>
+ *
+ */
+public class ShardCheckpoint {
+
+	/** default name of the checkpoint in the shard folder */
+	public static final String FILE_NAME = "checkpoint.tsv";
+
+	private static final String SEED = "#seed";
+	private static final String FINGERPRINT = "#fingerprint";
+
+	private final File file;
+	private Long seed;
+	private String fingerprint;
+	private final Map<String, Long> dataOffsets = new HashMap<String, Long>();
+	private Writer writer;
+
+	/**
+	 * Reads the checkpoint if the file exists.
+	 */
+	public ShardCheckpoint(File file) throws IOException {
+		this.file = file;
+		if (file.exists())
+			read();
+	}
+
+	private void read() throws IOException {
+		BufferedReader reader = new BufferedReader(new FileReader(file));
+		String line;
+		while ((line = reader.readLine()) != null) {
+			String[] split = line.split("\t");
+			if (split[0].equals(SEED))
+				seed = Long.parseLong(split[1]);
+			else if (split[0].equals(FINGERPRINT))
+				fingerprint = split[1];
+			// the last line can be cut off by the failure
+			else if (!line.startsWith("#") && split.length == 3)
+				dataOffsets.put(split[0], Long.parseLong(split[2]));
+		}
+		reader.close();
+	}
+
+	/**
+	 * @return Seed of the checkpointed run, <code>null</code> if there is none.
+	 */
+	public Long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * Starts to record the shards of a run.
+	 *
+	 * @param seed
+	 *            Seed of the run.
+	 * @param fingerprint
+	 *            Fingerprint of the settings of the run.
+	 * @param resume
+	 *            If <code>true</code> the recorded shards are kept, otherwise the checkpoint starts empty.
+	 * @throws IOException
+	 *             if the checkpoint was written by a run with another seed or other settings
+	 */
+	public void start(long seed, String fingerprint, boolean resume) throws IOException {
+		if (resume && this.seed != null) {
+			if (this.seed != seed || !fingerprint.equals(this.fingerprint))
+				throw new IOException("Cannot resume, the checkpoint " + file
+						+ " was written by a run with another seed or other settings.");
+			writer = new FileWriter(file, true);
+		} else {
+			dataOffsets.clear();
+			writer = new FileWriter(file);
+			writer.write(SEED + "\t" + seed + "\n" + FINGERPRINT + "\t" + fingerprint + "\n");
+			writer.flush();
+		}
+		this.seed = seed;
+		this.fingerprint = fingerprint;
+	}
+
+	/**
+	 * @return <code>true</code> if the shard (and its index) was completely written.
+	 */
+	public synchronized boolean isDone(File shard) {
+		return dataOffsets.containsKey(shard.getName()) && shard.exists()
+				&& new File(shard + TabixUtils.STANDARD_INDEX_EXTENSION).exists();
+	}
+
+	/**
+	 * @return Offset of the first block with records of a finished shard.
+	 */
+	public synchronized long getDataOffset(File shard) {
+		return dataOffsets.get(shard.getName());
+	}
+
+	/**
+	 * Records a completely written shard.
+	 */
+	public synchronized void done(File shard, String region, long dataOffset) throws IOException {
+		dataOffsets.put(shard.getName(), dataOffset);
+		writer.write(shard.getName() + "\t" + region + "\t" + dataOffset + "\n");
+		writer.flush();
+	}
+
+	public void close() throws IOException {
+		if (writer != null)
+			writer.close();
+	}
+
+}
@@ -0,0 +1,195 @@
+package de.charite.compbio.simdrom.io.writer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingOutputStream;
+
+import htsjdk.samtools.util.BlockCompressedInputStream;
+import htsjdk.samtools.util.BlockCompressedOutputStream;
+import htsjdk.samtools.util.BlockCompressedStreamConstants;
+import htsjdk.tribble.index.tabix.TabixFormat;
+import htsjdk.tribble.index.tabix.TabixIndex;
+import htsjdk.tribble.index.tabix.TabixIndexCreator;
+import htsjdk.variant.variantcontext.writer.Options;
+import htsjdk.variant.variantcontext.writer.VariantContextWriter;
+import htsjdk.variant.variantcontext.writer.VariantContextWriterBuilder;
+import htsjdk.variant.vcf.VCFCodec;
+import htsjdk.variant.vcf.VCFHeader;
+import htsjdk.variant.vcf.VCFHeaderVersion;
+
+/**
+ * Puts a VCF header and the shards of the {@link VCFShardWriter} together into one VCF. For bgzipped output the
+ * compressed blocks of the shards are copied as they are (only the header blocks and the empty end-of-file block of
+ * every shard are left out), so nothing is compressed twice. For plain output the shards are decompressed.
+ * <p>
+ * The tabix index of a bgzipped output is built from the shards while they are copied: the position of every record in
+ * its shard is moved by the position of the shard in the output. So only the locations of the records have to be
+ * decoded and the output is not read again.
+ *
+ * @author <a href="mailto:max.schubach@charite.de">Max Schubach</a>
+ *
+ */
+public final class ShardConcatenator {
+
+	private static final byte[] EOF_BLOCK = BlockCompressedStreamConstants.EMPTY_GZIP_BLOCK;
+
+	private ShardConcatenator() {
+	}
+
+	/**
+	 * @param header
+	 *            Header of the output.
+	 * @param shards
+	 *            Shards in output order.
+	 * @param output
+	 *            Output stream, closed at the end.
+	 * @param bgzip
+	 *            <code>true</code> to write a bgzipped VCF.
+	 */
+	public static void concatenate(VCFHeader header, List<File> shards, OutputStream output, boolean bgzip)
+			throws IOException {
+		concatenate(header, shards, Collections.nCopies(shards.size(), 0L), output, bgzip);
+	}
+
+	/**
+	 * @param header
+	 *            Header of the output.
+	 * @param shards
+	 *            Shards in output order.
+	 * @param dataOffsets
+	 *            Offset of the first block with records per shard (see {@link VCFShardWriter#getDataOffset()}).
+	 * @param output
+	 *            Output stream, closed at the end.
+	 * @param bgzip
+	 *            <code>true</code> to write a bgzipped VCF.
+	 */
+	public static void concatenate(VCFHeader header, List<File> shards, List<Long> dataOffsets, OutputStream output,
+			boolean bgzip) throws IOException {
+		concatenate(header, shards, dataOffsets, output, bgzip, null);
+	}
+
+	/**
+	 * @param header
+	 *            Header of the output.
+	 * @param shards
+	 *            Shards in output order.
+	 * @param dataOffsets
+	 *            Offset of the first block with records per shard (see {@link VCFShardWriter#getDataOffset()}).
+	 * @param output
+	 *            Output stream, closed at the end.
+	 * @param bgzip
+	 *            <code>true</code> to write a bgzipped VCF.
+	 * @param index
+	 *            Path of the tabix index of a bgzipped output, <code>null</code> for no index.
+	 */
+	public static void concatenate(VCFHeader header, List<File> shards, List<Long> dataOffsets, OutputStream output,
+			boolean bgzip, File index) throws IOException {
+		byte[] headerText = getHeaderText(header);
+		if (bgzip) {
+			CountingOutputStream counting = new CountingOutputStream(output);
+			BlockCompressedOutputStream headerStream = new BlockCompressedOutputStream(counting, null);
+			headerStream.write(headerText);
+			// writes the header blocks without end-of-file block
+			headerStream.flush();
+			TabixIndexCreator indexCreator = index == null ? null : new TabixIndexCreator(TabixFormat.VCF);
+			VCFCodec codec = index == null ? null : getCodec(header);
+			for (int i = 0; i < shards.size(); i++) {
+				if (indexCreator != null)
+					addFeatures(indexCreator, codec, shards.get(i), dataOffsets.get(i), counting.getCount());
+				copyBlocks(shards.get(i), dataOffsets.get(i), counting);
+			}
+			if (indexCreator != null)
+				((TabixIndex) indexCreator.finalizeIndex(counting.getCount() << 16)).write(index);
+			counting.write(EOF_BLOCK);
+		} else {
+			output.write(headerText);
+			for (int i = 0; i < shards.size(); i++) {
+				BlockCompressedInputStream in = new BlockCompressedInputStream(shards.get(i));
+				in.seek(dataOffsets.get(i) << 16);
+				ByteStreams.copy(in, output);
+				in.close();
+			}
+		}
+		output.close();
+	}
+
+	/**
+	 * Copies all BGZF blocks of the shard without the end-of-file block.
+	 */
+	public static void copyBlocks(File shard, OutputStream output) throws IOException {
+		copyBlocks(shard, 0, output);
+	}
+
+	/**
+	 * Copies the BGZF blocks of the shard from the offset on without the end-of-file block.
+	 */
+	public static void copyBlocks(File shard, long offset, OutputStream output) throws IOException {
+		long length = shard.length();
+		if (hasEOFBlock(shard))
+			length -= EOF_BLOCK.length;
+		InputStream in = new FileInputStream(shard);
+		ByteStreams.skipFully(in, offset);
+		ByteStreams.copy(ByteStreams.limit(in, length - offset), output);
+		in.close();
+	}
+
+	/**
+	 * Adds the records of the shard to the index, with the position they get in the output.
+	 * 
+	 * @param start
+	 *            Position of the first copied block of the shard in the output.
+	 */
+	private static void addFeatures(TabixIndexCreator indexCreator, VCFCodec codec, File shard, long dataOffset,
+			long start) throws IOException {
+		BlockCompressedInputStream in = new BlockCompressedInputStream(shard);
+		in.seek(dataOffset << 16);
+		long pointer = in.getFilePointer();
+		String line;
+		while ((line = in.readLine()) != null) {
+			long block = (pointer >>> 16) - dataOffset + start;
+			indexCreator.addFeature(codec.decodeLoc(line), (block << 16) | (pointer & 0xFFFF));
+			pointer = in.getFilePointer();
+		}
+		in.close();
+	}
+
+	private static VCFCodec getCodec(VCFHeader header) {
+		VCFCodec codec = new VCFCodec();
+		codec.setVCFHeader(header, VCFHeaderVersion.VCF4_2);
+		return codec;
+	}
+
+	private static boolean hasEOFBlock(File shard) throws IOException {
+		if (shard.length() < EOF_BLOCK.length)
+			return false;
+		byte[] end = new byte[EOF_BLOCK.length];
+		RandomAccessFile file = new RandomAccessFile(shard, "r");
+		file.seek(shard.length() - EOF_BLOCK.length);
+		file.readFully(end);
+		file.close();
+		return Arrays.equals(end, EOF_BLOCK);
+	}
+
+	/**
+	 * @return The header as it is written by htsjdk.
+	 */
+	public static byte[] getHeaderText(VCFHeader header) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		VariantContextWriter writer = new VariantContextWriterBuilder().setOutputVCFStream(out)
+				.unsetOption(Options.INDEX_ON_THE_FLY).build();
+		writer.writeHeader(header);
+		writer.close();
+		return out.toByteArray();
+	}
+
+}
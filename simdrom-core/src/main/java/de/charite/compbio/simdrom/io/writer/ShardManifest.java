@@ -0,0 +1,56 @@
+package de.charite.compbio.simdrom.io.writer;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Shards of the output in output order. Every shard has the region it covers and the offset of its first block with
+ * records (behind the header), which is needed to put the shards together without recompressing them (see
+ * {@link ShardConcatenator}). Written as TSV (shard, region, data offset), the shard names are relative to the folder
+ * of the manifest.
+ *
+ * @author <a href="mailto:max.schubach@charite.de">Max Schubach</a>
+ *
+ */
+public class ShardManifest {
+
+	/** default name of the manifest in the shard folder */
+	public static final String FILE_NAME = "manifest.tsv";
+
+	private final List<File> files = new ArrayList<File>();
+	private final List<String> regions = new ArrayList<String>();
+	private final List<Long> dataOffsets = new ArrayList<Long>();
+
+	public void add(File file, String region, long dataOffset) {
+		files.add(file);
+		regions.add(region);
+		dataOffsets.add(dataOffset);
+	}
+
+	public List<File> getFiles() {
+		return Collections.unmodifiableList(files);
+	}
+
+	public List<String> getRegions() {
+		return Collections.unmodifiableList(regions);
+	}
+
+	public List<Long> getDataOffsets() {
+		return Collections.unmodifiableList(dataOffsets);
+	}
+
+	public void write(File manifest) throws IOException {
+		Writer writer = new BufferedWriter(new FileWriter(manifest));
+		writer.write("#shard\tregion\tdata_offset\n");
+		for (int i = 0; i < files.size(); i++)
+			writer.write(files.get(i).getName() + "\t" + regions.get(i) + "\t" + dataOffsets.get(i) + "\n");
+		writer.close();
+	}
+
+}
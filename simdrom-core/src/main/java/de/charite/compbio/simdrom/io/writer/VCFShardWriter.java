@@ -0,0 +1,37 @@
+package de.charite.compbio.simdrom.io.writer;
+
+import java.io.File;
+
+import htsjdk.tribble.util.TabixUtils;
+import htsjdk.variant.vcf.VCFHeader;
+
+/**
+ * Writes the records of one part of the output as bgzipped VCF lines. The header is only written if
+ * {@link #writeHeader(VCFHeader)} is called, then in its own blocks, so that the records start at
+ * {@link #getDataOffset()}. Shards are put together by the {@link ShardConcatenator}.
+ *
+ * @author <a href="mailto:max.schubach@charite.de">Max Schubach</a>
+ *
+ */
+public class VCFShardWriter extends BGZFVCFWriter {
+
+	private final File file;
+
+	public VCFShardWriter(File file, VCFHeader header) {
+		this(file, header, false);
+	}
+
+	/**
+	 * @param index
+	 *            If <code>true</code> the tabix index is written next to the shard while writing.
+	 */
+	public VCFShardWriter(File file, VCFHeader header, boolean index) {
+		super(file, header, index ? new File(file + TabixUtils.STANDARD_INDEX_EXTENSION) : null);
+		this.file = file;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+}
@@ -0,0 +1,41 @@
+package de.charite.compbio.simdrom.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A named, thread safe counter of the {@link SIMdromMetrics}. Instances should be kept in a field instead of being
+ * looked up for every increment.
+ * 
+ * @author <a href="mailto:max.schubach@charite.de">Max Schubach</a>
+ *
+ */
+public class Counter {
+
+	private final String name;
+	private final LongAdder value = new LongAdder();
+
+	Counter(String name) {
+		this.name = name;
+	}
+
+	public void increment() {
+		value.increment();
+	}
+
+	public void add(long x) {
+		value.add(x);
+	}
+
+	public long get() {
+		return value.sum();
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	void reset() {
+		value.reset();
+	}
+
+}
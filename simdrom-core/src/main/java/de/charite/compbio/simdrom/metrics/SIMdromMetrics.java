@@ -0,0 +1,184 @@
+package de.charite.compbio.simdrom.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Process wide counters and stage timers of a SIMdrom run.
+ * <p>
+ * Counters are always active, they are {@link LongAdder}s and cheap to increment. Timers are only active if
+ * {@link #setEnabled(boolean)} is set, otherwise {@link #start()} does not even read the clock. Typical use in a hot
+ * loop:
+ * 
+ * <pre>
+ * long start = metrics.start();
+ * // work
+ * metrics.stop(Stage.DECODE, start);
+ * </pre>
+ * 
+ * @author <a href="mailto:max.schubach@charite.de">Max Schubach</a>
+ *
+ */
+public class SIMdromMetrics implements SIMdromMetricsMXBean {
+
+	/**
+	 * Counter of all records read by all samplers.
+	 */
+	public static final String INPUT_RECORDS = "input.records";
+	/**
+	 * Counter of all records written to the output.
+	 */
+	public static final String OUTPUT_RECORDS = "output.records";
+	/**
+	 * JMX name of the registered metrics.
+	 */
+	public static final String OBJECT_NAME = "de.charite.compbio.simdrom:type=SIMdromMetrics";
+
+	private static final SIMdromMetrics INSTANCE = new SIMdromMetrics();
+
+	private final ConcurrentMap<String, Counter> counters = new ConcurrentHashMap<String, Counter>();
+	private final LongAdder[] stageNanos = new LongAdder[Stage.values().length];
+	private volatile boolean enabled = false;
+	private volatile long startNanos = System.nanoTime();
+
+	private SIMdromMetrics() {
+		for (int i = 0; i < stageNanos.length; i++)
+			stageNanos[i] = new LongAdder();
+	}
+
+	/**
+	 * @return the metrics of this process.
+	 */
+	public static SIMdromMetrics get() {
+		return INSTANCE;
+	}
+
+	/**
+	 * @param name
+	 *            of the counter
+	 * @return the counter with this name. Created if it does not exist.
+	 */
+	public Counter getCounter(String name) {
+		Counter counter = counters.get(name);
+		if (counter == null) {
+			counters.putIfAbsent(name, new Counter(name));
+			counter = counters.get(name);
+		}
+		return counter;
+	}
+
+	/**
+	 * @return the current time in nanoseconds if timers are enabled, 0 otherwise.
+	 */
+	public long start() {
+		return enabled ? System.nanoTime() : 0L;
+	}
+
+	/**
+	 * Adds the time since start to the stage.
+	 * 
+	 * @param stage
+	 *            the timed stage
+	 * @param start
+	 *            return value of {@link #start()}
+	 */
+	public void stop(Stage stage, long start) {
+		if (enabled)
+			stageNanos[stage.ordinal()].add(System.nanoTime() - start);
+	}
+
+	/**
+	 * Adds already measured nanoseconds to the stage.
+	 */
+	public void add(Stage stage, long nanos) {
+		if (enabled)
+			stageNanos[stage.ordinal()].add(nanos);
+	}
+
+	/**
+	 * @param stage
+	 *            the stage
+	 * @return nanoseconds spent in the stage. {@link Stage#ENCODE} is measured around the writer, so the part of
+	 *         {@link Stage#COMPRESS} is removed from it.
+	 */
+	public long getStageNanos(Stage stage) {
+		long nanos = stageNanos[stage.ordinal()].sum();
+		if (stage == Stage.ENCODE)
+			nanos = Math.max(0, nanos - stageNanos[Stage.COMPRESS.ordinal()].sum());
+		return nanos;
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Enables the timers and starts the wall clock of the run.
+	 */
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+		this.startNanos = System.nanoTime();
+	}
+
+	/**
+	 * Sets all counters and timers to zero and restarts the wall clock.
+	 */
+	public void reset() {
+		for (Counter counter : counters.values())
+			counter.reset();
+		for (LongAdder nanos : stageNanos)
+			nanos.reset();
+		this.startNanos = System.nanoTime();
+	}
+
+	/**
+	 * Registers these metrics at the platform MBean server as {@link #OBJECT_NAME}.
+	 * 
+	 * @throws JMException
+	 *             if the registration fails
+	 */
+	public void registerMBean() throws JMException {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName(OBJECT_NAME);
+		if (!server.isRegistered(name))
+			server.registerMBean(this, name);
+	}
+
+	@Override
+	public Map<String, Long> getCounters() {
+		Map<String, Long> output = new TreeMap<String, Long>();
+		for (Counter counter : counters.values())
+			output.put(counter.getName(), counter.get());
+		return output;
+	}
+
+	@Override
+	public Map<String, Long> getStageMillis() {
+		Map<String, Long> output = new TreeMap<String, Long>();
+		for (Stage stage : Stage.values())
+			output.put(stage.name().toLowerCase(), getStageNanos(stage) / 1000000);
+		return output;
+	}
+
+	@Override
+	public long getWallTimeMillis() {
+		return (System.nanoTime() - startNanos) / 1000000;
+	}
+
+	@Override
+	public double getRecordsPerSecond() {
+		long millis = getWallTimeMillis();
+		if (millis <= 0)
+			return 0.0;
+		return getCounter(INPUT_RECORDS).get() * 1000.0 / millis;
+	}
+
+}
@@ -0,0 +1,33 @@
+package de.charite.compbio.simdrom.metrics;
+
+import java.util.Map;
+
+/**
+ * JMX view of the {@link SIMdromMetrics} of a running SIMdrom.
+ * 
+ * @author <a href="mailto:max.schubach@charite.de">Max Schubach</a>
+ *
+ */
+public interface SIMdromMetricsMXBean {
+
+	/**
+	 * @return all counters by name.
+	 */
+	public Map<String, Long> getCounters();
+
+	/**
+	 * @return milliseconds spent in every {@link Stage} so far.
+	 */
+	public Map<String, Long> getStageMillis();
+
+	/**
+	 * @return milliseconds since the start of the run.
+	 */
+	public long getWallTimeMillis();
+
+	/**
+	 * @return read input records per second since the start of the run.
+	 */
+	public double getRecordsPerSecond();
+
+}
@@ -0,0 +1,35 @@
+package de.charite.compbio.simdrom.metrics;
+
+/**
+ * Stages of a SIMdrom run that are timed by the {@link SIMdromMetrics}.
+ * 
+ * @author <a href="mailto:max.schubach@charite.de">Max Schubach</a>
+ *
+ */
+public enum Stage {
+	/**
+	 * Reading and parsing the input VCF lines into variants, including BGZF inflation. Parts of a variant (INFO,
+	 * genotypes) are decoded lazily by htsjdk and may be counted to later stages.
+	 */
+	DECODE,
+	/**
+	 * Applying the {@link de.charite.compbio.simdrom.filter.IFilter}s.
+	 */
+	FILTER,
+	/**
+	 * Selecting alleles and building the sampled genotypes.
+	 */
+	SAMPLE,
+	/**
+	 * Merging background variants and mutations in the spike in.
+	 */
+	MERGE,
+	/**
+	 * Encoding the output variants as VCF text (without compression).
+	 */
+	ENCODE,
+	/**
+	 * BGZF compression of the output.
+	 */
+	COMPRESS;
+}
@@ -0,0 +1,39 @@
+package de.charite.compbio.simdrom.metrics;
+
+import java.util.zip.Deflater;
+
+import htsjdk.samtools.util.BlockCompressedOutputStream;
+import htsjdk.samtools.util.zip.DeflaterFactory;
+
+/**
+ * {@link DeflaterFactory} whose deflaters add their time to {@link Stage#COMPRESS}. Install it with
+ * {@link BlockCompressedOutputStream#setDefaultDeflaterFactory(DeflaterFactory)} before the output is opened.
+ * 
+ * @author <a href="mailto:max.schubach@charite.de">Max Schubach</a>
+ *
+ */
+public class TimedDeflaterFactory extends DeflaterFactory {
+
+	@Override
+	public Deflater makeDeflater(int compressionLevel, boolean nowrap) {
+		return new TimedDeflater(compressionLevel, nowrap);
+	}
+
+	private static class TimedDeflater extends Deflater {
+
+		private final SIMdromMetrics metrics = SIMdromMetrics.get();
+
+		TimedDeflater(int level, boolean nowrap) {
+			super(level, nowrap);
+		}
+
+		@Override
+		public int deflate(byte[] b, int off, int len) {
+			long start = metrics.start();
+			int output = super.deflate(b, off, len);
+			metrics.stop(Stage.COMPRESS, start);
+			return output;
+		}
+	}
+
+}
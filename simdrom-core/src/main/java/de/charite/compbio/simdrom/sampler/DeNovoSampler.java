@@ -1,48 +1,156 @@
 package de.charite.compbio.simdrom.sampler;
 
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMSequenceDictionary;
 import htsjdk.samtools.SAMSequenceRecord;
 import htsjdk.samtools.reference.IndexedFastaSequenceFile;
 import htsjdk.samtools.reference.ReferenceSequence;
+import htsjdk.samtools.util.Interval;
+import htsjdk.samtools.util.IntervalList;
+import htsjdk.samtools.util.IntervalTreeMap;
 import htsjdk.variant.variantcontext.Allele;
+import htsjdk.variant.variantcontext.Genotype;
+import htsjdk.variant.variantcontext.GenotypeBuilder;
 import htsjdk.variant.variantcontext.VariantContext;
 import htsjdk.variant.variantcontext.VariantContextBuilder;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.math.RoundingMode;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Queue;
 import java.util.Random;
+import java.util.Set;
 
 import com.google.common.collect.ImmutableSet;
 import com.google.common.math.DoubleMath;
 import com.google.common.primitives.Ints;
 
+import de.charite.compbio.simdrom.sampler.selection.AliasTable;
+import de.charite.compbio.simdrom.sampler.signature.ContextIndex;
+import de.charite.compbio.simdrom.sampler.signature.TrinucleotideContext;
+
 /**
  * @author <a href="mailto:max.schubach@charite.de">Max Schubach</a>
  *
  */
 public class DeNovoSampler implements Iterator<VariantContext> {
 
+	/** draws of positions per variant by a signature before giving up, if the intervals have too few positions */
+	public static final long MAX_DRAWS_PER_VARIANT = 10000;
+
 	private double deNovoRate;
 	private IndexedFastaSequenceFile referenceFile;
 	Queue<VariantContext> deNovoPositions;
+	private Collection<String> sampleNames = Collections.emptyList();
+	private Collection<String> carriers = Collections.emptyList();
+	private final Random random;
 
 	public DeNovoSampler(double deNovoRate, String referenceFile) throws FileNotFoundException {
+		this(deNovoRate, referenceFile, new Random());
+	}
+
+	/**
+	 * @param random
+	 *            Random number generator of the positions and alleles, e.g. with a seed to get the same variants again.
+	 */
+	public DeNovoSampler(double deNovoRate, String referenceFile, Random random) throws FileNotFoundException {
+		this(deNovoRate, referenceFile, null, random);
+	}
+
+	/**
+	 * Places the de novo variants only within the intervals, e.g. the exome or the callable regions. The rate is used
+	 * on the length of the intervals and the positions are drawn directly in them, so the cost only depends on the
+	 * number of variants.
+	 * 
+	 * @param intervals
+	 *            Intervals of the de novo variants, the whole reference if <code>null</code> or empty.
+	 * @param random
+	 *            Random number generator of the positions and alleles, e.g. with a seed to get the same variants again.
+	 */
+	public DeNovoSampler(double deNovoRate, String referenceFile, List<Interval> intervals, Random random)
+			throws FileNotFoundException {
 		this.deNovoRate = deNovoRate;
 		this.referenceFile = new IndexedFastaSequenceFile(new File(referenceFile));
-		calculateVariants();
+		this.random = random;
+		calculateVariants(getIntervals(intervals, this.referenceFile.getSequenceDictionary()));
+	}
+
+	/**
+	 * Places the de novo variants by a mutational signature instead of uniformly. Every variant draws a substitution
+	 * channel by the weights of the signature and then a position of its trinucleotide context uniformly out of the
+	 * {@link ContextIndex}. The reference is not read.
+	 * 
+	 * @param index
+	 *            Positions of the reference by trinucleotide context.
+	 * @param signature
+	 *            Weight per channel of the {@link TrinucleotideContext}, e.g. a COSMIC SBS signature.
+	 * @param random
+	 *            Random number generator of the positions and alleles, e.g. with a seed to get the same variants again.
+	 */
+	public DeNovoSampler(double deNovoRate, ContextIndex index, double[] signature, Random random) throws IOException {
+		this(deNovoRate, index, signature, null, random);
 	}
 
-	private void calculateVariants() {
+	/**
+	 * Places the de novo variants by a mutational signature only within the intervals. Positions of the
+	 * {@link ContextIndex} outside of the intervals are drawn again, at most {@link #MAX_DRAWS_PER_VARIANT} times per
+	 * variant.
+	 * 
+	 * @param intervals
+	 *            Intervals of the de novo variants, the whole reference if <code>null</code> or empty.
+	 */
+	public DeNovoSampler(double deNovoRate, ContextIndex index, double[] signature, List<Interval> intervals,
+			Random random) throws IOException {
+		this.deNovoRate = deNovoRate;
+		this.random = random;
+		calculateVariants(index, signature, getIntervals(intervals, index.getSequenceDictionary()));
+	}
+
+	/**
+	 * @return The intervals on the contigs of the reference, merged and sorted by the reference. The whole contigs if
+	 *         no intervals are given.
+	 */
+	private static List<Interval> getIntervals(List<Interval> intervals, SAMSequenceDictionary dictionary) {
+		IntervalList output = new IntervalList(new SAMFileHeader());
+		output.getHeader().setSequenceDictionary(dictionary);
+		if (intervals == null || intervals.isEmpty()) {
+			for (SAMSequenceRecord sequence : dictionary.getSequences())
+				output.add(new Interval(sequence.getSequenceName(), 1, sequence.getSequenceLength()));
+			return output.getIntervals();
+		}
+		for (Interval interval : intervals) {
+			SAMSequenceRecord sequence = dictionary.getSequence(interval.getContig());
+			if (sequence != null && interval.getStart() <= sequence.getSequenceLength())
+				output.add(new Interval(interval.getContig(), interval.getStart(),
+						Math.min(interval.getEnd(), sequence.getSequenceLength())));
+		}
+		return output.uniqued().getIntervals();
+	}
+
+	private void calculateVariants(List<Interval> intervals) {
+
+		// cumulative length in front of every interval
+		long[] starts = new long[intervals.size()];
+		long size = 0;
+		for (int i = 0; i < intervals.size(); i++) {
+			starts[i] = size;
+			size += intervals.get(i).length();
+		}
+		if (size == 0)
+			return;
 
 		// sample positions
-		long size = referenceFile.getSequenceDictionary().getReferenceLength();
-		Random random = new Random();
 		List<Long> values = new ArrayList<Long>();
 		for (double i = deNovoRate * (double) size; i > 0; i--) {
 			if (i >= 1)
@@ -56,29 +164,101 @@ public class DeNovoSampler implements Iterator<VariantContext> {
 
 		// get variant
 		Collections.sort(values);
-		long position = 0;
-		for (SAMSequenceRecord sequence : referenceFile.getSequenceDictionary().getSequences()) {
-			int length = sequence.getSequenceLength();
-			for (Long value : values) {
-				if (value >= position && value < length+position) {
-					String chr = sequence.getSequenceName();
-					int pos = Ints.checkedCast(value - position);
-					ReferenceSequence refSeq = referenceFile.getSubsequenceAt(chr, pos, pos);
-					Allele ref = Allele.create(refSeq.getBases(), true);
-					Allele alt = createNewAllele(Allele.create(refSeq.getBases()));
-					VariantContext vc = new VariantContextBuilder("deNovo", chr, value - position, value - position,
-							ImmutableSet.<Allele> of(ref, alt)).make();
-					getDeNovoPositions().add(vc);
-				}
-				if (value >= length+position)
-					break;
+		for (Long value : values) {
+			// interval of the sampled value
+			int index = Arrays.binarySearch(starts, value);
+			if (index < 0)
+				index = -index - 2;
+			Interval interval = intervals.get(index);
+			String chr = interval.getContig();
+			// sampled values are 0-based, reference and VCF are 1-based
+			int pos = Ints.checkedCast(value - starts[index]) + interval.getStart();
+			ReferenceSequence refSeq = referenceFile.getSubsequenceAt(chr, pos, pos);
+			Allele ref = Allele.create(refSeq.getBases(), true);
+			Allele alt = createNewAllele(Allele.create(refSeq.getBases()));
+			VariantContext vc = new VariantContextBuilder("deNovo", chr, pos, pos, ImmutableSet.<Allele> of(ref, alt))
+					.make();
+			getDeNovoPositions().add(vc);
+		}
+	}
+
+	private void calculateVariants(ContextIndex index, double[] signature, List<Interval> intervals)
+			throws IOException {
+		// channels of contexts that are not in the reference cannot be drawn
+		double[] weights = new double[TrinucleotideContext.CHANNELS];
+		boolean[] contexts = new boolean[TrinucleotideContext.CONTEXTS];
+		for (int channel = 0; channel < weights.length; channel++) {
+			int context = TrinucleotideContext.getContextOfChannel(channel);
+			if (index.getCount(context) > 0 && signature[channel] > 0.0) {
+				weights[channel] = signature[channel];
+				contexts[context] = true;
+			}
+		}
+		AliasTable channels = new AliasTable(weights);
+		// there cannot be more variants than positions of the drawn contexts
+		long positions = 0;
+		for (int context = 0; context < contexts.length; context++)
+			if (contexts[context])
+				positions += index.getCount(context);
+
+		long size = 0;
+		IntervalTreeMap<Interval> tree = new IntervalTreeMap<Interval>();
+		for (Interval interval : intervals) {
+			size += interval.length();
+			tree.put(interval, interval);
+		}
+		double expected = deNovoRate * (double) size;
+		long amount = Math.min(positions,
+				(long) expected + (random.nextDouble() < expected - Math.floor(expected) ? 1 : 0));
+		Set<Long> used = new HashSet<Long>();
+		final List<ContextIndex.Site> sites = new ArrayList<ContextIndex.Site>();
+		List<Integer> siteChannels = new ArrayList<Integer>();
+		long draws = 0;
+		while (sites.size() < amount && draws++ < MAX_DRAWS_PER_VARIANT * amount) {
+			int channel = channels.next(random);
+			int context = TrinucleotideContext.getContextOfChannel(channel);
+			ContextIndex.Site site = index.getSite(context, (long) (random.nextDouble() * index.getCount(context)));
+			String contig = index.getContigs().get(site.getContig());
+			if (!tree.containsOverlapping(new Interval(contig, site.getPosition(), site.getPosition())))
+				continue;
+			// only one variant per position
+			if (used.add(((long) site.getContig() << 32) | site.getPosition())) {
+				sites.add(site);
+				siteChannels.add(channel);
 			}
-			position += length;
+		}
+
+		Integer[] order = new Integer[sites.size()];
+		for (int i = 0; i < order.length; i++)
+			order[i] = i;
+		Arrays.sort(order, new Comparator<Integer>() {
+
+			@Override
+			public int compare(Integer o1, Integer o2) {
+				ContextIndex.Site s1 = sites.get(o1);
+				ContextIndex.Site s2 = sites.get(o2);
+				if (s1.getContig() != s2.getContig())
+					return Integer.compare(s1.getContig(), s2.getContig());
+				return Integer.compare(s1.getPosition(), s2.getPosition());
+			}
+		});
+		for (int i : order) {
+			ContextIndex.Site site = sites.get(i);
+			int channel = siteChannels.get(i);
+			char ref = TrinucleotideContext.getReference(TrinucleotideContext.getContextOfChannel(channel));
+			char alt = TrinucleotideContext.getAlternative(channel);
+			if (site.isReverse()) {
+				ref = TrinucleotideContext.complement(ref);
+				alt = TrinucleotideContext.complement(alt);
+			}
+			String chr = index.getContigs().get(site.getContig());
+			VariantContext vc = new VariantContextBuilder("deNovo", chr, site.getPosition(), site.getPosition(),
+					ImmutableSet.<Allele> of(Allele.create((byte) ref, true), Allele.create((byte) alt))).make();
+			getDeNovoPositions().add(vc);
 		}
 	}
 
 	private Allele createNewAllele(Allele b) {
-		Random random = new Random();
 		int i = random.nextInt(3);
 		Allele n = getNucleotide(i);
 		if (n == b)
@@ -106,7 +286,31 @@ public class DeNovoSampler implements Iterator<VariantContext> {
 
 	@Override
 	public VariantContext next() {
-		return getDeNovoPositions().poll();
+		VariantContext vc = getDeNovoPositions().poll();
+		if (vc == null)
+			throw new NoSuchElementException();
+		if (sampleNames.isEmpty())
+			return vc;
+		List<Genotype> genotypes = new ArrayList<Genotype>(sampleNames.size());
+		for (String sampleName : sampleNames) {
+			Allele other = carriers.contains(sampleName) ? vc.getAlternateAllele(0) : vc.getReference();
+			genotypes.add(GenotypeBuilder.create(sampleName, Arrays.asList(vc.getReference(), other)));
+		}
+		return new VariantContextBuilder(vc).genotypes(genotypes).make();
+	}
+
+	/**
+	 * Adds genotypes to the de novo variants. The carriers are heterozygous, all other samples homozygous reference.
+	 * Without samples the variants have no genotypes.
+	 * 
+	 * @param sampleNames
+	 *            All samples of the output.
+	 * @param carriers
+	 *            Samples that carry the de novo variants, e.g. only the child of a trio.
+	 */
+	public void setSamples(Collection<String> sampleNames, Collection<String> carriers) {
+		this.sampleNames = sampleNames;
+		this.carriers = carriers;
 	}
 
 	private Queue<VariantContext> getDeNovoPositions() {
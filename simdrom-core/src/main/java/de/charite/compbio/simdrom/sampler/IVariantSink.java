@@ -0,0 +1,22 @@
+package de.charite.compbio.simdrom.sampler;
+
+import java.io.IOException;
+
+import htsjdk.variant.variantcontext.VariantContext;
+
+/**
+ * Receives the output variants one by one in output order, e.g. to use them in the same process without writing and
+ * parsing a VCF file. See {@link SpikeIn#drainTo(IVariantSink)} and {@link ParallelSpikeIn#drainTo(IVariantSink)}.
+ *
+ * @author <a href="mailto:max.schubach@charite.de">Max Schubach</a>
+ *
+ */
+public interface IVariantSink {
+
+	/**
+	 * @param vc
+	 *            Next variant with the genotypes of the output samples.
+	 */
+	public void add(VariantContext vc) throws IOException;
+
+}
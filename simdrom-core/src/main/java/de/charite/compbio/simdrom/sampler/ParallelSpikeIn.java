@@ -0,0 +1,790 @@
+package de.charite.compbio.simdrom.sampler;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.primitives.Doubles;
+
+import de.charite.compbio.simdrom.filter.IFilter;
+import de.charite.compbio.simdrom.filter.RegionFilter;
+
+import de.charite.compbio.simdrom.io.writer.MeasuredVariantContextWriter;
+import de.charite.compbio.simdrom.io.writer.ShardCheckpoint;
+import de.charite.compbio.simdrom.io.writer.ShardManifest;
+import de.charite.compbio.simdrom.io.writer.VCFShardWriter;
+import de.charite.compbio.simdrom.sampler.selection.BinnedAlleleSelection;
+import de.charite.compbio.simdrom.sampler.selection.HypergeometricAllocation;
+import de.charite.compbio.simdrom.sampler.selection.IAlleleBins;
+import de.charite.compbio.simdrom.sampler.selection.IAlleleSelection;
+import de.charite.compbio.simdrom.sampler.selection.OffsetAlleleSelection;
+import de.charite.compbio.simdrom.sampler.selection.SequentialRandomSelection;
+import de.charite.compbio.simdrom.sampler.selection.WeightedAlleleSelection;
+import de.charite.compbio.simdrom.sampler.vcf.VCFAlternativeAlleleCounter;
+import de.charite.compbio.simdrom.sampler.vcf.VCFSampler;
+import de.charite.compbio.simdrom.sampler.vcf.VariantWeight;
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.samtools.util.IOUtil;
+import htsjdk.samtools.util.Interval;
+import htsjdk.samtools.util.IntervalList;
+import htsjdk.tribble.index.tabix.TabixIndex;
+import htsjdk.tribble.readers.AsciiLineReader;
+import htsjdk.tribble.util.TabixUtils;
+import htsjdk.variant.variantcontext.VariantContext;
+import htsjdk.variant.variantcontext.writer.VariantContextWriter;
+import htsjdk.variant.vcf.VCFHeader;
+import htsjdk.variant.vcf.VCFHeaderLine;
+import htsjdk.variant.vcf.VCFHeaderLineType;
+import htsjdk.variant.vcf.VCFInfoHeaderLine;
+
+/**
+ * Spike in with a background population that is split into several files, e.g. one per chromosome. Every background
+ * file is sampled by its own {@link SpikeIn} on a worker thread and written into a headerless shard
+ * ({@link VCFShardWriter}). The shards are ordered like the contigs in the sequence dictionary of the first background
+ * file.
+ * <p>
+ * Mutations (which can be split into several files too) and de novo variants are sampled up front and handed to the
+ * worker of the background file with the same contig. Mutations and de novo variants on contigs without background
+ * file get their own shard at the rank of the contig in the sequence dictionary, unknown contigs at the end.
+ * <p>
+ * For output shards (see {@link #writeOutputShards(File)}) indexed background files are split further into contigs or
+ * chunks, each sampled by its own copy of the sampler.
+ * <p>
+ * Exact variant counts are split into one quota per partition by a multivariate hypergeometric draw over the allele
+ * counts of the partitions (see {@link HypergeometricAllocation}), so the partitions select their quotas on their own
+ * threads. Only a weighted selection needs one selection over all files, which is asked in file order, so the
+ * partitions are sampled one after another then.
+ * <p>
+ * Every partition gets its own random number generator, derived from the {@link #getSeed()} and its index. So the
+ * output does not depend on the order in which the workers finish, and with a {@link ShardCheckpoint} the shards that
+ * are already written can be skipped when a run is resumed.
+ * <p>
+ * Instead of shards the output variants can be taken in the same process by {@link #drainTo(IVariantSink)} or as a
+ * stream ({@link #stream(boolean)}), with the same partitions and random number generators as the output shards. The
+ * samplers are used up by one of these calls.
+ *
+ * @author <a href="mailto:max.schubach@charite.de">Max Schubach</a>
+ *
+ */
+public class ParallelSpikeIn {
+
+	private final List<VCFSampler> backgroundSamplers;
+	private final List<VCFSampler> mutationSamplers;
+	private final DeNovoSampler deNovoSampler;
+	private final boolean log;
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private long shardSize = 0;
+	private long seed = new Random().nextLong();
+	private ShardCheckpoint checkpoint;
+	private Set<VariantContext> vcLogs;
+	/** the partitions share one weighted selection of exact counts and have to be sampled in order */
+	private boolean sharedSelection;
+
+	/**
+	 * @param backgroundSamplers
+	 *            One sampler per background file, all with the same settings.
+	 * @param mutationSamplers
+	 *            One sampler per mutation file, can be empty.
+	 * @param deNovoSampler
+	 *            De novo variants with genotypes, can be <code>null</code>.
+	 * @param log
+	 *            If <code>true</code> the spiked in mutations are collected in {@link #getVcLogs()}.
+	 */
+	public ParallelSpikeIn(List<VCFSampler> backgroundSamplers, List<VCFSampler> mutationSamplers,
+			DeNovoSampler deNovoSampler, boolean log) {
+		this.backgroundSamplers = backgroundSamplers;
+		this.mutationSamplers = mutationSamplers;
+		this.deNovoSampler = deNovoSampler;
+		this.log = log;
+	}
+
+	public VCFHeader getVCFHeader() {
+		Set<VCFHeaderLine> metaData = new LinkedHashSet<VCFHeaderLine>();
+		metaData.addAll(backgroundSamplers.get(0).getFileHeader().getMetaDataInInputOrder());
+		// FIXME workaround for ExAC and 1000 genome data
+		if (backgroundSamplers.get(0).getInfoProjection().keeps("OLD_VARIANT"))
+			metaData.add(new VCFInfoHeaderLine("OLD_VARIANT", 1, VCFHeaderLineType.String,
+					"Flag in 1000 genomes that is not set in the header"));
+		for (VCFSampler mutationSampler : mutationSamplers)
+			metaData.addAll(mutationSampler.getFileHeader().getMetaDataInInputOrder());
+		return new VCFHeader(metaData, backgroundSamplers.get(0).getSampleNames());
+	}
+
+	/**
+	 * Samples all background files and writes one headerless shard per file into the folder.
+	 *
+	 * @param folder
+	 *            Folder of the shards.
+	 * @return The shards in output order.
+	 * @throws IOException
+	 *             if the contigs of a file cannot be read or a worker failed
+	 */
+	public List<File> writeShards(File folder) throws IOException {
+		return write(folder, false).getFiles();
+	}
+
+	/**
+	 * Samples the background and writes one bgzipped and indexed VCF per contig, or per chunk of
+	 * {@link #getShardSize()} bases, into the folder. Background files without tabix index cannot be queried and are
+	 * written into one shard each.
+	 *
+	 * @param folder
+	 *            Folder of the shards.
+	 * @return The shards in output order.
+	 * @throws IOException
+	 *             if the contigs of a file cannot be read or a worker failed
+	 */
+	public ShardManifest writeOutputShards(File folder) throws IOException {
+		return write(folder, true);
+	}
+
+	/**
+	 * Pushes the output variants in output order into the sink on the calling thread. The partitions (contigs or
+	 * chunks of indexed background files, see {@link #spliterator()}) are sampled one after another.
+	 * 
+	 * @return Number of variants.
+	 * @throws IOException
+	 *             if the contigs of a file cannot be read or the sink failed
+	 */
+	public long drainTo(IVariantSink sink) throws IOException {
+		vcLogs = new HashSet<VariantContext>();
+		long size = 0;
+		for (Partition partition : getPartitions(getVCFHeader(), true)) {
+			SpikeIn spikeIn = partition.createSpikeIn();
+			size += spikeIn.drainTo(sink);
+			spikeIn.close();
+			vcLogs.addAll(spikeIn.getVcLogs());
+		}
+		return size;
+	}
+
+	/**
+	 * Spliterator of the output variants in output order, without writing them. It splits along the partitions, i.e.
+	 * the background files and the contigs or chunks of {@link #getShardSize()} bases of indexed ones, so a parallel
+	 * stream samples every partition on its own. A weighted selection of exact counts is shared by the partitions and
+	 * asked in partition order, so the spliterator does not split then.
+	 * 
+	 * @throws IOException
+	 *             if the contigs of a file cannot be read
+	 */
+	public Spliterator<VariantContext> spliterator() throws IOException {
+		vcLogs = Collections.synchronizedSet(new HashSet<VariantContext>());
+		List<Partition> partitions = getPartitions(getVCFHeader(), true);
+		return new PartitionSpliterator(partitions, 0, partitions.size(), !sharedSelection);
+	}
+
+	/**
+	 * @param parallel
+	 *            <code>true</code> for a parallel stream that samples the partitions of the {@link #spliterator()}
+	 *            concurrently.
+	 * @return Stream of the output variants.
+	 * @throws IOException
+	 *             if the contigs of a file cannot be read
+	 */
+	public Stream<VariantContext> stream(boolean parallel) throws IOException {
+		return StreamSupport.stream(spliterator(), parallel);
+	}
+
+	private ShardManifest write(File folder, final boolean outputShards) throws IOException {
+		final VCFHeader header = getVCFHeader();
+		List<Partition> partitions = getPartitions(header, outputShards);
+
+		// spike in per partition
+		ExecutorService executor = Executors
+				.newFixedThreadPool(Math.max(1, Math.min(sharedSelection ? 1 : threads, partitions.size())));
+		List<Future<Set<VariantContext>>> results = new ArrayList<Future<Set<VariantContext>>>();
+		vcLogs = new HashSet<VariantContext>();
+		for (int i = 0; i < partitions.size(); i++) {
+			final Partition partition = partitions.get(i);
+			partition.shard = new File(folder, String.format("shard.%05d.vcf.gz", i));
+			// written before the run was resumed, all mutations of the partition are in the shard
+			if (checkpoint != null && checkpoint.isDone(partition.shard)) {
+				partition.dataOffset = checkpoint.getDataOffset(partition.shard);
+				if (log)
+					vcLogs.addAll(partition.mutations);
+				continue;
+			}
+			results.add(executor.submit(new Callable<Set<VariantContext>>() {
+
+				@Override
+				public Set<VariantContext> call() throws Exception {
+					return write(header, partition, outputShards);
+				}
+			}));
+		}
+		executor.shutdown();
+
+		try {
+			for (Future<Set<VariantContext>> result : results)
+				vcLogs.addAll(result.get());
+		} catch (InterruptedException e) {
+			executor.shutdownNow();
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while sampling the background files", e);
+		} catch (ExecutionException e) {
+			executor.shutdownNow();
+			throw new IOException("Cannot sample a background file", e.getCause());
+		}
+
+		ShardManifest manifest = new ShardManifest();
+		for (Partition partition : partitions)
+			manifest.add(partition.shard, partition.toString(), partition.dataOffset);
+		return manifest;
+	}
+
+	/**
+	 * Orders the background files by contig, splits them into partitions (by contig or chunk if
+	 * <code>split</code>), seeds the partitions and hands out the mutations and de novo variants. Sets
+	 * {@link #sharedSelection}.
+	 */
+	private List<Partition> getPartitions(VCFHeader header, boolean split) throws IOException {
+		SAMSequenceDictionary dictionary = header.getSequenceDictionary();
+
+		// order background files by contig
+		final Map<VCFSampler, List<String>> contigs = new HashMap<VCFSampler, List<String>>();
+		for (VCFSampler sampler : backgroundSamplers)
+			contigs.put(sampler, getContigs(sampler.getFilePath()));
+		final Map<String, Integer> ranks = getContigRanks(dictionary, contigs.values());
+		List<VCFSampler> files = new ArrayList<VCFSampler>(backgroundSamplers);
+		Collections.sort(files, new Comparator<VCFSampler>() {
+
+			@Override
+			public int compare(VCFSampler o1, VCFSampler o2) {
+				return Integer.compare(getFirstRank(contigs.get(o1), ranks), getFirstRank(contigs.get(o2), ranks));
+			}
+		});
+
+		// one partition per file, or per region if the files can be queried
+		List<Partition> partitions = new ArrayList<Partition>();
+		for (VCFSampler sampler : files) {
+			if (split && isIndexed(sampler.getFilePath()))
+				partitions.addAll(split(sampler, contigs.get(sampler), dictionary));
+			else
+				partitions.add(new Partition(sampler, toRegions(contigs.get(sampler))));
+		}
+
+		// exact counts over all partitions
+		List<VCFSampler> backgrounds = new ArrayList<VCFSampler>();
+		for (int i = 0; i < partitions.size(); i++) {
+			backgrounds.add(partitions.get(i).background);
+			partitions.get(i).background.setRandom(new Random(getSeed(i)));
+		}
+		sharedSelection = shareSelection(backgrounds, new Random(getSeed(-1)));
+		shareSelection(mutationSamplers, new Random(getSeed(-2)));
+
+		// sample mutations and de novo variants up front, by contig
+		Map<String, List<VariantContext>> mutations = new LinkedHashMap<String, List<VariantContext>>();
+		for (VCFSampler mutationSampler : mutationSamplers)
+			addByContig(mutations, mutationSampler);
+		Map<String, List<VariantContext>> deNovos = new LinkedHashMap<String, List<VariantContext>>();
+		if (deNovoSampler != null)
+			addByContig(deNovos, deNovoSampler);
+		Set<String> variantContigs = new LinkedHashSet<String>(mutations.keySet());
+		variantContigs.addAll(deNovos.keySet());
+		addLeftovers(partitions, getLeftovers(variantContigs, contigs.values(), ranks), files.get(0), ranks);
+		for (Partition partition : partitions) {
+			partition.mutations = getByRegions(mutations, partition.regions);
+			partition.deNovos = getByRegions(deNovos, partition.regions);
+		}
+		return partitions;
+	}
+
+	private Set<VariantContext> write(VCFHeader header, Partition partition, boolean outputShard) throws IOException {
+		SpikeIn spikeIn = partition.createSpikeIn();
+		VCFShardWriter shardWriter = new VCFShardWriter(partition.shard, header, outputShard);
+		final VariantContextWriter writer = new MeasuredVariantContextWriter(shardWriter);
+		if (outputShard)
+			writer.writeHeader(header);
+		spikeIn.drainTo(new IVariantSink() {
+
+			@Override
+			public void add(VariantContext vc) {
+				writer.add(vc);
+			}
+		});
+		writer.close();
+		spikeIn.close();
+		partition.dataOffset = shardWriter.getDataOffset();
+		if (checkpoint != null)
+			checkpoint.done(partition.shard, partition.toString(), partition.dataOffset);
+		return spikeIn.getVcLogs();
+	}
+
+	/**
+	 * Splits the file into one partition per contig or per chunk of {@link #getShardSize()} bases. Every partition gets
+	 * its own copy of the sampler that only reads variants starting in the region.
+	 */
+	private List<Partition> split(VCFSampler sampler, List<String> contigs, SAMSequenceDictionary dictionary) {
+		List<Partition> partitions = new ArrayList<Partition>();
+		for (String contig : contigs) {
+			int length = Integer.MAX_VALUE;
+			if (dictionary != null && dictionary.getSequence(contig) != null)
+				length = dictionary.getSequence(contig).getSequenceLength();
+			long size = shardSize > 0 && length < Integer.MAX_VALUE ? shardSize : length;
+			for (long start = 1; start <= length; start += size) {
+				Interval region = new Interval(contig, (int) start, (int) Math.min(length, start + size - 1));
+				partitions.add(new Partition(restrict(sampler, region), Lists.newArrayList(region)));
+			}
+		}
+		return partitions;
+	}
+
+	private static VCFSampler restrict(VCFSampler sampler, Interval region) {
+		VCFSampler copy = sampler.copy();
+		List<Interval> intervals = sampler.getIntervals().getIntervals();
+		SAMFileHeader intervalHeader = new SAMFileHeader();
+		intervalHeader.addSequence(new SAMSequenceRecord(region.getContig(), region.getEnd()));
+		IntervalList regionIntervals = new IntervalList(intervalHeader);
+		for (Interval interval : intervals)
+			if (interval.intersects(region))
+				regionIntervals.add(interval.intersect(region));
+		// also used if no interval overlaps, then the filter removes all variants
+		if (regionIntervals.getIntervals().isEmpty())
+			regionIntervals.add(region);
+		copy.setIntervals(regionIntervals);
+		copy.setFilters(ImmutableSet.<IFilter> builder().addAll(sampler.getFilters())
+				.add(new RegionFilter(region, intervals)).build());
+		return copy;
+	}
+
+	private static List<Interval> toRegions(List<String> contigs) {
+		List<Interval> regions = new ArrayList<Interval>();
+		for (String contig : contigs)
+			regions.add(new Interval(contig, 1, Integer.MAX_VALUE));
+		return regions;
+	}
+
+	/**
+	 * If the samplers use exact counts, the alleles of every sampler are counted on {@link #getThreads()} threads. A
+	 * uniform selection (also per bin) is split into one quota per sampler by a {@link HypergeometricAllocation}, and
+	 * every sampler selects its quota on its own. A weighted selection cannot be split, so one selection over the
+	 * alleles of all samplers is shared in the given order.
+	 *
+	 * @return <code>true</code> if the samplers have to be read in the given order.
+	 */
+	private boolean shareSelection(List<VCFSampler> samplers, Random random) throws IOException {
+		if (samplers.size() < 2 || samplers.get(0).getVariantsAmount() <= 0)
+			return false;
+		List<VCFAlternativeAlleleCounter> counters = count(samplers);
+		if (samplers.get(0).getBins() != null) {
+			allocateBinnedSelection(samplers, counters, random);
+			return false;
+		}
+		long[] counts = new long[samplers.size()];
+		for (int i = 0; i < samplers.size(); i++)
+			counts[i] = counters.get(i).getCounts();
+		if (samplers.get(0).getWeight() != null) {
+			double[] weights = new double[0];
+			for (VCFAlternativeAlleleCounter counter : counters)
+				weights = Doubles.concat(weights, counter.getWeights());
+			IAlleleSelection selection = new WeightedAlleleSelection(samplers.get(0).getVariantsAmount(), weights,
+					random);
+			long offset = 0;
+			for (int i = 0; i < samplers.size(); i++) {
+				samplers.get(i).setSelection(new OffsetAlleleSelection(selection, offset));
+				offset += counts[i];
+			}
+			return true;
+		}
+		long[] quotas = HypergeometricAllocation.allocate(samplers.get(0).getVariantsAmount(), counts, random);
+		for (int i = 0; i < samplers.size(); i++)
+			samplers.get(i)
+					.setSelection(new SequentialRandomSelection(quotas[i], counts[i], new Random(random.nextLong())));
+		return false;
+	}
+
+	/**
+	 * Like {@link #shareSelection(List, Random)}, but with one allocation per bin.
+	 */
+	private static void allocateBinnedSelection(List<VCFSampler> samplers, List<VCFAlternativeAlleleCounter> counters,
+			Random random) {
+		IAlleleBins bins = samplers.get(0).getBins();
+		long[][] quotas = new long[bins.size()][];
+		long[][] counts = new long[bins.size()][samplers.size()];
+		for (int i = 0; i < samplers.size(); i++) {
+			long[] binCounts = counters.get(i).getBinCounts();
+			for (int bin = 0; bin < bins.size(); bin++)
+				counts[bin][i] = binCounts[bin];
+		}
+		for (int bin = 0; bin < bins.size(); bin++)
+			quotas[bin] = HypergeometricAllocation.allocate(bins.getCount(bin), counts[bin], random);
+		for (int i = 0; i < samplers.size(); i++) {
+			Random samplerRandom = new Random(random.nextLong());
+			List<IAlleleSelection> selections = new ArrayList<IAlleleSelection>(bins.size());
+			for (int bin = 0; bin < bins.size(); bin++)
+				selections.add(new SequentialRandomSelection(quotas[bin][i], counts[bin][i], samplerRandom));
+			samplers.get(i).setBinnedSelection(new BinnedAlleleSelection(selections));
+		}
+	}
+
+	/**
+	 * Counts the alleles of the samplers (after filtering, in their intervals) on {@link #getThreads()} threads.
+	 * 
+	 * @return One finished counter per sampler with the bins or weights of the samplers.
+	 */
+	private List<VCFAlternativeAlleleCounter> count(List<VCFSampler> samplers) throws IOException {
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, samplers.size())));
+		List<Future<VCFAlternativeAlleleCounter>> results = new ArrayList<Future<VCFAlternativeAlleleCounter>>();
+		for (final VCFSampler sampler : samplers) {
+			results.add(executor.submit(new Callable<VCFAlternativeAlleleCounter>() {
+
+				@Override
+				public VCFAlternativeAlleleCounter call() throws Exception {
+					VCFAlternativeAlleleCounter counter = new VCFAlternativeAlleleCounter(sampler.getFilePath(),
+							sampler.getFilters(), sampler.getIntervals());
+					counter.setInflateThreads(sampler.getInflateThreads());
+					counter.setBins(sampler.getBins());
+					counter.setWeight(sampler.getWeight());
+					counter.getCounts();
+					return counter;
+				}
+			}));
+		}
+		executor.shutdown();
+
+		List<VCFAlternativeAlleleCounter> counters = new ArrayList<VCFAlternativeAlleleCounter>();
+		try {
+			for (Future<VCFAlternativeAlleleCounter> result : results)
+				counters.add(result.get());
+		} catch (InterruptedException e) {
+			executor.shutdownNow();
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while counting the alleles", e);
+		} catch (ExecutionException e) {
+			executor.shutdownNow();
+			throw new IOException("Cannot count the alleles of a file", e.getCause());
+		}
+		return counters;
+	}
+
+	private static void addByContig(Map<String, List<VariantContext>> variants, Iterator<VariantContext> sampler) {
+		while (sampler.hasNext()) {
+			VariantContext vc = sampler.next();
+			List<VariantContext> contig = variants.get(vc.getContig());
+			if (contig == null) {
+				contig = new ArrayList<VariantContext>();
+				variants.put(vc.getContig(), contig);
+			}
+			contig.add(vc);
+		}
+	}
+
+	private static List<VariantContext> getByRegions(Map<String, List<VariantContext>> variants,
+			List<Interval> regions) {
+		List<VariantContext> output = new ArrayList<VariantContext>();
+		for (Interval region : regions) {
+			List<VariantContext> list = variants.get(region.getContig());
+			if (list == null)
+				continue;
+			// several mutation files can have the same contig
+			List<VariantContext> regionVariants = new ArrayList<VariantContext>();
+			for (VariantContext vc : list)
+				if (vc.getStart() >= region.getStart() && vc.getStart() <= region.getEnd())
+					regionVariants.add(vc);
+			Collections.sort(regionVariants, new Comparator<VariantContext>() {
+
+				@Override
+				public int compare(VariantContext o1, VariantContext o2) {
+					return Integer.compare(o1.getStart(), o2.getStart());
+				}
+			});
+			output.addAll(regionVariants);
+		}
+		return output;
+	}
+
+	/**
+	 * Puts every leftover contig at its rank into the partitions. It gets its own partition without background, or
+	 * joins a partition of a background file with contigs before and after it, because the {@link SpikeIn} of the
+	 * partition orders the contigs like the sequence dictionary.
+	 * 
+	 * @param samples
+	 *            Background sampler for the samples of the partitions without background.
+	 */
+	private void addLeftovers(List<Partition> partitions, List<Interval> leftovers, VCFSampler samples,
+			Map<String, Integer> ranks) {
+		for (Interval leftover : leftovers) {
+			int rank = getRank(leftover.getContig(), ranks);
+			int i = 0;
+			while (i < partitions.size() && getFirstRank(partitions.get(i).getContigs(), ranks) <= rank)
+				i++;
+			Partition previous = i == 0 ? null : partitions.get(i - 1);
+			if (previous != null && previous.readBackground && getLastRank(previous.getContigs(), ranks) > rank) {
+				int j = 0;
+				while (j < previous.regions.size() && getRank(previous.regions.get(j).getContig(), ranks) < rank)
+					j++;
+				previous.regions.add(j, leftover);
+			} else
+				partitions.add(i, new Partition(samples.copy(), Lists.newArrayList(leftover), false));
+		}
+	}
+
+	/**
+	 * @return Contigs of the mutations and de novo variants without background file as whole regions, in contig order.
+	 */
+	private static List<Interval> getLeftovers(Collection<String> variantContigs,
+			Collection<List<String>> backgroundContigs, final Map<String, Integer> ranks) {
+		Set<String> covered = new HashSet<String>();
+		for (List<String> list : backgroundContigs)
+			covered.addAll(list);
+		List<String> leftovers = new ArrayList<String>();
+		for (String contig : variantContigs)
+			if (!covered.contains(contig))
+				leftovers.add(contig);
+		Collections.sort(leftovers, new Comparator<String>() {
+
+			@Override
+			public int compare(String o1, String o2) {
+				return Integer.compare(getRank(o1, ranks), getRank(o2, ranks));
+			}
+		});
+		return toRegions(leftovers);
+	}
+
+	/**
+	 * @return Rank of every contig in the sequence dictionary, or in order of the files if there is no dictionary.
+	 */
+	private static Map<String, Integer> getContigRanks(SAMSequenceDictionary dictionary,
+			Collection<List<String>> contigs) {
+		Map<String, Integer> ranks = new HashMap<String, Integer>();
+		if (dictionary != null)
+			for (int i = 0; i < dictionary.size(); i++)
+				ranks.put(dictionary.getSequence(i).getSequenceName(), i);
+		for (List<String> list : contigs)
+			for (String contig : list)
+				if (!ranks.containsKey(contig))
+					ranks.put(contig, ranks.size());
+		return ranks;
+	}
+
+	private static int getRank(String contig, Map<String, Integer> ranks) {
+		Integer rank = ranks.get(contig);
+		return rank == null ? Integer.MAX_VALUE : rank;
+	}
+
+	private static int getFirstRank(List<String> contigs, Map<String, Integer> ranks) {
+		int rank = Integer.MAX_VALUE;
+		for (String contig : contigs)
+			rank = Math.min(rank, getRank(contig, ranks));
+		return rank;
+	}
+
+	private static int getLastRank(List<String> contigs, Map<String, Integer> ranks) {
+		int rank = -1;
+		for (String contig : contigs)
+			rank = Math.max(rank, getRank(contig, ranks));
+		return rank;
+	}
+
+	private static boolean isIndexed(String path) {
+		return new File(path + TabixUtils.STANDARD_INDEX_EXTENSION).exists();
+	}
+
+	/**
+	 * @return The contigs of the file in file order. Read from the tabix index if present, otherwise from the CHROM
+	 *         column of all lines.
+	 */
+	private static List<String> getContigs(String path) throws IOException {
+		File index = new File(path + TabixUtils.STANDARD_INDEX_EXTENSION);
+		if (index.exists())
+			return new TabixIndex(index).getSequenceNames();
+		Set<String> contigs = new LinkedHashSet<String>();
+		AsciiLineReader reader = new AsciiLineReader(IOUtil.openFileForReading(new File(path)));
+		String line;
+		while ((line = reader.readLine()) != null) {
+			if (line.isEmpty() || line.charAt(0) == '#')
+				continue;
+			int tab = line.indexOf('\t');
+			contigs.add(tab < 0 ? line : line.substring(0, tab));
+		}
+		reader.close();
+		return new ArrayList<String>(contigs);
+	}
+
+	public Set<VariantContext> getVcLogs() {
+		if (vcLogs == null)
+			vcLogs = new HashSet<VariantContext>();
+		return vcLogs;
+	}
+
+	/**
+	 * @return Length of the chunks of the output shards in bases, 0 for one shard per contig.
+	 */
+	public long getShardSize() {
+		return shardSize;
+	}
+
+	public void setShardSize(long shardSize) {
+		this.shardSize = shardSize;
+	}
+
+	/**
+	 * @return Seed of the random number generators of the partitions.
+	 */
+	public long getSeed() {
+		return seed;
+	}
+
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+	private long getSeed(long partition) {
+		return seed ^ (0x9E3779B97F4A7C15L * (partition + 3));
+	}
+
+	/**
+	 * @param checkpoint
+	 *            Records the finished output shards and knows the ones of a resumed run, can be <code>null</code>.
+	 */
+	public void setCheckpoint(ShardCheckpoint checkpoint) {
+		this.checkpoint = checkpoint;
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+	public void setThreads(int threads) {
+		this.threads = threads;
+	}
+
+	/**
+	 * Background of one shard with the regions (contigs or chunks) of the mutations and de novo variants it gets.
+	 */
+	private class Partition {
+
+		private final VCFSampler background;
+		private final List<Interval> regions;
+		/** <code>false</code> for contigs without background file, then the background only gives the samples */
+		private final boolean readBackground;
+		private List<VariantContext> mutations;
+		private List<VariantContext> deNovos;
+		private File shard;
+		private long dataOffset;
+
+		private Partition(VCFSampler background, List<Interval> regions) {
+			this(background, regions, true);
+		}
+
+		private Partition(VCFSampler background, List<Interval> regions, boolean readBackground) {
+			this.background = background;
+			this.regions = regions;
+			this.readBackground = readBackground;
+		}
+
+		private SpikeIn createSpikeIn() {
+			return new SpikeIn(background, readBackground, mutations.iterator(), deNovos.iterator(), log);
+		}
+
+		private List<String> getContigs() {
+			List<String> contigs = new ArrayList<String>();
+			for (Interval region : regions)
+				contigs.add(region.getContig());
+			return contigs;
+		}
+
+		/**
+		 * @return The regions, e.g. <code>1:1-1000000</code> or <code>1,2</code> for whole contigs.
+		 */
+		@Override
+		public String toString() {
+			List<String> names = new ArrayList<String>();
+			for (Interval region : regions)
+				names.add(region.getEnd() == Integer.MAX_VALUE ? region.getContig()
+						: region.getContig() + ":" + region.getStart() + "-" + region.getEnd());
+			return Joiner.on(',').join(names);
+		}
+	}
+
+	/**
+	 * Output variants of a range of partitions. Every partition gets its {@link SpikeIn} when it is reached. Splits
+	 * off the first half of the partitions that are not started yet.
+	 */
+	private class PartitionSpliterator implements Spliterator<VariantContext> {
+
+		private final List<Partition> partitions;
+		private final boolean splittable;
+		private int next;
+		private final int end;
+		private SpikeIn current;
+
+		private PartitionSpliterator(List<Partition> partitions, int next, int end, boolean splittable) {
+			this.partitions = partitions;
+			this.next = next;
+			this.end = end;
+			this.splittable = splittable;
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super VariantContext> action) {
+			while (current == null || !current.hasNext()) {
+				if (current != null) {
+					current.close();
+					vcLogs.addAll(current.getVcLogs());
+					current = null;
+				}
+				if (next >= end)
+					return false;
+				current = partitions.get(next++).createSpikeIn();
+			}
+			action.accept(current.next());
+			return true;
+		}
+
+		@Override
+		public Spliterator<VariantContext> trySplit() {
+			if (!splittable || current != null || end - next < 2)
+				return null;
+			int middle = (next + end) >>> 1;
+			Spliterator<VariantContext> prefix = new PartitionSpliterator(partitions, next, middle, splittable);
+			next = middle;
+			return prefix;
+		}
+
+		@Override
+		public long estimateSize() {
+			return Long.MAX_VALUE;
+		}
+
+		@Override
+		public int characteristics() {
+			return ORDERED | NONNULL;
+		}
+
+	}
+
+	public void close() {
+		for (VCFSampler sampler : backgroundSamplers)
+			sampler.close();
+		for (VCFSampler sampler : mutationSamplers)
+			sampler.close();
+	}
+
+}
@@ -1,50 +1,134 @@
 package de.charite.compbio.simdrom.sampler;
 
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.variant.variantcontext.Genotype;
+import htsjdk.variant.variantcontext.GenotypeBuilder;
 import htsjdk.variant.variantcontext.VariantContext;
+import htsjdk.variant.variantcontext.VariantContextBuilder;
 import htsjdk.variant.vcf.VCFHeader;
 import htsjdk.variant.vcf.VCFHeaderLine;
 import htsjdk.variant.vcf.VCFHeaderLineType;
 import htsjdk.variant.vcf.VCFInfoHeaderLine;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
+import com.google.common.collect.ImmutableSet;
+
+import de.charite.compbio.simdrom.metrics.Counter;
+import de.charite.compbio.simdrom.metrics.SIMdromMetrics;
+import de.charite.compbio.simdrom.metrics.Stage;
 import de.charite.compbio.simdrom.sampler.vcf.VCFSampler;
 
+/**
+ * Merges the sampled background with the mutations and de novo variants in output order. Every source is read one
+ * variant ahead, so {@link #hasNext()} is <code>true</code> exactly if {@link #next()} gives back a variant. Variants
+ * of different contigs are ordered like the sequence dictionary of the background header, then like the background
+ * file. Mutations and de novo variants of other contigs come at the end.
+ *
+ * @author <a href="mailto:max.schubach@charite.de">Max Schubach</a>
+ *
+ */
 public class SpikeIn implements Iterator<VariantContext> {
 
 	private VCFSampler backgroundSampler;
+	private boolean readBackground = true;
 	private VCFSampler mutationSampler;
+	private Iterator<VariantContext> mutations;
+	private Iterator<VariantContext> deNovos;
 
 	private VariantContext backgroundVC = null;
 	private VariantContext mutationsVC = null;
+	private VariantContext deNovoVC = null;
 	private boolean log;
 	private Set<VariantContext> vcLogs;
+	private final SIMdromMetrics metrics = SIMdromMetrics.get();
+	private final Counter spikedIn = metrics.getCounter("spikein.mutations");
+	private final Counter deNovoCounter = metrics.getCounter("spikein.denovo");
+	private ImmutableSet<String> sampleNames;
+	private final Map<String, Integer> contigRanks = new HashMap<String, Integer>();
 
 	public SpikeIn(VCFSampler backgroundSampler, boolean log) {
 		this(backgroundSampler, null, log);
 	}
 
 	public SpikeIn(VCFSampler backgroundSampler, VCFSampler mutationSampler, boolean log) {
+		this(backgroundSampler, mutationSampler, backgroundSampler.getDeNovoGenerator(), log);
+		this.mutationSampler = mutationSampler;
+	}
+
+	/**
+	 * Spike in mutations and de novo variants that are already sampled, e.g. the ones of the contigs of one background
+	 * file. The {@link #getVCFHeader()} only contains the background then.
+	 * 
+	 * @param backgroundSampler
+	 *            Sampler of the background population.
+	 * @param mutations
+	 *            Sorted mutations with genotypes, can be <code>null</code>.
+	 * @param deNovos
+	 *            Sorted de novo variants with genotypes, can be <code>null</code>.
+	 * @param log
+	 *            If <code>true</code> the spiked in mutations are collected in {@link #getVcLogs()}.
+	 */
+	public SpikeIn(VCFSampler backgroundSampler, Iterator<VariantContext> mutations, Iterator<VariantContext> deNovos,
+			boolean log) {
+		this(backgroundSampler, true, mutations, deNovos, log);
+	}
+
+	/**
+	 * @param readBackground
+	 *            If <code>false</code> the background sampler is only used for the header and the samples, e.g. for
+	 *            contigs without background file.
+	 */
+	SpikeIn(VCFSampler backgroundSampler, boolean readBackground, Iterator<VariantContext> mutations,
+			Iterator<VariantContext> deNovos, boolean log) {
 		super();
 		this.backgroundSampler = backgroundSampler;
-		this.mutationSampler = mutationSampler;
+		this.readBackground = readBackground;
+		this.mutations = mutations;
+		this.deNovos = deNovos;
 		this.log = log;
+		this.sampleNames = backgroundSampler.getSampleNames();
+		SAMSequenceDictionary dictionary = backgroundSampler.getFileHeader().getSequenceDictionary();
+		if (dictionary != null)
+			for (int i = 0; i < dictionary.size(); i++)
+				contigRanks.put(dictionary.getSequence(i).getSequenceName(), i);
+
+		backgroundVC = nextBackground();
+		mutationsVC = next(mutations);
+		deNovoVC = next(deNovos);
+	}
 
-		if (backgroundSampler.hasNext())
-			backgroundVC = backgroundSampler.next();
-		if ((mutationSampler != null && mutationSampler.hasNext()))
-			mutationsVC = mutationSampler.next();
+	private static VariantContext next(Iterator<VariantContext> iterator) {
+		if (iterator != null && iterator.hasNext())
+			return iterator.next();
+		return null;
+	}
+
+	private VariantContext nextBackground() {
+		if (!readBackground)
+			return null;
+		VariantContext vc = next(backgroundSampler);
+		if (vc != null && !contigRanks.containsKey(vc.getContig()))
+			contigRanks.put(vc.getContig(), contigRanks.size());
+		return vc;
 	}
 
 	public VCFHeader getVCFHeader() {
 		Set<VCFHeaderLine> metaData = new LinkedHashSet<VCFHeaderLine>();
 		metaData.addAll(backgroundSampler.getFileHeader().getMetaDataInInputOrder());
 		// FIXME workaround for ExAC and 1000 genome data
-		metaData.add(new VCFInfoHeaderLine("OLD_VARIANT", 1, VCFHeaderLineType.String,
-				"Flag in 1000 genomes that is not set in the header"));
+		if (backgroundSampler.getInfoProjection().keeps("OLD_VARIANT"))
+			metaData.add(new VCFInfoHeaderLine("OLD_VARIANT", 1, VCFHeaderLineType.String,
+					"Flag in 1000 genomes that is not set in the header"));
 		if (mutationSampler != null) {
 			metaData.addAll(mutationSampler.getFileHeader().getMetaDataInInputOrder());
 		
@@ -54,13 +138,29 @@ public class SpikeIn implements Iterator<VariantContext> {
 
 	@Override
 	public boolean hasNext() {
-		return (backgroundVC != null || mutationsVC != null);
+		return (backgroundVC != null || mutationsVC != null || deNovoVC != null);
 	}
 
 	@Override
 	public VariantContext next() {
+		if (!hasNext())
+			throw new NoSuchElementException();
 		return getNextVariantContext();
 	}
+
+	/**
+	 * Pushes all remaining variants into the sink.
+	 * 
+	 * @return Number of variants.
+	 */
+	public long drainTo(IVariantSink sink) throws IOException {
+		long size = 0;
+		while (hasNext()) {
+			sink.add(next());
+			size++;
+		}
+		return size;
+	}
 	
 	@Override
 	public void remove() {
@@ -68,36 +168,63 @@ public class SpikeIn implements Iterator<VariantContext> {
 	}
 
 	private VariantContext getNextVariantContext() {
-		VariantContext output = null;
-		boolean backgroundSelection = true;
-		if (backgroundVC != null || mutationsVC != null) {
-
-			if (mutationsVC == null)
-				output = backgroundVC;
-			else if (backgroundVC == null) {
-				output = mutationsVC;
-				backgroundSelection = false;
-			} else if (backgroundVC.getContig().equals(mutationsVC.getContig())) {
-				if (backgroundVC.getStart() <= mutationsVC.getStart())
-					output = backgroundVC;
-				else {
-					output = mutationsVC;
-					backgroundSelection = false;
-				}
-			} else {
-				output = backgroundVC;
-			}
-
-			if (backgroundSelection)
-				backgroundVC = backgroundSampler.next();
-			else
-				mutationsVC = mutationSampler.next();
-		}
-		if (!backgroundSelection)
+		long start = metrics.start();
+		// background first, then mutations, then de novo variants
+		VariantContext output = backgroundVC;
+		if (isBefore(mutationsVC, output))
+			output = mutationsVC;
+		if (isBefore(deNovoVC, output))
+			output = deNovoVC;
+		metrics.stop(Stage.MERGE, start);
+
+		if (output == backgroundVC)
+			backgroundVC = nextBackground();
+		else if (output == mutationsVC) {
+			mutationsVC = next(mutations);
+			spikedIn.increment();
 			addLog(output);
+			output = toBackgroundSamples(output);
+		} else {
+			deNovoVC = next(deNovos);
+			deNovoCounter.increment();
+		}
 		return output;
 	}
 
+	/**
+	 * @return <code>true</code> if the candidate has to be written before the current variant.
+	 */
+	private boolean isBefore(VariantContext candidate, VariantContext current) {
+		if (candidate == null)
+			return false;
+		if (current == null)
+			return true;
+		if (!current.getContig().equals(candidate.getContig()))
+			return getContigRank(candidate.getContig()) < getContigRank(current.getContig());
+		return candidate.getStart() < current.getStart();
+	}
+
+	private int getContigRank(String contig) {
+		Integer rank = contigRanks.get(contig);
+		return rank == null ? Integer.MAX_VALUE : rank;
+	}
+
+	/**
+	 * The background can have other samples than the mutations (e.g. one per population). A sample of the background
+	 * gets the genotype of the mutation sample with the same name, or otherwise the one of the first mutation sample.
+	 */
+	private VariantContext toBackgroundSamples(VariantContext mutation) {
+		if (!mutation.hasGenotypes() || mutation.getSampleNames().equals(sampleNames))
+			return mutation;
+		Genotype first = mutation.getGenotype(0);
+		List<Genotype> genotypes = new ArrayList<Genotype>(sampleNames.size());
+		for (String sampleName : sampleNames) {
+			Genotype genotype = mutation.getGenotype(sampleName);
+			genotypes.add(new GenotypeBuilder(genotype == null ? first : genotype).name(sampleName).make());
+		}
+		return new VariantContextBuilder(mutation).genotypes(genotypes).make();
+	}
+
 	private void addLog(VariantContext output) {
 		if (log)
 			getVcLogs().add(output);
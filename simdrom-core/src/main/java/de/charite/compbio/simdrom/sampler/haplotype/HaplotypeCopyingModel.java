@@ -0,0 +1,76 @@
+package de.charite.compbio.simdrom.sampler.haplotype;
+
+import java.util.Random;
+
+import de.charite.compbio.simdrom.metrics.Counter;
+
+/**
+ * Copying model with recombination of N. Li and M. Stephens (Modeling linkage disequilibrium and identifying
+ * recombination hotspots using single-nucleotide polymorphism data, Genetics 165(4), 2003). Each of the two sampled
+ * haplotypes copies one haplotype of the panel and switches to a uniformly drawn panel haplotype between two records
+ * with probability <code>1 - exp(-rho * d / K)</code>, where <code>d</code> is the distance in base pairs,
+ * <code>K</code> the number of panel haplotypes and <code>rho</code> the population scaled recombination rate per base
+ * pair. Nothing is copied with errors, so only alleles of the panel are sampled.
+ * <p>
+ * The model only moves forward, so only the current source of every sampled haplotype is kept. On a new contig both
+ * sources are drawn anew.
+ *
+ * @author <a href="mailto:max.schubach@charite.de">Max Schubach</a>
+ *
+ */
+public class HaplotypeCopyingModel {
+
+	/** rho = 4 * Ne * r with Ne = 10,000 and r = 1e-8 per base pair (about 1 cM/Mb) */
+	public static final double DEFAULT_RECOMBINATION_RATE = 4.0e-4;
+
+	private final int haplotypes;
+	private final double switchRate;
+	private final Random random;
+	private final Counter switchCounter;
+	private final int[] sources = new int[2];
+	private String contig;
+	private int position;
+
+	/**
+	 * @param haplotypes
+	 *            Number of haplotypes in the panel (two per sample).
+	 * @param recombinationRate
+	 *            Population scaled recombination rate per base pair.
+	 * @param random
+	 *            Random number generator.
+	 * @param switchCounter
+	 *            Counts the switches to another panel haplotype.
+	 */
+	public HaplotypeCopyingModel(int haplotypes, double recombinationRate, Random random, Counter switchCounter) {
+		if (haplotypes < 1)
+			throw new IllegalArgumentException("The panel has no haplotypes.");
+		this.haplotypes = haplotypes;
+		this.switchRate = recombinationRate / haplotypes;
+		this.random = random;
+		this.switchCounter = switchCounter;
+	}
+
+	/**
+	 * Moves the model to the next record.
+	 *
+	 * @return Panel haplotypes (<code>2 * sample + allele</code>) copied by the two sampled haplotypes at the position.
+	 */
+	public int[] next(String contig, int position) {
+		if (!contig.equals(this.contig)) {
+			for (int i = 0; i < sources.length; i++)
+				sources[i] = random.nextInt(haplotypes);
+			this.contig = contig;
+		} else {
+			double probability = 1.0 - Math.exp(-switchRate * Math.max(0, position - this.position));
+			for (int i = 0; i < sources.length; i++) {
+				if (random.nextDouble() < probability) {
+					sources[i] = random.nextInt(haplotypes);
+					switchCounter.increment();
+				}
+			}
+		}
+		this.position = position;
+		return sources.clone();
+	}
+
+}
@@ -0,0 +1,78 @@
+package de.charite.compbio.simdrom.sampler.haplotype;
+
+import de.charite.compbio.simdrom.sampler.vcf.UndecodedGenotypes;
+import htsjdk.variant.variantcontext.Allele;
+import htsjdk.variant.variantcontext.Genotype;
+import htsjdk.variant.variantcontext.GenotypesContext;
+import htsjdk.variant.variantcontext.VariantContext;
+
+/**
+ * Reads the alleles of single panel haplotypes of a phased multi-sample record. Haplotype <code>h</code> is the allele
+ * <code>h % 2</code> of the GT of sample <code>h / 2</code>. If the genotypes are not decoded yet, the GT fields are
+ * read from the {@link UndecodedGenotypes} up to the last needed sample, so no {@link Genotype} objects are created.
+ * Missing alleles are read as reference, haploid calls as the same allele on both haplotypes.
+ *
+ * @author <a href="mailto:max.schubach@charite.de">Max Schubach</a>
+ *
+ */
+public final class PhasedAlleleReader {
+
+	private PhasedAlleleReader() {
+	}
+
+	/**
+	 * @return Index of the allele (0 for the reference) of every haplotype.
+	 */
+	public static int[] getAlleles(VariantContext vc, int[] haplotypes) {
+		String columns = UndecodedGenotypes.getColumns(vc);
+		if (columns != null)
+			return getAlleles(columns, haplotypes);
+
+		GenotypesContext genotypes = vc.getGenotypes();
+		int[] alleles = new int[haplotypes.length];
+		for (int i = 0; i < haplotypes.length; i++) {
+			Genotype genotype = genotypes.get(haplotypes[i] / 2);
+			if (genotype.getPloidy() == 0)
+				continue;
+			Allele allele = genotype.getAllele(Math.min(haplotypes[i] % 2, genotype.getPloidy() - 1));
+			alleles[i] = Math.max(0, vc.getAlleleIndex(allele));
+		}
+		return alleles;
+	}
+
+	/**
+	 * @param columns
+	 *            FORMAT and sample columns, separated by tabs.
+	 */
+	private static int[] getAlleles(String columns, int[] haplotypes) {
+		int[] alleles = new int[haplotypes.length];
+		int formatEnd = columns.indexOf('\t');
+		int gtIndex = UndecodedGenotypes.getGTIndex(columns);
+		if (gtIndex < 0 || formatEnd < 0)
+			return alleles;
+
+		int last = 0;
+		for (int haplotype : haplotypes)
+			last = Math.max(last, haplotype / 2);
+		// start of the column of every sample up to the last needed one
+		int[] starts = new int[last + 1];
+		int start = formatEnd + 1;
+		for (int sample = 0; sample <= last; sample++) {
+			starts[sample] = start;
+			start = columns.indexOf('\t', start) + 1;
+			if (start == 0 && sample < last)
+				throw new IllegalStateException("Record has no genotype of sample " + last + ".");
+		}
+		int[] gt = new int[2];
+		for (int i = 0; i < haplotypes.length; i++) {
+			int gtStart = UndecodedGenotypes.getGTStart(columns, starts[haplotypes[i] / 2], gtIndex);
+			if (gtStart < 0)
+				continue;
+			// a haploid call is the same allele on both haplotypes
+			int ploidy = UndecodedGenotypes.readAlleles(columns, gtStart, gt);
+			alleles[i] = Math.max(0, gt[Math.min(haplotypes[i] % 2, ploidy - 1)]);
+		}
+		return alleles;
+	}
+
+}
@@ -0,0 +1,81 @@
+package de.charite.compbio.simdrom.sampler.selection;
+
+import java.util.Random;
+
+/**
+ * Draws indices with probabilities proportional to their weights in constant time by the alias method (M. D. Vose, A
+ * linear algorithm for generating random numbers with a given distribution, IEEE Trans. Softw. Eng. 17(9), 1991). The
+ * table is built once in linear time. Every draw picks a column uniformly and then either the column or its alias.
+ *
+ * @author <a href="mailto:max.schubach@charite.de">Max Schubach</a>
+ *
+ */
+public class AliasTable {
+
+	private final double[] probabilities;
+	private final int[] aliases;
+
+	/**
+	 * @param weights
+	 *            Non-negative weights, at least one has to be positive.
+	 */
+	public AliasTable(double[] weights) {
+		int n = weights.length;
+		double sum = 0.0;
+		for (double weight : weights) {
+			if (weight < 0.0 || Double.isNaN(weight))
+				throw new IllegalArgumentException("Weights have to be non-negative.");
+			sum += weight;
+		}
+		if (sum <= 0.0)
+			throw new IllegalArgumentException("At least one weight has to be positive.");
+
+		this.probabilities = new double[n];
+		this.aliases = new int[n];
+		// columns below and above the average, used as stacks
+		int[] small = new int[n];
+		int[] large = new int[n];
+		int smallSize = 0;
+		int largeSize = 0;
+		double[] scaled = new double[n];
+		for (int i = 0; i < n; i++) {
+			scaled[i] = weights[i] * n / sum;
+			if (scaled[i] < 1.0)
+				small[smallSize++] = i;
+			else
+				large[largeSize++] = i;
+		}
+		while (smallSize > 0 && largeSize > 0) {
+			int less = small[--smallSize];
+			int more = large[--largeSize];
+			probabilities[less] = scaled[less];
+			aliases[less] = more;
+			scaled[more] = scaled[more] + scaled[less] - 1.0;
+			if (scaled[more] < 1.0)
+				small[smallSize++] = more;
+			else
+				large[largeSize++] = more;
+		}
+		// the rest is 1 up to rounding errors
+		while (largeSize > 0)
+			probabilities[large[--largeSize]] = 1.0;
+		while (smallSize > 0)
+			probabilities[small[--smallSize]] = 1.0;
+	}
+
+	/**
+	 * @return Number of indices.
+	 */
+	public int size() {
+		return probabilities.length;
+	}
+
+	/**
+	 * @return Index drawn by its weight.
+	 */
+	public int next(Random random) {
+		int column = random.nextInt(probabilities.length);
+		return random.nextDouble() < probabilities[column] ? column : aliases[column];
+	}
+
+}
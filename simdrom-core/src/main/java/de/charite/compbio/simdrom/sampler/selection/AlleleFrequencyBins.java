@@ -0,0 +1,99 @@
+package de.charite.compbio.simdrom.sampler.selection;
+
+import java.util.List;
+
+import htsjdk.variant.variantcontext.VariantContext;
+
+/**
+ * Allele frequency bins with a target number of alleles per bin. The frequency of every alternative allele is read from
+ * an INFO field. Bin <code>i</code> contains the frequencies from the upper bound of bin <code>i - 1</code> (0 for the
+ * first bin) inclusive up to its own upper bound exclusive. The upper bound of the last bin can be
+ * {@link Double#POSITIVE_INFINITY} to take all remaining frequencies.
+ *
+ * @author <a href="mailto:max.schubach@charite.de">Max Schubach</a>
+ *
+ */
+public class AlleleFrequencyBins implements IAlleleBins {
+
+	private final String identifier;
+	private final double[] upperBounds;
+	private final long[] counts;
+
+	/**
+	 * @param identifier
+	 *            INFO field with the allele frequencies.
+	 * @param upperBounds
+	 *            Increasing exclusive upper bounds of the bins.
+	 * @param counts
+	 *            Number of alleles to select per bin.
+	 */
+	public AlleleFrequencyBins(String identifier, double[] upperBounds, long[] counts) {
+		if (upperBounds.length != counts.length)
+			throw new IllegalArgumentException("Every allele frequency bin needs one count.");
+		for (int i = 1; i < upperBounds.length; i++)
+			if (upperBounds[i] <= upperBounds[i - 1])
+				throw new IllegalArgumentException("Upper bounds of the allele frequency bins have to increase.");
+		this.identifier = identifier;
+		this.upperBounds = upperBounds.clone();
+		this.counts = counts.clone();
+	}
+
+	@Override
+	public int size() {
+		return counts.length;
+	}
+
+	@Override
+	public long getCount(int bin) {
+		return counts[bin];
+	}
+
+	/**
+	 * @return Number of alleles to select in all bins.
+	 */
+	public long getSize() {
+		long size = 0;
+		for (long count : counts)
+			size += count;
+		return size;
+	}
+
+	/**
+	 * @return Bin of the allele frequency, -1 if it is in no bin.
+	 */
+	public int getBin(double af) {
+		if (af < 0.0)
+			return -1;
+		for (int i = 0; i < upperBounds.length; i++)
+			if (af < upperBounds[i])
+				return i;
+		return -1;
+	}
+
+	/**
+	 * @return Bin of every alternative allele of the variant by the allele frequencies in the INFO field, -1 if the
+	 *         frequency is missing or in no bin.
+	 */
+	@Override
+	public int[] getBins(VariantContext vc) {
+		int[] bins = new int[vc.getAlternateAlleles().size()];
+		List<Object> afs = vc.getCommonInfo().getAttributeAsList(identifier);
+		for (int i = 0; i < bins.length; i++) {
+			if (i < afs.size() && afs.get(i) != null && !afs.get(i).toString().equals("."))
+				bins[i] = getBin(Double.parseDouble(afs.get(i).toString()));
+			else
+				bins[i] = -1;
+		}
+		return bins;
+	}
+
+	/**
+	 * @return Name of the bin, e.g. <code>0.001-0.05</code>.
+	 */
+	@Override
+	public String getName(int bin) {
+		return (bin == 0 ? "0" : Double.toString(upperBounds[bin - 1])) + "-"
+				+ (Double.isInfinite(upperBounds[bin]) ? "1" : Double.toString(upperBounds[bin]));
+	}
+
+}
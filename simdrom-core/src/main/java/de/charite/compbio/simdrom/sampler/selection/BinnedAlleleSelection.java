@@ -0,0 +1,46 @@
+package de.charite.compbio.simdrom.sampler.selection;
+
+import java.util.List;
+
+/**
+ * Exact selection of alternative alleles per bin of {@link IAlleleBins}, e.g. per allele frequency range. The alleles
+ * of every bin are numbered on their own in reading order and have their own {@link IAlleleSelection}, so all bins are
+ * filled in the same pass.
+ *
+ * @author <a href="mailto:max.schubach@charite.de">Max Schubach</a>
+ *
+ */
+public class BinnedAlleleSelection {
+
+	private final List<IAlleleSelection> selections;
+	/** index of the next allele per bin */
+	private final long[] positions;
+
+	/**
+	 * @param selections
+	 *            Selection per bin.
+	 */
+	public BinnedAlleleSelection(List<IAlleleSelection> selections) {
+		this.selections = selections;
+		this.positions = new long[selections.size()];
+	}
+
+	/**
+	 * Check if the next allele of the bin is selected.
+	 *
+	 * @param bin
+	 *            Bin of the allele.
+	 * @return <code>true</code> if the allele is selected.
+	 */
+	public boolean isSelected(int bin) {
+		return selections.get(bin).isSelected(positions[bin]++);
+	}
+
+	/**
+	 * @return Number of selected alleles of the bin.
+	 */
+	public long getSize(int bin) {
+		return selections.get(bin).getSize();
+	}
+
+}
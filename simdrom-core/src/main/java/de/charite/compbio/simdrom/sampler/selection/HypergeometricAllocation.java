@@ -0,0 +1,48 @@
+package de.charite.compbio.simdrom.sampler.selection;
+
+import java.util.Random;
+
+/**
+ * Splits an exact selection of k of N alleles into quotas of blocks, e.g. of the files, contigs or chunks that are
+ * sampled on their own threads. The quotas are a draw of the multivariate hypergeometric distribution with the allele
+ * counts of the blocks, i.e. the number of alleles per block of a uniform selection over all blocks. If every block then
+ * selects its quota uniformly out of its own alleles, the selected alleles have the same distribution as with one
+ * {@link SequentialRandomSelection} over all blocks, but the blocks do not have to be read in order.
+ * <p>
+ * The quotas are counted from the indices of one {@link SequentialRandomSelection} of k of N, so the draw takes an
+ * expected time proportional to k plus the number of blocks and constant memory besides the quotas.
+ *
+ * @author <a href="mailto:max.schubach@charite.de">Max Schubach</a>
+ *
+ */
+public final class HypergeometricAllocation {
+
+	private HypergeometricAllocation() {
+	}
+
+	/**
+	 * @param k
+	 *            Number of alleles to select. If it is larger than the sum of the counts all alleles are selected.
+	 * @param counts
+	 *            Number of alleles per block.
+	 * @param random
+	 *            Random number generator.
+	 * @return Number of selected alleles per block.
+	 */
+	public static long[] allocate(long k, long[] counts, Random random) {
+		long[] quotas = new long[counts.length];
+		long total = 0;
+		for (long count : counts)
+			total += count;
+		SequentialRandomSelection selection = new SequentialRandomSelection(k, total, random);
+		int block = 0;
+		long end = counts.length == 0 ? 0 : counts[0];
+		for (long index = selection.nextIndex(); index != Long.MAX_VALUE; index = selection.nextIndex()) {
+			while (index >= end)
+				end += counts[++block];
+			quotas[block]++;
+		}
+		return quotas;
+	}
+
+}
@@ -0,0 +1,34 @@
+package de.charite.compbio.simdrom.sampler.selection;
+
+import htsjdk.variant.variantcontext.VariantContext;
+
+/**
+ * Interface of bins of alternative alleles with a target number of selected alleles per bin, e.g. allele frequency
+ * ranges or genes. Used by the {@link BinnedAlleleSelection}.
+ *
+ * @author <a href="mailto:max.schubach@charite.de">Max Schubach</a>
+ *
+ */
+public interface IAlleleBins {
+
+	/**
+	 * @return Number of bins.
+	 */
+	public int size();
+
+	/**
+	 * @return Number of alleles to select in the bin.
+	 */
+	public long getCount(int bin);
+
+	/**
+	 * @return Bin of every alternative allele of the variant, -1 if the allele is in no bin.
+	 */
+	public int[] getBins(VariantContext vc);
+
+	/**
+	 * @return Name of the bin, used in the metrics.
+	 */
+	public String getName(int bin);
+
+}
@@ -0,0 +1,27 @@
+package de.charite.compbio.simdrom.sampler.selection;
+
+/**
+ * Interface of an exact selection of alternative alleles. The alleles of a file are numbered in reading order (after
+ * filtering) and the selection is asked once per allele while scanning the file.
+ *
+ * @author <a href="mailto:max.schubach@charite.de">Max Schubach</a>
+ *
+ */
+public interface IAlleleSelection {
+
+	/**
+	 * Check if the allele is selected. Indices have to be asked in increasing order, so implementations can use a
+	 * cursor instead of a lookup structure.
+	 *
+	 * @param index
+	 *            0-based index of the alternative allele in the file.
+	 * @return <code>true</code> if the allele is selected.
+	 */
+	public boolean isSelected(long index);
+
+	/**
+	 * @return Number of selected alleles in total.
+	 */
+	public long getSize();
+
+}
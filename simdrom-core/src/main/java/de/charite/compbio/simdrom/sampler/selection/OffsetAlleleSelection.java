@@ -0,0 +1,39 @@
+package de.charite.compbio.simdrom.sampler.selection;
+
+/**
+ * View of one file on a selection over several files that are read one after another. The alleles of the file start
+ * at the offset in the shared selection, so the indices of all files together are still asked in increasing order.
+ *
+ * @author <a href="mailto:max.schubach@charite.de">Max Schubach</a>
+ *
+ */
+public class OffsetAlleleSelection implements IAlleleSelection {
+
+	private final IAlleleSelection selection;
+	private final long offset;
+
+	/**
+	 * @param selection
+	 *            Selection over all files.
+	 * @param offset
+	 *            Number of alleles in the files read before this one.
+	 */
+	public OffsetAlleleSelection(IAlleleSelection selection, long offset) {
+		this.selection = selection;
+		this.offset = offset;
+	}
+
+	@Override
+	public boolean isSelected(long index) {
+		return selection.isSelected(offset + index);
+	}
+
+	/**
+	 * @return Number of selected alleles of all files.
+	 */
+	@Override
+	public long getSize() {
+		return selection.getSize();
+	}
+
+}
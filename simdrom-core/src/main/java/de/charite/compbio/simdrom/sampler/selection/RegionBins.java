@@ -0,0 +1,53 @@
+package de.charite.compbio.simdrom.sampler.selection;
+
+import java.util.Arrays;
+
+import de.charite.compbio.simdrom.interval.TargetRegions;
+import htsjdk.variant.variantcontext.VariantContext;
+
+/**
+ * One bin per target region (e.g. per gene) with the same number of alleles to select in every region. All alleles of
+ * a variant are in the first region it overlaps.
+ *
+ * @author <a href="mailto:max.schubach@charite.de">Max Schubach</a>
+ *
+ */
+public class RegionBins implements IAlleleBins {
+
+	private final TargetRegions regions;
+	private final long count;
+
+	/**
+	 * @param regions
+	 *            Target regions.
+	 * @param count
+	 *            Number of alleles to select per region.
+	 */
+	public RegionBins(TargetRegions regions, long count) {
+		this.regions = regions;
+		this.count = count;
+	}
+
+	@Override
+	public int size() {
+		return regions.size();
+	}
+
+	@Override
+	public long getCount(int bin) {
+		return count;
+	}
+
+	@Override
+	public int[] getBins(VariantContext vc) {
+		int[] bins = new int[vc.getAlternateAlleles().size()];
+		Arrays.fill(bins, regions.getRegion(vc.getContig(), vc.getStart(), vc.getEnd()));
+		return bins;
+	}
+
+	@Override
+	public String getName(int bin) {
+		return regions.getName(bin);
+	}
+
+}
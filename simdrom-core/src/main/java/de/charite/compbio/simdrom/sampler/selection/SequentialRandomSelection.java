@@ -0,0 +1,173 @@
+package de.charite.compbio.simdrom.sampler.selection;
+
+import java.util.Random;
+
+/**
+ * Selects exactly k of N alleles uniformly at random by sequential random sampling (J. S. Vitter, An efficient algorithm
+ * for sequential random sampling, ACM Trans. Math. Softw. 13(1), 1987). Instead of drawing the indices up front, the
+ * selection draws the number of alleles to skip until the next selected one. So the indices come in increasing order
+ * with constant memory and an expected time proportional to k (Algorithm D). If more than 1/13 of the remaining alleles
+ * are selected, the simpler Algorithm A is used for all remaining alleles, which is linear in the skipped alleles.
+ *
+ * @author <a href="mailto:max.schubach@charite.de">Max Schubach</a>
+ *
+ */
+public class SequentialRandomSelection implements IAlleleSelection {
+
+	/**
+	 * Algorithm D is only faster than Algorithm A if n / N is smaller than this ratio.
+	 */
+	private static final double ALPHA_INVERSE = 13.0;
+
+	private final Random random;
+	private final long size;
+	/** selected alleles that are not drawn yet */
+	private long n;
+	/** alleles after the current selected one */
+	private long N;
+	/** index of the current selected allele */
+	private long next = -1;
+	// state of Algorithm D between two skips
+	private double vPrime;
+	private double threshold;
+	/** Algorithm A is used for the remaining alleles, its state does not fit to Algorithm D any more */
+	private boolean algorithmA = false;
+
+	/**
+	 * @param k
+	 *            Number of alleles to select. If it is larger than N all alleles are selected.
+	 * @param N
+	 *            Number of alleles in total.
+	 * @param random
+	 *            Random number generator.
+	 */
+	public SequentialRandomSelection(long k, long N, Random random) {
+		this.random = random;
+		this.size = Math.min(k, N);
+		this.n = size;
+		this.N = N;
+		this.vPrime = Math.exp(Math.log(random.nextDouble()) / n);
+		this.threshold = ALPHA_INVERSE * n;
+		advance();
+	}
+
+	@Override
+	public boolean isSelected(long index) {
+		while (next < index)
+			advance();
+		return next == index;
+	}
+
+	@Override
+	public long getSize() {
+		return size;
+	}
+
+	/**
+	 * Moves the cursor to the next selected allele.
+	 * 
+	 * @return Index of the current selected allele, {@link Long#MAX_VALUE} if all are drawn.
+	 */
+	public long nextIndex() {
+		long index = next;
+		if (index != Long.MAX_VALUE)
+			advance();
+		return index;
+	}
+
+	/**
+	 * Moves the cursor to the next selected allele or behind the last allele if all are drawn.
+	 */
+	private void advance() {
+		if (n == 0) {
+			next = Long.MAX_VALUE;
+			return;
+		}
+		long skip;
+		if (n == 1)
+			skip = (long) (N * random.nextDouble());
+		else if (!algorithmA && threshold < N)
+			skip = skipD();
+		else {
+			algorithmA = true;
+			skip = skipA();
+		}
+		next += skip + 1;
+		N -= skip + 1;
+		n--;
+		threshold -= ALPHA_INVERSE;
+	}
+
+	/**
+	 * Algorithm A: walk over the alleles and stop with the probability that the current one is the next selected.
+	 */
+	private long skipA() {
+		double v = random.nextDouble();
+		long skip = 0;
+		double top = N - n;
+		double bottom = N;
+		double quot = top / bottom;
+		while (quot > v) {
+			skip++;
+			top--;
+			bottom--;
+			quot = quot * top / bottom;
+		}
+		return skip;
+	}
+
+	/**
+	 * Algorithm D: draw the skip directly by rejection sampling from a continuous approximation of its distribution.
+	 */
+	private long skipD() {
+		double nReal = n;
+		double bigN = N;
+		double nInverse = 1.0 / nReal;
+		double nMin1Inverse = 1.0 / (nReal - 1.0);
+		double qu1Real = bigN - nReal + 1.0;
+		long qu1 = N - n + 1;
+		long skip;
+		while (true) {
+			double x;
+			// draw x with density function g(x), restricted to skips that leave enough alleles
+			while (true) {
+				x = bigN * (1.0 - vPrime);
+				skip = (long) x;
+				if (skip < qu1)
+					break;
+				vPrime = Math.exp(Math.log(random.nextDouble()) * nInverse);
+			}
+			double u = random.nextDouble();
+			double y1 = Math.exp(Math.log(u * bigN / qu1Real) * nMin1Inverse);
+			vPrime = y1 * (1.0 - x / bigN) * (qu1Real / (qu1Real - skip));
+			// quick acceptance
+			if (vPrime <= 1.0)
+				break;
+
+			// exact acceptance test with the real distribution
+			double y2 = 1.0;
+			double top = bigN - 1.0;
+			double bottom;
+			long limit;
+			if (n - 1 > skip) {
+				bottom = bigN - nReal;
+				limit = N - skip;
+			} else {
+				bottom = bigN - skip - 1.0;
+				limit = qu1;
+			}
+			for (long t = N - 1; t >= limit; t--) {
+				y2 = (y2 * top) / bottom;
+				top--;
+				bottom--;
+			}
+			if (bigN / (bigN - x) >= y1 * Math.exp(Math.log(y2) * nMin1Inverse)) {
+				vPrime = Math.exp(Math.log(random.nextDouble()) * nMin1Inverse);
+				break;
+			}
+			vPrime = Math.exp(Math.log(random.nextDouble()) * nInverse);
+		}
+		return skip;
+	}
+
+}
@@ -0,0 +1,106 @@
+package de.charite.compbio.simdrom.sampler.selection;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Selects exactly k of N alleles, every allele with a probability proportional to its weight. Every allele with a
+ * positive weight w gets the random key log(u) / w with u uniform in (0, 1), and the k alleles with the largest keys
+ * are selected (P. S. Efraimidis and P. G. Spirakis, Weighted random sampling with a reservoir, Inf. Process. Lett.
+ * 97(5), 2006). This is the same as drawing the alleles one after another by their weights without replacement, but
+ * takes one pass over the weights in O(N log k) without rejecting alleles that are already drawn. If k is not smaller
+ * than the number of alleles with a positive weight, all of them are selected.
+ * <p>
+ * Memory is linear in k besides the weights. The selected indices are kept in increasing order for the cursor of
+ * {@link #isSelected(long)}.
+ *
+ * @author <a href="mailto:max.schubach@charite.de">Max Schubach</a>
+ *
+ */
+public class WeightedAlleleSelection implements IAlleleSelection {
+
+	private final long[] selected;
+	private int cursor = 0;
+
+	/**
+	 * @param k
+	 *            Number of alleles to select.
+	 * @param weights
+	 *            Non-negative weight of every allele in reading order.
+	 * @param random
+	 *            Random number generator.
+	 */
+	public WeightedAlleleSelection(long k, double[] weights, Random random) {
+		int positive = 0;
+		for (double weight : weights) {
+			if (weight < 0.0 || Double.isNaN(weight))
+				throw new IllegalArgumentException("Weights have to be non-negative.");
+			if (weight > 0.0)
+				positive++;
+		}
+		if (k >= positive) {
+			this.selected = new long[positive];
+			int i = 0;
+			for (int index = 0; index < weights.length; index++)
+				if (weights[index] > 0.0)
+					selected[i++] = index;
+		} else
+			this.selected = selectLargestKeys((int) k, weights, random);
+	}
+
+	/**
+	 * @return Indices of the k largest keys in increasing order, kept in a min-heap of the keys while the weights are
+	 *         read.
+	 */
+	private static long[] selectLargestKeys(int k, double[] weights, Random random) {
+		double[] keys = new double[k];
+		long[] indices = new long[k];
+		int size = 0;
+		for (int index = 0; index < weights.length; index++) {
+			if (weights[index] <= 0.0)
+				continue;
+			double key = Math.log(random.nextDouble()) / weights[index];
+			if (size < k) {
+				// sift up
+				int child = size++;
+				while (child > 0 && keys[(child - 1) / 2] > key) {
+					keys[child] = keys[(child - 1) / 2];
+					indices[child] = indices[(child - 1) / 2];
+					child = (child - 1) / 2;
+				}
+				keys[child] = key;
+				indices[child] = index;
+			} else if (k > 0 && key > keys[0]) {
+				// replace the smallest key and sift down
+				int parent = 0;
+				while (2 * parent + 1 < k) {
+					int child = 2 * parent + 1;
+					if (child + 1 < k && keys[child + 1] < keys[child])
+						child++;
+					if (keys[child] >= key)
+						break;
+					keys[parent] = keys[child];
+					indices[parent] = indices[child];
+					parent = child;
+				}
+				keys[parent] = key;
+				indices[parent] = index;
+			}
+		}
+		Arrays.sort(indices);
+		return indices;
+	}
+
+	@Override
+	public boolean isSelected(long index) {
+		while (cursor < selected.length && selected[cursor] < index)
+			cursor++;
+		return cursor < selected.length && selected[cursor] == index;
+	}
+
+	@Override
+	public long getSize() {
+		return selected.length;
+	}
+
+}
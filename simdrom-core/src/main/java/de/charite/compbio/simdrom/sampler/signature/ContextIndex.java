@@ -0,0 +1,278 @@
+package de.charite.compbio.simdrom.sampler.signature;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.samtools.reference.ReferenceSequence;
+import htsjdk.samtools.reference.ReferenceSequenceFile;
+import htsjdk.samtools.reference.ReferenceSequenceFileFactory;
+
+/**
+ * On-disk index of the positions of a reference genome by {@link TrinucleotideContext}. It is built once with
+ * {@link #build(File, File)} and then used to draw positions of a context directly, without reading the reference.
+ * <p>
+ * The file starts with the contigs (name, length and number of positions per context), followed by the positions of
+ * every context as 4 byte integers, grouped by context and sorted by contig and position. A position is negative if
+ * the context is on the reverse strand. Only single positions are read with {@link #getSite(int, long)}, so the index
+ * is never loaded into memory.
+ *
+ * @author <a href="mailto:max.schubach@charite.de">Max Schubach</a>
+ *
+ */
+public class ContextIndex implements Closeable {
+
+	private static final String MAGIC = "SIMdrom context index 1";
+
+	private final RandomAccessFile file;
+	private final List<String> contigs = new ArrayList<String>();
+	private final List<Integer> lengths = new ArrayList<Integer>();
+	/** number of positions per context before the contig, one more than contigs */
+	private final long[][] cumulativeCounts;
+	/** file offset of the positions per context */
+	private final long[] offsets = new long[TrinucleotideContext.CONTEXTS];
+
+	/**
+	 * Opens an index written by {@link #build(File, File)}.
+	 */
+	public ContextIndex(File index) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(index)));
+		long headerSize;
+		try {
+			if (!MAGIC.equals(in.readUTF()))
+				throw new IOException(index + " is no context index.");
+			int size = in.readInt();
+			long[][] counts = new long[size][TrinucleotideContext.CONTEXTS];
+			for (int i = 0; i < size; i++) {
+				contigs.add(in.readUTF());
+				lengths.add(in.readInt());
+				for (int context = 0; context < TrinucleotideContext.CONTEXTS; context++)
+					counts[i][context] = in.readLong();
+			}
+			headerSize = getHeaderSize(contigs);
+			this.cumulativeCounts = new long[TrinucleotideContext.CONTEXTS][size + 1];
+			long offset = headerSize;
+			for (int context = 0; context < TrinucleotideContext.CONTEXTS; context++) {
+				offsets[context] = offset;
+				for (int i = 0; i < size; i++)
+					cumulativeCounts[context][i + 1] = cumulativeCounts[context][i] + counts[i][context];
+				offset += 4 * cumulativeCounts[context][size];
+			}
+		} finally {
+			in.close();
+		}
+		this.file = new RandomAccessFile(index, "r");
+	}
+
+	/**
+	 * @return Number of bytes of the contigs in front of the positions.
+	 */
+	private static long getHeaderSize(List<String> contigs) throws IOException {
+		DataOutputStream out = new DataOutputStream(new OutputStream() {
+
+			@Override
+			public void write(int b) {
+			}
+		});
+		out.writeUTF(MAGIC);
+		out.writeInt(contigs.size());
+		for (String contig : contigs) {
+			out.writeUTF(contig);
+			out.writeInt(0);
+			for (int context = 0; context < TrinucleotideContext.CONTEXTS; context++)
+				out.writeLong(0);
+		}
+		return out.size();
+	}
+
+	public List<String> getContigs() {
+		return contigs;
+	}
+
+	/**
+	 * @return Contigs and their lengths.
+	 */
+	public SAMSequenceDictionary getSequenceDictionary() {
+		SAMSequenceDictionary dictionary = new SAMSequenceDictionary();
+		for (int i = 0; i < contigs.size(); i++)
+			dictionary.addSequence(new SAMSequenceRecord(contigs.get(i), lengths.get(i)));
+		return dictionary;
+	}
+
+	/**
+	 * @return Length of all contigs.
+	 */
+	public long getReferenceLength() {
+		long length = 0;
+		for (int contigLength : lengths)
+			length += contigLength;
+		return length;
+	}
+
+	/**
+	 * @return Number of positions of the context in the reference.
+	 */
+	public long getCount(int context) {
+		return cumulativeCounts[context][contigs.size()];
+	}
+
+	/**
+	 * @param context
+	 *            Context of {@link TrinucleotideContext}.
+	 * @param rank
+	 *            Index of the position in all positions of the context, lower than {@link #getCount(int)}.
+	 * @return The position with this index.
+	 */
+	public Site getSite(int context, long rank) throws IOException {
+		long[] cumulative = cumulativeCounts[context];
+		int contig = 0;
+		while (cumulative[contig + 1] <= rank)
+			contig++;
+		ByteBuffer buffer = ByteBuffer.allocate(4);
+		FileChannel channel = file.getChannel();
+		long offset = offsets[context] + 4 * rank;
+		while (buffer.hasRemaining())
+			if (channel.read(buffer, offset + buffer.position()) < 0)
+				throw new IOException("Context index is truncated.");
+		int position = buffer.getInt(0);
+		return new Site(contig, Math.abs(position), position < 0);
+	}
+
+	@Override
+	public void close() throws IOException {
+		file.close();
+	}
+
+	/**
+	 * Writes the index of the reference. The positions are collected in one temporary file per context while the
+	 * contigs are read one after the other, so only one contig is in memory.
+	 *
+	 * @param reference
+	 *            FASTA file of the reference.
+	 * @param index
+	 *            Path of the index.
+	 */
+	public static void build(File reference, File index) throws IOException {
+		ReferenceSequenceFile fasta = ReferenceSequenceFileFactory.getReferenceSequenceFile(reference);
+		File[] temporary = new File[TrinucleotideContext.CONTEXTS];
+		DataOutputStream[] outs = new DataOutputStream[TrinucleotideContext.CONTEXTS];
+		List<String> contigs = new ArrayList<String>();
+		List<Integer> lengths = new ArrayList<Integer>();
+		List<long[]> counts = new ArrayList<long[]>();
+		try {
+			for (int context = 0; context < TrinucleotideContext.CONTEXTS; context++) {
+				temporary[context] = File.createTempFile("context" + context, ".tmp", index.getAbsoluteFile()
+						.getParentFile());
+				outs[context] = new DataOutputStream(
+						new BufferedOutputStream(new FileOutputStream(temporary[context]), 1 << 16));
+			}
+			ReferenceSequence sequence;
+			while ((sequence = fasta.nextSequence()) != null) {
+				byte[] bases = sequence.getBases();
+				long[] contigCounts = new long[TrinucleotideContext.CONTEXTS];
+				for (int i = 1; i < bases.length - 1; i++) {
+					int context = TrinucleotideContext.getContext(bases[i - 1], bases[i], bases[i + 1]);
+					if (context == Integer.MIN_VALUE)
+						continue;
+					// 1-based, negative on the reverse strand
+					if (context >= 0)
+						outs[context].writeInt(i + 1);
+					else {
+						context = -context - 1;
+						outs[context].writeInt(-(i + 1));
+					}
+					contigCounts[context]++;
+				}
+				contigs.add(sequence.getName());
+				lengths.add(bases.length);
+				counts.add(contigCounts);
+			}
+			for (DataOutputStream out : outs)
+				out.close();
+
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(index)));
+			try {
+				out.writeUTF(MAGIC);
+				out.writeInt(contigs.size());
+				for (int i = 0; i < contigs.size(); i++) {
+					out.writeUTF(contigs.get(i));
+					out.writeInt(lengths.get(i));
+					for (long count : counts.get(i))
+						out.writeLong(count);
+				}
+				byte[] buffer = new byte[1 << 16];
+				for (File file : temporary) {
+					InputStream in = new FileInputStream(file);
+					int read;
+					while ((read = in.read(buffer)) > 0)
+						out.write(buffer, 0, read);
+					in.close();
+				}
+			} finally {
+				out.close();
+			}
+		} finally {
+			for (int context = 0; context < TrinucleotideContext.CONTEXTS; context++) {
+				if (outs[context] != null)
+					outs[context].close();
+				if (temporary[context] != null)
+					temporary[context].delete();
+			}
+		}
+	}
+
+	/**
+	 * Position of a context in the reference.
+	 */
+	public static class Site {
+
+		private final int contig;
+		private final int position;
+		private final boolean reverse;
+
+		private Site(int contig, int position, boolean reverse) {
+			this.contig = contig;
+			this.position = position;
+			this.reverse = reverse;
+		}
+
+		/**
+		 * @return Index of the contig in {@link ContextIndex#getContigs()}.
+		 */
+		public int getContig() {
+			return contig;
+		}
+
+		/**
+		 * @return 1-based position of the middle base.
+		 */
+		public int getPosition() {
+			return position;
+		}
+
+		/**
+		 * @return <code>true</code> if the context is on the reverse strand, so the reference base is the complement of
+		 *         {@link TrinucleotideContext#getReference(int)}.
+		 */
+		public boolean isReverse() {
+			return reverse;
+		}
+
+	}
+
+}
@@ -0,0 +1,119 @@
+package de.charite.compbio.simdrom.sampler.signature;
+
+/**
+ * Trinucleotide contexts and single base substitution channels of mutational signatures (e.g. COSMIC SBS). A context
+ * is the base with its left and right neighbour, written on the strand with the pyrimidine (C or T) in the middle, so
+ * there are 32 contexts. Every context has three substitutions, so 96 channels like <code>A[C&gt;T]G</code>.
+ * <p>
+ * Context <code>16 * middle + 4 * left + right</code> with middle 0 for C, 1 for T and A, C, G, T as 0 to 3 for the
+ * neighbours. Channel <code>3 * context + substitution</code> with the alternative bases in alphabetical order.
+ *
+ * @author <a href="mailto:max.schubach@charite.de">Max Schubach</a>
+ *
+ */
+public final class TrinucleotideContext {
+
+	/** number of pyrimidine centred contexts */
+	public static final int CONTEXTS = 32;
+	/** number of substitution channels */
+	public static final int CHANNELS = 96;
+
+	private static final char[] BASES = { 'A', 'C', 'G', 'T' };
+	private static final char[] MIDDLES = { 'C', 'T' };
+	private static final char[][] ALTERNATIVES = { { 'A', 'G', 'T' }, { 'A', 'C', 'G' } };
+
+	private TrinucleotideContext() {
+	}
+
+	/**
+	 * @return Code of the base (A, C, G, T as 0 to 3), -1 for other bases like N.
+	 */
+	public static int getCode(byte base) {
+		switch (base) {
+		case 'A':
+		case 'a':
+			return 0;
+		case 'C':
+		case 'c':
+			return 1;
+		case 'G':
+		case 'g':
+			return 2;
+		case 'T':
+		case 't':
+			return 3;
+		default:
+			return -1;
+		}
+	}
+
+	/**
+	 * @return Context of the three bases on the forward strand, <code>-(context + 1)</code> if the middle base is a
+	 *         purine and the context is on the reverse strand, {@link Integer#MIN_VALUE} if a base is no A, C, G or T.
+	 */
+	public static int getContext(byte left, byte middle, byte right) {
+		int l = getCode(left);
+		int m = getCode(middle);
+		int r = getCode(right);
+		if (l < 0 || m < 0 || r < 0)
+			return Integer.MIN_VALUE;
+		if (m == 1 || m == 3)
+			return 16 * (m == 1 ? 0 : 1) + 4 * l + r;
+		// reverse complement: A <-> T, C <-> G
+		return -(16 * (m == 2 ? 0 : 1) + 4 * (3 - r) + (3 - l) + 1);
+	}
+
+	/**
+	 * @return Context of the channel.
+	 */
+	public static int getContextOfChannel(int channel) {
+		return channel / 3;
+	}
+
+	/**
+	 * @return Middle base of the context on the pyrimidine strand.
+	 */
+	public static char getReference(int context) {
+		return MIDDLES[context / 16];
+	}
+
+	/**
+	 * @return Alternative base of the channel on the pyrimidine strand.
+	 */
+	public static char getAlternative(int channel) {
+		return ALTERNATIVES[channel / 48][channel % 3];
+	}
+
+	/**
+	 * @return Base of the other strand.
+	 */
+	public static char complement(char base) {
+		return BASES[3 - getCode((byte) base)];
+	}
+
+	/**
+	 * @return Channel of a name like <code>A[C&gt;T]G</code>, -1 if it is no valid channel.
+	 */
+	public static int getChannel(String name) {
+		if (name.length() != 7 || name.charAt(1) != '[' || name.charAt(3) != '>' || name.charAt(5) != ']')
+			return -1;
+		int context = getContext((byte) name.charAt(0), (byte) name.charAt(2), (byte) name.charAt(6));
+		if (context < 0)
+			return -1;
+		char[] alternatives = ALTERNATIVES[context / 16];
+		for (int i = 0; i < alternatives.length; i++)
+			if (alternatives[i] == Character.toUpperCase(name.charAt(4)))
+				return 3 * context + i;
+		return -1;
+	}
+
+	/**
+	 * @return Name of the channel like <code>A[C&gt;T]G</code>.
+	 */
+	public static String getName(int channel) {
+		int context = getContextOfChannel(channel);
+		return "" + BASES[(context % 16) / 4] + "[" + getReference(context) + ">" + getAlternative(channel) + "]"
+				+ BASES[context % 4];
+	}
+
+}
@@ -0,0 +1,93 @@
+package de.charite.compbio.simdrom.sampler.vcf;
+
+import htsjdk.variant.variantcontext.Allele;
+import htsjdk.variant.variantcontext.Genotype;
+import htsjdk.variant.variantcontext.GenotypesContext;
+import htsjdk.variant.variantcontext.VariantContext;
+
+/**
+ * Counts the alleles of the genotypes of a record, e.g. to sample by the allele frequencies of a cohort VCF without AF
+ * or AC/AN in the INFO field. If the genotypes are not decoded yet, the allele indices are read from the GT fields of
+ * the {@link UndecodedGenotypes}, so no {@link Genotype} objects are created. Missing alleles are not counted.
+ *
+ * @author <a href="mailto:max.schubach@charite.de">Max Schubach</a>
+ *
+ */
+public final class GenotypeAlleleCounts {
+
+	private GenotypeAlleleCounts() {
+	}
+
+	/**
+	 * @param samples
+	 *            Increasing indices of the samples to count, all samples if <code>null</code>.
+	 * @return Count of every allele (the reference first), the sum is the AN.
+	 */
+	public static int[] count(VariantContext vc, int[] samples) {
+		int[] counts = new int[vc.getNAlleles()];
+		String columns = UndecodedGenotypes.getColumns(vc);
+		if (columns != null) {
+			count(columns, samples, counts);
+			return counts;
+		}
+		GenotypesContext genotypes = vc.getGenotypes();
+
+		if (samples == null) {
+			for (Genotype genotype : genotypes)
+				count(vc, genotype, counts);
+		} else {
+			for (int sample : samples)
+				count(vc, genotypes.get(sample), counts);
+		}
+		return counts;
+	}
+
+	private static void count(VariantContext vc, Genotype genotype, int[] counts) {
+		for (Allele allele : genotype.getAlleles()) {
+			int index = vc.getAlleleIndex(allele);
+			if (index >= 0)
+				counts[index]++;
+		}
+	}
+
+	/**
+	 * @param columns
+	 *            FORMAT and sample columns, separated by tabs.
+	 */
+	private static void count(String columns, int[] samples, int[] counts) {
+		int formatEnd = columns.indexOf('\t');
+		if (formatEnd < 0)
+			return;
+		int gtIndex = UndecodedGenotypes.getGTIndex(columns);
+		if (gtIndex < 0)
+			return;
+
+		int[] alleles = new int[2];
+		int start = formatEnd + 1;
+		int sample = 0;
+		int next = 0;
+		while (start > 0 && (samples == null || next < samples.length)) {
+			if (samples == null || samples[next] == sample) {
+				int gtStart = UndecodedGenotypes.getGTStart(columns, start, gtIndex);
+				if (gtStart >= 0) {
+					int ploidy = UndecodedGenotypes.readAlleles(columns, gtStart, alleles);
+					if (ploidy > alleles.length) {
+						alleles = new int[ploidy];
+						UndecodedGenotypes.readAlleles(columns, gtStart, alleles);
+					}
+					for (int i = 0; i < ploidy; i++)
+						add(counts, alleles[i]);
+				}
+				next++;
+			}
+			sample++;
+			start = columns.indexOf('\t', start) + 1;
+		}
+	}
+
+	private static void add(int[] counts, int allele) {
+		if (allele >= 0 && allele < counts.length)
+			counts[allele]++;
+	}
+
+}
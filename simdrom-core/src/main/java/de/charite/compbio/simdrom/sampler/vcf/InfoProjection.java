@@ -0,0 +1,71 @@
+package de.charite.compbio.simdrom.sampler.vcf;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.common.collect.ImmutableSet;
+
+import htsjdk.variant.vcf.VCFHeaderLine;
+import htsjdk.variant.vcf.VCFInfoHeaderLine;
+
+/**
+ * The INFO fields of the output. Only the kept fields are copied into the output variants and their header lines are
+ * kept in the output header, so the other ones are neither encoded nor written.
+ *
+ * @author <a href="mailto:max.schubach@charite.de">Max Schubach</a>
+ *
+ */
+public class InfoProjection {
+
+	/** Keeps all INFO fields. */
+	public static final InfoProjection ALL = new InfoProjection(null);
+
+	private final ImmutableSet<String> keys;
+
+	/**
+	 * @param keys
+	 *            INFO fields to keep, empty to drop all. <code>null</code> to keep all.
+	 */
+	public InfoProjection(Set<String> keys) {
+		this.keys = keys == null ? null : ImmutableSet.copyOf(keys);
+	}
+
+	/**
+	 * @return <code>true</code> if all INFO fields are kept.
+	 */
+	public boolean isAll() {
+		return keys == null;
+	}
+
+	public boolean keeps(String key) {
+		return keys == null || keys.contains(key);
+	}
+
+	/**
+	 * @return The kept attributes, in their order.
+	 */
+	public Map<String, Object> project(Map<String, Object> attributes) {
+		if (isAll())
+			return attributes;
+		Map<String, Object> output = new LinkedHashMap<String, Object>();
+		for (Map.Entry<String, Object> attribute : attributes.entrySet())
+			if (keys.contains(attribute.getKey()))
+				output.put(attribute.getKey(), attribute.getValue());
+		return output;
+	}
+
+	/**
+	 * @return The header lines without the INFO lines of dropped fields.
+	 */
+	public Set<VCFHeaderLine> project(Collection<VCFHeaderLine> lines) {
+		Set<VCFHeaderLine> output = new LinkedHashSet<VCFHeaderLine>();
+		for (VCFHeaderLine line : lines)
+			if (!(line instanceof VCFInfoHeaderLine) || keeps(((VCFInfoHeaderLine) line).getID()))
+				output.add(line);
+		return output;
+	}
+
+}
@@ -0,0 +1,101 @@
+package de.charite.compbio.simdrom.sampler.vcf;
+
+import htsjdk.variant.variantcontext.Genotype;
+import htsjdk.variant.variantcontext.GenotypesContext;
+import htsjdk.variant.variantcontext.LazyGenotypesContext;
+import htsjdk.variant.variantcontext.VariantContext;
+
+/**
+ * Reads the GT fields of the genotype columns of a record that are not decoded yet, so no {@link Genotype} objects are
+ * created. The columns are the FORMAT column and the sample columns, separated by tabs.
+ *
+ * @author <a href="mailto:max.schubach@charite.de">Max Schubach</a>
+ *
+ */
+public final class UndecodedGenotypes {
+
+	private UndecodedGenotypes() {
+	}
+
+	/**
+	 * @return FORMAT and sample columns of the record, <code>null</code> if the genotypes are already decoded.
+	 */
+	public static String getColumns(VariantContext vc) {
+		GenotypesContext genotypes = vc.getGenotypes();
+		if (genotypes instanceof LazyGenotypesContext
+				&& ((LazyGenotypesContext) genotypes).getUnparsedGenotypeData() instanceof String)
+			return (String) ((LazyGenotypesContext) genotypes).getUnparsedGenotypeData();
+		return null;
+	}
+
+	/**
+	 * @return Position of GT in the FORMAT keys, -1 if not present.
+	 */
+	public static int getGTIndex(String columns) {
+		int formatEnd = columns.indexOf('\t');
+		if (formatEnd < 0)
+			formatEnd = columns.length();
+		int index = 0;
+		int start = 0;
+		while (start < formatEnd) {
+			int end = columns.indexOf(':', start);
+			if (end < 0 || end > formatEnd)
+				end = formatEnd;
+			if (end - start == 2 && columns.startsWith("GT", start))
+				return index;
+			index++;
+			start = end + 1;
+		}
+		return -1;
+	}
+
+	/**
+	 * @param start
+	 *            Start of the sample column.
+	 * @param gtIndex
+	 *            Position of GT in the FORMAT keys.
+	 * @return Start of the GT in the sample column, -1 if the column has less fields.
+	 */
+	public static int getGTStart(String columns, int start, int gtIndex) {
+		int end = columns.indexOf('\t', start);
+		if (end < 0)
+			end = columns.length();
+		int pos = start;
+		for (int i = 0; i < gtIndex; i++) {
+			pos = columns.indexOf(':', pos) + 1;
+			if (pos == 0 || pos > end)
+				return -1;
+		}
+		return pos;
+	}
+
+	/**
+	 * Reads the allele indices (0 for the reference, -1 for a missing allele) of the GT.
+	 * 
+	 * @param gtStart
+	 *            Start of the GT, see {@link #getGTStart(String, int, int)}.
+	 * @param alleles
+	 *            Gets the first alleles of the GT, as many as fit.
+	 * @return Ploidy of the GT, can be larger than the length of <code>alleles</code>.
+	 */
+	public static int readAlleles(String columns, int gtStart, int[] alleles) {
+		int ploidy = 0;
+		int value = -1;
+		for (int pos = gtStart; pos < columns.length(); pos++) {
+			char c = columns.charAt(pos);
+			if (c >= '0' && c <= '9')
+				value = (value < 0 ? 0 : value * 10) + (c - '0');
+			else if (c == '|' || c == '/') {
+				if (ploidy < alleles.length)
+					alleles[ploidy] = value;
+				ploidy++;
+				value = -1;
+			} else if (c == ':' || c == '\t')
+				break;
+		}
+		if (ploidy < alleles.length)
+			alleles[ploidy] = value;
+		return ploidy + 1;
+	}
+
+}
@@ -4,14 +4,24 @@
 package de.charite.compbio.simdrom.sampler.vcf;
 
 import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.samtools.util.Interval;
+import htsjdk.samtools.util.IntervalList;
+import htsjdk.samtools.util.RuntimeIOException;
 import htsjdk.variant.variantcontext.VariantContext;
 import htsjdk.variant.vcf.VCFFileReader;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
 
 import com.google.common.collect.ImmutableSet;
 
 import de.charite.compbio.simdrom.filter.IFilter;
+import de.charite.compbio.simdrom.io.reader.BGZFReadAheadInputStream;
+import de.charite.compbio.simdrom.io.reader.ReadAheadVCFReader;
+import de.charite.compbio.simdrom.metrics.Counter;
+import de.charite.compbio.simdrom.metrics.SIMdromMetrics;
+import de.charite.compbio.simdrom.sampler.selection.IAlleleBins;
 
 /**
  * @author <a href="mailto:max.schubach@charite.de">Max Schubach</a>
@@ -19,13 +29,70 @@ import de.charite.compbio.simdrom.filter.IFilter;
  */
 public class VCFAlternativeAlleleCounter {
 
+	private String filePath;
 	private VCFFileReader parser;
 	ImmutableSet<IFilter> filters;
+	private IntervalList intervals;
 	private int counts = -1;
+	private int inflateThreads = 0;
+	private IAlleleBins bins;
+	private long[] binCounts;
+	private VariantWeight weight;
+	private double[] weights;
 
 	public VCFAlternativeAlleleCounter(String filePath, ImmutableSet<IFilter> filters) {
+		this(filePath, filters, null);
+	}
+
+	/**
+	 * Counts only the alleles in the intervals (like the {@link VCFSampler} reads them), all if <code>null</code> or
+	 * empty.
+	 */
+	public VCFAlternativeAlleleCounter(String filePath, ImmutableSet<IFilter> filters, IntervalList intervals) {
+		this.filePath = filePath;
 		this.parser = new VCFFileReader(new File(filePath), false);
 		this.filters = filters;
+		this.intervals = intervals;
+	}
+
+	/**
+	 * Sets the number of threads to inflate the blocks of a bgzipped file ahead of the parsing, see
+	 * {@link BGZFReadAheadInputStream}. Default is 0.
+	 */
+	public void setInflateThreads(int inflateThreads) {
+		this.inflateThreads = inflateThreads;
+	}
+
+	/**
+	 * Counts the alleles per bin too, see {@link #getBinCounts()}.
+	 */
+	public void setBins(IAlleleBins bins) {
+		this.bins = bins;
+	}
+
+	/**
+	 * @return Number of alleles per bin of {@link #setBins(IAlleleBins)}.
+	 */
+	public long[] getBinCounts() {
+		if (counts < 0)
+			count();
+		return binCounts;
+	}
+
+	/**
+	 * Collects the weight of every allele too, see {@link #getWeights()}.
+	 */
+	public void setWeight(VariantWeight weight) {
+		this.weight = weight;
+	}
+
+	/**
+	 * @return Weight of every allele in reading order by the {@link #setWeight(VariantWeight)}.
+	 */
+	public double[] getWeights() {
+		if (counts < 0)
+			count();
+		return weights;
 	}
 
 	public int getCounts() {
@@ -36,15 +103,63 @@ public class VCFAlternativeAlleleCounter {
 
 	private void count() {
 		counts = 0;
-		CloseableIterator<VariantContext> iterator = parser.iterator();
+		if (bins != null)
+			binCounts = new long[bins.size()];
+		if (weight != null)
+			weights = new double[1024];
+		Counter read = SIMdromMetrics.get().getCounter("counter.records.read");
+		ReadAheadVCFReader readAheadReader = getReadAheadReader();
+		if (intervals == null || intervals.getIntervals().isEmpty())
+			count(readAheadReader == null ? parser.iterator() : readAheadReader.iterator(), read);
+		else
+			for (Interval interval : intervals)
+				count(readAheadReader == null
+						? parser.query(interval.getContig(), interval.getStart(), interval.getEnd())
+						: readAheadReader.iterator(interval.getContig(), interval.getStart(), interval.getEnd()), read);
+		if (readAheadReader != null)
+			readAheadReader.close();
+		parser.close();
+		if (weights != null)
+			weights = Arrays.copyOf(weights, counts);
+	}
+
+	private void addWeights(double weight, int alleles) {
+		if (counts + alleles > weights.length)
+			weights = Arrays.copyOf(weights, Math.max(2 * weights.length, counts + alleles));
+		Arrays.fill(weights, counts, counts + alleles, weight);
+	}
+
+	private ReadAheadVCFReader getReadAheadReader() {
+		if (inflateThreads <= 0)
+			return null;
+		try {
+			if (!BGZFReadAheadInputStream.isBGZF(new File(filePath)))
+				return null;
+		} catch (IOException e) {
+			throw new RuntimeIOException(e);
+		}
+		return new ReadAheadVCFReader(filePath, parser.getFileHeader(), inflateThreads);
+	}
+
+	private void count(CloseableIterator<VariantContext> iterator, Counter read) {
 		while (iterator.hasNext()) {
 			VariantContext vc = iterator.next();
+			read.increment();
 			for (IFilter iFilter : filters) {
 				vc = iFilter.filter(vc);
+				if (vc == null)
+					break;
 			}
-			if (vc != null)
+			if (vc != null) {
+				if (weight != null)
+					addWeights(weight.getWeight(vc), vc.getAlternateAlleles().size());
 				counts += vc.getAlternateAlleles().size();
+				if (bins != null)
+					for (int bin : bins.getBins(vc))
+						if (bin >= 0)
+							binCounts[bin]++;
+			}
 		}
-		parser.close();
+		iterator.close();
 	}
 }
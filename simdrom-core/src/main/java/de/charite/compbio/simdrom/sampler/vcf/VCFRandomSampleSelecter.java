@@ -17,11 +17,17 @@ public class VCFRandomSampleSelecter {
 
 	private VCFFileReader parser;
 	private String sample;
+	private Random random = new Random();
 
 	public VCFRandomSampleSelecter(String filePath) {
 		this.parser = new VCFFileReader(new File(filePath), false);
 	}
 
+	public VCFRandomSampleSelecter(String filePath, Random random) {
+		this(filePath);
+		this.random = random;
+	}
+
 	public VCFRandomSampleSelecter(String filePath, String sample) {
 		this(filePath);
 		this.sample = sample;
@@ -36,7 +42,7 @@ public class VCFRandomSampleSelecter {
 	private String selectSample() {
 		List<String> samples =  parser.getFileHeader().getGenotypeSamples();
 		parser.close();
-		int num = new Random().nextInt(samples.size());
+		int num = random.nextInt(samples.size());
 		return samples.get(num);
 	}
 
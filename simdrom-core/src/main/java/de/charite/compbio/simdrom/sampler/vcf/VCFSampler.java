@@ -4,7 +4,9 @@
 package de.charite.compbio.simdrom.sampler.vcf;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -12,17 +14,34 @@ import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Random;
 import java.util.Set;
 
 import com.google.common.collect.ImmutableSet;
 
 import de.charite.compbio.simdrom.filter.IFilter;
+import de.charite.compbio.simdrom.io.reader.BGZFReadAheadInputStream;
+import de.charite.compbio.simdrom.io.reader.ParallelVCFReader;
+import de.charite.compbio.simdrom.io.reader.ReadAheadVCFReader;
+import de.charite.compbio.simdrom.io.reader.SingleSampleVCFReader;
+import de.charite.compbio.simdrom.metrics.Counter;
+import de.charite.compbio.simdrom.metrics.SIMdromMetrics;
+import de.charite.compbio.simdrom.metrics.Stage;
 import de.charite.compbio.simdrom.sampler.DeNovoSampler;
+import de.charite.compbio.simdrom.sampler.haplotype.HaplotypeCopyingModel;
+import de.charite.compbio.simdrom.sampler.haplotype.PhasedAlleleReader;
+import de.charite.compbio.simdrom.sampler.selection.AlleleFrequencyBins;
+import de.charite.compbio.simdrom.sampler.selection.BinnedAlleleSelection;
+import de.charite.compbio.simdrom.sampler.selection.IAlleleBins;
+import de.charite.compbio.simdrom.sampler.selection.IAlleleSelection;
+import de.charite.compbio.simdrom.sampler.selection.SequentialRandomSelection;
+import de.charite.compbio.simdrom.sampler.selection.WeightedAlleleSelection;
 import htsjdk.samtools.SAMFileHeader;
 import htsjdk.samtools.util.CloseableIterator;
 import htsjdk.samtools.util.Interval;
 import htsjdk.samtools.util.IntervalList;
+import htsjdk.samtools.util.RuntimeIOException;
 import htsjdk.variant.variantcontext.Allele;
 import htsjdk.variant.variantcontext.Genotype;
 import htsjdk.variant.variantcontext.GenotypeBuilder;
@@ -35,22 +54,52 @@ import htsjdk.variant.vcf.VCFHeaderLine;
 import htsjdk.variant.vcf.VCFHeaderLineType;
 
 /**
+ * Samples the variants of a VCF file. The iterator looks one sampled variant ahead, so {@link #hasNext()} is
+ * <code>true</code> exactly if {@link #next()} gives back a variant. Records that are filtered or not sampled are read
+ * by {@link #hasNext()}.
  * 
  * @author <a href="mailto:max.schubach@charite.de">Max Schubach</a>
  *
  */
 public class VCFSampler implements Iterator<VariantContext> {
 
+	/**
+	 * Sample names of a trio, see {@link #setTrio(boolean)}.
+	 */
+	public static final String FATHER = "Father";
+	public static final String MOTHER = "Mother";
+	public static final String CHILD = "Child";
+
 	private double probability;
-	private List<Integer> selectAlleles;
+	private IAlleleSelection selection;
+	private IAlleleBins bins;
+	private BinnedAlleleSelection binnedSelection;
+	private Counter[] binCounters;
+	private VariantWeight weight;
 	private int variantsAmount;
-	private int position = -1;
-	private String afIdentifier;
-	private String acIdentifier;
-	private String anIdentifier;
+	private long position = -1;
+	private List<String> afIdentifiers = Collections.emptyList();
+	private List<String> acIdentifiers = Collections.emptyList();
+	private List<String> anIdentifiers = Collections.emptyList();
 	private String sample = null;
+	private boolean trio = false;
+	private boolean sampled = false;
+	private boolean genotypeFrequencies = false;
+	private List<String> genotypeSamples;
+	private int[] genotypeSampleIndices;
+	private boolean haplotypeCopying = false;
+	private double recombinationRate = HaplotypeCopyingModel.DEFAULT_RECOMBINATION_RATE;
+	private HaplotypeCopyingModel copyingModel;
+	private InfoProjection infoProjection = InfoProjection.ALL;
 	private VCFFileReader parser;
+	private SingleSampleVCFReader sampleReader;
+	private ParallelVCFReader parallelReader;
+	private int decodeThreads = 1;
+	private ReadAheadVCFReader readAheadReader;
+	private int inflateThreads = 0;
 	private CloseableIterator<VariantContext> iterator;
+	/** next sampled variant, read by {@link #hasNext()} */
+	private VariantContext lookahead;
 	private Random random;
 	private String filePath;
 	private DeNovoSampler deNovoGenerator;
@@ -58,32 +107,126 @@ public class VCFSampler implements Iterator<VariantContext> {
 	// intervals
 	private IntervalList intervals;
 	private int intervalPosition = 0;
+	// metrics
+	private final SIMdromMetrics metrics = SIMdromMetrics.get();
+	private String name;
+	private Counter inputCounter;
+	private Counter readCounter;
+	private Counter homCounter;
+	private Counter hetCounter;
+	private Counter queryCounter;
+	private Map<IFilter, Counter> filterCounters = new HashMap<IFilter, Counter>();
 
 	public VCFSampler(String path) {
 		this.filePath = path;
 		this.parser = new VCFFileReader(new File(filePath), false);
 	}
 
+	/**
+	 * @return A new sampler of the same file with the same settings, but without the state of this one (position,
+	 *         selection, de novo variants).
+	 */
+	public VCFSampler copy() {
+		VCFSampler copy = new VCFSampler(filePath);
+		if (name != null)
+			copy.setName(name);
+		copy.setFilters(getFilters());
+		copy.setProbability(probability);
+		copy.setVariantsAmount(variantsAmount);
+		copy.setAFIdentifiers(afIdentifiers);
+		copy.setACIdentifiers(acIdentifiers);
+		copy.setANIdentifiers(anIdentifiers);
+		copy.setSample(sample);
+		copy.setTrio(trio);
+		copy.setSampled(sampled);
+		copy.setGenotypeFrequencies(genotypeFrequencies);
+		copy.setGenotypeSamples(genotypeSamples);
+		copy.setHaplotypeCopying(haplotypeCopying);
+		copy.setRecombinationRate(recombinationRate);
+		copy.setInfoProjection(infoProjection);
+		copy.setDecodeThreads(decodeThreads);
+		copy.setInflateThreads(inflateThreads);
+		copy.setBins(bins);
+		copy.setWeight(weight);
+		if (intervals != null)
+			copy.setIntervals(intervals);
+		return copy;
+	}
+
+	/**
+	 * @return Path of the sampled VCF file.
+	 */
+	public String getFilePath() {
+		return filePath;
+	}
+
 	public CloseableIterator<VariantContext> getIterator() {
 
 		if (this.iterator == null) {
+			if (name == null)
+				setName("sampler");
+			metrics.getCounter(name + ".input.file.bytes").add(new File(filePath).length());
 			if (useIntervals())
 				this.iterator = getNextIntervalInterator();
 			else
-				this.iterator = this.parser.iterator();
+				this.iterator = useSample() ? getSampleReader().iterator() : getFileIterator();
 		}
 		return iterator;
 	}
 
+	private CloseableIterator<VariantContext> getFileIterator() {
+		if (decodeThreads <= 1)
+			return getReadAheadReader() == null ? this.parser.iterator() : getReadAheadReader().iterator();
+		if (getReadAheadReader() == null)
+			parallelReader = new ParallelVCFReader(filePath, parser.getFileHeader(), getFilters(), decodeThreads, name);
+		else
+			parallelReader = new ParallelVCFReader(getReadAheadReader().lines(), parser.getFileHeader(), getFilters(),
+					decodeThreads, name);
+		return parallelReader;
+	}
+
+	/**
+	 * @return Reader that inflates the blocks on helper threads, <code>null</code> if no inflate threads are set or
+	 *         the file is not bgzipped.
+	 */
+	private ReadAheadVCFReader getReadAheadReader() {
+		if (readAheadReader == null && inflateThreads > 0) {
+			try {
+				if (BGZFReadAheadInputStream.isBGZF(new File(filePath)))
+					readAheadReader = new ReadAheadVCFReader(filePath, parser.getFileHeader(), inflateThreads);
+			} catch (IOException e) {
+				throw new RuntimeIOException(e);
+			}
+		}
+		return readAheadReader;
+	}
+
 	private CloseableIterator<VariantContext> getNextIntervalInterator() {
 		Interval interval = nextInterval();
-		if (interval != null)
+		if (interval != null) {
+			queryCounter.increment();
+			if (useSample())
+				return getSampleReader().query(interval.getContig(), interval.getStart(), interval.getEnd());
+			if (getReadAheadReader() != null)
+				return getReadAheadReader().iterator(interval.getContig(), interval.getStart(), interval.getEnd());
 			return this.parser.query(interval.getContig(), interval.getStart(), interval.getEnd());
-		else
+		} else
 			return null;
 
 	}
 
+	/**
+	 * @return Reader that only decodes the genotypes of {@link #getSample()} and skips its homozygous reference records.
+	 */
+	private SingleSampleVCFReader getSampleReader() {
+		if (sampleReader == null) {
+			sampleReader = new SingleSampleVCFReader(filePath, parser.getFileHeader(), getSample(),
+					metrics.getCounter(name + ".records.skipped.homref"));
+			sampleReader.setReadAheadReader(getReadAheadReader());
+		}
+		return sampleReader;
+	}
+
 	private Interval nextInterval() {
 		Interval output = null;
 		if (intervalPosition < getIntervals().size()) {
@@ -99,7 +242,15 @@ public class VCFSampler implements Iterator<VariantContext> {
 
 	@Override
 	public boolean hasNext() {
-		// FIXME has next can be true, but next can give back null!
+		if (lookahead == null)
+			lookahead = getNextVariant();
+		return lookahead != null;
+	}
+
+	/**
+	 * @return <code>true</code> if there are records left to read, they can be filtered or not sampled.
+	 */
+	private boolean hasNextCandidate() {
 		if (useIntervals())
 			while (getIterator() != null && !getIterator().hasNext())
 				this.iterator = getNextIntervalInterator();
@@ -114,7 +265,11 @@ public class VCFSampler implements Iterator<VariantContext> {
 
 	@Override
 	public VariantContext next() {
-		return getNextVariant();
+		if (!hasNext())
+			throw new NoSuchElementException();
+		VariantContext output = lookahead;
+		lookahead = null;
+		return output;
 	}
 
 	@Override
@@ -124,23 +279,37 @@ public class VCFSampler implements Iterator<VariantContext> {
 
 	private VariantContext getNextVariant() {
 		VariantContext output = null;
-		while (hasNext() && output == null) {
+		while (output == null && hasNextCandidate()) {
 			// get next line
+			long start = metrics.start();
 			VariantContext candidate = getIterator().next();
+			metrics.stop(Stage.DECODE, start);
+			readCounter.increment();
+			inputCounter.increment();
 
-			// filter
-			candidate = filter(candidate);
-			if (candidate == null)
-				continue;
+			// filter (already done by the workers of the parallel reader)
+			if (parallelReader == null) {
+				start = metrics.start();
+				candidate = filter(candidate);
+				metrics.stop(Stage.FILTER, start);
+				if (candidate == null)
+					continue;
+			}
 
 			// get alleles by sampling method
-			Map<Integer, Boolean> alleles = useAlleles(candidate);
-			if (!alleles.isEmpty()) {
-				output = createVariantContextWithGenotype(candidate, alleles);
-				if (output == null)
-					continue;
-				break;
+			start = metrics.start();
+			if (isSampled())
+				output = infoProjection.isAll() ? candidate : createBuilder(candidate).make();
+			else if (isTrio())
+				output = createTrio(candidate);
+			else if (isHaplotypeCopying())
+				output = createCopiedHaplotypes(candidate);
+			else {
+				List<Map<Integer, Boolean>> alleles = useAlleles(candidate);
+				if (isSelected(alleles))
+					output = createVariantContextWithGenotype(candidate, alleles);
 			}
+			metrics.stop(Stage.SAMPLE, start);
 		}
 		return output;
 	}
@@ -148,24 +317,69 @@ public class VCFSampler implements Iterator<VariantContext> {
 	private VariantContext filter(VariantContext candidate) {
 		for (IFilter iFilter : getFilters()) {
 			candidate = iFilter.filter(candidate);
+			if (candidate == null) {
+				getFilterCounter(iFilter).increment();
+				break;
+			}
 		}
 		return candidate;
 	}
 
-	private VariantContext createVariantContextWithGenotype(VariantContext candidate, Map<Integer, Boolean> alleles) {
+	private Counter getFilterCounter(IFilter filter) {
+		Counter counter = filterCounters.get(filter);
+		if (counter == null) {
+			counter = metrics.getCounter(name + ".records.filtered." + filter);
+			filterCounters.put(filter, counter);
+		}
+		return counter;
+	}
+
+	private boolean isSelected(List<Map<Integer, Boolean>> alleles) {
+		for (Map<Integer, Boolean> population : alleles)
+			if (!population.isEmpty())
+				return true;
+		return false;
+	}
+
+	private VariantContext createVariantContextWithGenotype(VariantContext candidate,
+			List<Map<Integer, Boolean>> alleles) {
 		if (useSample()) {
 			Genotype genotype = candidate.getGenotype(getSample());
-			if (!genotype.isHomRef())
-				return new VariantContextBuilder(candidate).genotypes(candidate.getGenotypes(getSample())).make();
-			else
+			if (!genotype.isHomRef()) {
+				(genotype.isHomVar() ? homCounter : hetCounter).increment();
+				return createBuilder(candidate).genotypes(candidate.getGenotypes(getSample())).make();
+			} else
 				return null;
 		} else {
-			return new VariantContextBuilder(candidate).genotypes(createGenotype(candidate.getAlleles(), alleles))
-					.make();
+			// one genotype column per population, hom-ref if the population did not get the variant
+			List<Genotype> genotypes = new ArrayList<Genotype>(alleles.size());
+			Iterator<String> sampleNames = getSampleNames().iterator();
+			for (Map<Integer, Boolean> population : alleles) {
+				String sampleName = sampleNames.next();
+				if (population.isEmpty()) {
+					genotypes.add(GenotypeBuilder.create(sampleName,
+							Arrays.asList(candidate.getReference(), candidate.getReference())));
+				} else {
+					for (boolean hom : population.values())
+						(hom ? homCounter : hetCounter).increment();
+					genotypes.add(createGenotype(sampleName, candidate.getAlleles(), population));
+				}
+			}
+			return createBuilder(candidate).genotypes(genotypes).make();
 		}
 	}
 
 	
+	/**
+	 * @return A builder of the output variant with the projected INFO fields of the candidate.
+	 */
+	private VariantContextBuilder createBuilder(VariantContext candidate) {
+		VariantContextBuilder builder = new VariantContextBuilder(candidate);
+		if (!infoProjection.isAll())
+			builder.attributes(infoProjection.project(candidate.getAttributes()));
+		return builder;
+	}
+
 	private Collection<Allele> getAlleles(VariantContext candidate, Set<Integer> posOfAllele) {
 		Collection<Allele> alleles = new ArrayList<Allele>();
 		alleles.add(candidate.getReference());
@@ -175,7 +389,69 @@ public class VCFSampler implements Iterator<VariantContext> {
 		return alleles;
 	}
 
-	private Genotype createGenotype(List<Allele> alleles, Map<Integer, Boolean> use) {
+	/**
+	 * Draws both parents independently by the Hardy-Weinberg principle and the child by Mendelian transmission of one
+	 * random allele of each parent.
+	 * 
+	 * @return <code>null</code> if both parents are homozygous reference.
+	 */
+	private VariantContext createTrio(VariantContext candidate) {
+		Map<Integer, Boolean> fatherAlleles = useAlleles(candidate, 0);
+		Map<Integer, Boolean> motherAlleles = useAlleles(candidate, 0);
+		if (fatherAlleles.isEmpty() && motherAlleles.isEmpty())
+			return null;
+
+		List<Allele> father = getParentAlleles(candidate, fatherAlleles);
+		List<Allele> mother = getParentAlleles(candidate, motherAlleles);
+		List<Allele> child = Arrays.asList(father.get(nextInt(father.size())), mother.get(nextInt(mother.size())));
+
+		List<Genotype> genotypes = new ArrayList<Genotype>(3);
+		genotypes.add(GenotypeBuilder.create(FATHER, father));
+		genotypes.add(GenotypeBuilder.create(MOTHER, mother));
+		genotypes.add(GenotypeBuilder.create(CHILD, child));
+		return createBuilder(candidate).genotypes(genotypes).make();
+	}
+
+	/**
+	 * Copies the alleles of the two sampled haplotypes from the panel haplotypes of the {@link HaplotypeCopyingModel}.
+	 * 
+	 * @return <code>null</code> if both haplotypes copy the reference.
+	 */
+	private VariantContext createCopiedHaplotypes(VariantContext candidate) {
+		int[] alleles = PhasedAlleleReader.getAlleles(candidate,
+				getCopyingModel().next(candidate.getContig(), candidate.getStart()));
+		if (alleles[0] == 0 && alleles[1] == 0)
+			return null;
+		(alleles[0] == alleles[1] ? homCounter : hetCounter).increment();
+		Genotype genotype = new GenotypeBuilder(getSampleNames().iterator().next(),
+				Arrays.asList(candidate.getAlleles().get(alleles[0]), candidate.getAlleles().get(alleles[1])))
+						.phased(true).make();
+		return createBuilder(candidate).genotypes(genotype).make();
+	}
+
+	private HaplotypeCopyingModel getCopyingModel() {
+		if (copyingModel == null) {
+			if (random == null)
+				random = new Random();
+			copyingModel = new HaplotypeCopyingModel(2 * parser.getFileHeader().getNGenotypeSamples(),
+					recombinationRate, random, metrics.getCounter(name + ".haplotypes.switches"));
+		}
+		return copyingModel;
+	}
+
+	private List<Allele> getParentAlleles(VariantContext candidate, Map<Integer, Boolean> use) {
+		if (use.isEmpty())
+			return Arrays.asList(candidate.getReference(), candidate.getReference());
+		for (boolean hom : use.values())
+			(hom ? homCounter : hetCounter).increment();
+		return getGenotypeAlleles(candidate.getAlleles(), use);
+	}
+
+	private Genotype createGenotype(String sampleName, List<Allele> alleles, Map<Integer, Boolean> use) {
+		return GenotypeBuilder.create(sampleName, getGenotypeAlleles(alleles, use));
+	}
+
+	private List<Allele> getGenotypeAlleles(List<Allele> alleles, Map<Integer, Boolean> use) {
 		List<Allele> filteredAlleles = new ArrayList<Allele>();
 
 		int allele = use.keySet().iterator().next() + 1;
@@ -194,14 +470,39 @@ public class VCFSampler implements Iterator<VariantContext> {
 
 		}
 
-		return GenotypeBuilder.create("Sampled", filteredAlleles);
+		return filteredAlleles;
 	}
 
-	private Map<Integer, Boolean> useAlleles(VariantContext candidate) {
+	/**
+	 * Samples the alleles of the candidate for every population within the same pass.
+	 * 
+	 * @return Selected alleles per population in the order of {@link #getSampleNames()}. Position of the alternative
+	 *         allele and <code>true</code> if homozygous.
+	 */
+	private List<Map<Integer, Boolean>> useAlleles(VariantContext candidate) {
+		if (!useMultiplePopulations())
+			return Collections.singletonList(useAlleles(candidate, 0));
+		List<Map<Integer, Boolean>> output = new ArrayList<Map<Integer, Boolean>>(getPopulations().size());
+		for (int population = 0; population < getPopulations().size(); population++)
+			output.add(useAlleles(candidate, population));
+		return output;
+	}
+
+	private Map<Integer, Boolean> useAlleles(VariantContext candidate, int population) {
 		Map<Integer, Boolean> candidates = new HashMap<Integer, Boolean>();
 
-		if (useAF()) {// AF flag
-			Object af = candidate.getCommonInfo().getAttribute(getAFIdentifier());
+		if (useGenotypeFrequencies()) { // AC/AN of the genotypes
+			int[] counts = GenotypeAlleleCounts.count(candidate, getGenotypeSampleIndices());
+			int an = 0;
+			for (int count : counts)
+				an += count;
+			if (an > 0)
+				for (int i = 1; i < counts.length; i++)
+					addCandidateByHardyWeinberg(candidates, i - 1, (double) counts[i] / (double) an);
+
+		} else if (useAF()) {// AF flag
+			String afIdentifier = afIdentifiers.get(population);
+			Object af = candidate.getCommonInfo().getAttribute(afIdentifier);
 			if (af instanceof ArrayList<?>) {
 				if (((ArrayList<?>) af).get(0) instanceof String) {
 					int i = 0;
@@ -212,11 +513,12 @@ public class VCFSampler implements Iterator<VariantContext> {
 				}
 			} else {
 				addCandidateByHardyWeinberg(candidates, 0,
-						candidate.getCommonInfo().getAttributeAsDouble(getAFIdentifier(), 0.0));
+						candidate.getCommonInfo().getAttributeAsDouble(afIdentifier, 0.0));
 			}
 		} else if (useAC()) {
-			Object ac = candidate.getCommonInfo().getAttribute(getACIdentifier());
-			int an = candidate.getCommonInfo().getAttributeAsInt(getANIdentifier(), 0);
+			String acIdentifier = acIdentifiers.get(population);
+			Object ac = candidate.getCommonInfo().getAttribute(acIdentifier);
+			int an = candidate.getCommonInfo().getAttributeAsInt(anIdentifiers.get(population), 0);
 			if (ac instanceof ArrayList<?>) {
 				if (((ArrayList<?>) ac).get(0) instanceof String) {
 					int i = 0;
@@ -227,13 +529,22 @@ public class VCFSampler implements Iterator<VariantContext> {
 				}
 			} else {
 				addCandidateByHardyWeinberg(candidates, 0,
-						(double) candidate.getCommonInfo().getAttributeAsInt(getACIdentifier(), 0) / (double) an);
+						(double) candidate.getCommonInfo().getAttributeAsInt(acIdentifier, 0) / (double) an);
+			}
+
+		} else if (useBins()) { // exact counts per bin
+			int[] alleleBins = bins.getBins(candidate);
+			for (int i = 0; i < alleleBins.length; i++) {
+				if (alleleBins[i] >= 0 && getBinnedSelection().isSelected(alleleBins[i])) {
+					candidates.put(i, nextDouble() <= 0.5);
+					getBinCounter(alleleBins[i]).increment();
+				}
 			}
 
 		} else if (useCounts()) { // variantsAmount > 0
 			for (int i = 0; i < candidate.getAlternateAlleles().size(); i++) {
 				this.position++;
-				if (selectAlleles.contains(position + i))
+				if (getSelection().isSelected(position))
 					candidates.put(i, nextDouble() <= 0.5);
 			}
 
@@ -246,8 +557,33 @@ public class VCFSampler implements Iterator<VariantContext> {
 
 	}
 
+	private boolean useGenotypeFrequencies() {
+		return genotypeFrequencies;
+	}
+
+	/**
+	 * @return Increasing column indices of the {@link #getGenotypeSamples()}, <code>null</code> for all samples.
+	 */
+	private int[] getGenotypeSampleIndices() {
+		if (genotypeSamples == null)
+			return null;
+		if (genotypeSampleIndices == null) {
+			List<String> samples = parser.getFileHeader().getGenotypeSamples();
+			int[] indices = new int[genotypeSamples.size()];
+			for (int i = 0; i < indices.length; i++) {
+				indices[i] = samples.indexOf(genotypeSamples.get(i));
+				if (indices[i] < 0)
+					throw new IllegalArgumentException(
+							"Sample " + genotypeSamples.get(i) + " is not in the VCF file " + filePath + ".");
+			}
+			Arrays.sort(indices);
+			genotypeSampleIndices = indices;
+		}
+		return genotypeSampleIndices;
+	}
+
 	private boolean useAC() {
-		return getACIdentifier() != null && getANIdentifier() != null;
+		return !acIdentifiers.isEmpty() && !anIdentifiers.isEmpty();
 	}
 
 	private void addCandidateByHardyWeinberg(Map<Integer, Boolean> candidates, int i, double af) {
@@ -267,18 +603,121 @@ public class VCFSampler implements Iterator<VariantContext> {
 		return getVariantsAmount() > 0;
 	}
 
+	private boolean useBins() {
+		return bins != null;
+	}
+
+	private Counter getBinCounter(int bin) {
+		if (binCounters == null)
+			binCounters = new Counter[bins.size()];
+		if (binCounters[bin] == null)
+			binCounters[bin] = metrics.getCounter(name + ".bins." + bins.getName(bin) + ".selected");
+		return binCounters[bin];
+	}
+
 	private double nextDouble() {
 		if (random == null)
 			random = new Random();
 		return random.nextDouble();
 	}
 
+	private int nextInt(int bound) {
+		if (random == null)
+			random = new Random();
+		return random.nextInt(bound);
+	}
+
+	/**
+	 * @param random
+	 *            Random number generator of the genotypes and of the exact selection, e.g. with a seed to get the same
+	 *            output again.
+	 */
+	public void setRandom(Random random) {
+		this.random = random;
+	}
+
 	public void setProbability(double probability) {
 		this.probability = probability;
-		if (useCounts()) {
-			VCFAlternativeAlleleCounter counter = new VCFAlternativeAlleleCounter(filePath, getFilters());
-			setCounts(counter.getCounts());
+	}
+
+	/**
+	 * @return The exact selection of alternative alleles if {@link #getVariantsAmount()} is set. If not set before, the
+	 *         alleles of the file are counted (after filtering) on the first call and
+	 *         {@link #getVariantsAmount()} of them are selected uniformly, or by their {@link #getWeight()} if set.
+	 */
+	public IAlleleSelection getSelection() {
+		if (selection == null) {
+			VCFAlternativeAlleleCounter counter = new VCFAlternativeAlleleCounter(filePath, getFilters(), getIntervals());
+			counter.setInflateThreads(inflateThreads);
+			counter.setWeight(weight);
+			if (random == null)
+				random = new Random();
+			if (weight == null)
+				selection = new SequentialRandomSelection(getVariantsAmount(), counter.getCounts(), random);
+			else
+				selection = new WeightedAlleleSelection(getVariantsAmount(), counter.getWeights(), random);
+		}
+		return selection;
+	}
+
+	public VariantWeight getWeight() {
+		return weight;
+	}
+
+	/**
+	 * Selects the {@link #getVariantsAmount()} alleles by the weight of their variants instead of uniformly, see
+	 * {@link WeightedAlleleSelection}.
+	 * 
+	 * @param weight
+	 *            Weight of the variants, <code>null</code> for a uniform selection.
+	 */
+	public void setWeight(VariantWeight weight) {
+		this.weight = weight;
+	}
+
+	public void setSelection(IAlleleSelection selection) {
+		this.selection = selection;
+	}
+
+	/**
+	 * Selects exact counts of alleles per bin (e.g. {@link AlleleFrequencyBins}) instead of
+	 * {@link #getVariantsAmount()} alleles of the whole file. The achieved counts per bin are in the counters
+	 * <code>name.bins.bin.selected</code> of the {@link SIMdromMetrics}.
+	 * 
+	 * @param bins
+	 *            Bins with the number of alleles to select, <code>null</code> to select from the whole file.
+	 */
+	public void setBins(IAlleleBins bins) {
+		this.bins = bins;
+	}
+
+	public IAlleleBins getBins() {
+		return bins;
+	}
+
+	/**
+	 * @return The exact selection per bin if {@link #getBins()} are set. If not set
+	 *         before, the alleles of the file are counted per bin (after filtering) on the first call and the count of
+	 *         every bin is selected uniformly out of them.
+	 */
+	public BinnedAlleleSelection getBinnedSelection() {
+		if (binnedSelection == null) {
+			VCFAlternativeAlleleCounter counter = new VCFAlternativeAlleleCounter(filePath, getFilters(), getIntervals());
+			counter.setInflateThreads(inflateThreads);
+			counter.setBins(bins);
+			if (random == null)
+				random = new Random();
+			long[] counts = counter.getBinCounts();
+			List<IAlleleSelection> selections = new ArrayList<IAlleleSelection>(bins.size());
+			for (int i = 0; i < bins.size(); i++)
+				selections.add(new SequentialRandomSelection(bins.getCount(i), counts[i], random));
+			binnedSelection = new BinnedAlleleSelection(selections);
 		}
+		return binnedSelection;
+	}
+
+	public void setBinnedSelection(BinnedAlleleSelection binnedSelection) {
+		this.binnedSelection = binnedSelection;
 	}
 
 	public void setSample(String sample) {
@@ -296,32 +735,198 @@ public class VCFSampler implements Iterator<VariantContext> {
 	public VCFHeader getFileHeader() {
 
 		Set<VCFHeaderLine> set = new LinkedHashSet<VCFHeaderLine>();
-		set.addAll(parser.getFileHeader().getMetaDataInInputOrder());
+		set.addAll(infoProjection.project(parser.getFileHeader().getMetaDataInInputOrder()));
 		set.add(new VCFFormatHeaderLine("GT", 1, VCFHeaderLineType.String, "Genotype"));
 		return new VCFHeader(set, getSampleNames());
 	}
 
 	public ImmutableSet<String> getSampleNames() {
-		if (getSample() == null)
+		if (isSampled())
+			return ImmutableSet.copyOf(parser.getFileHeader().getGenotypeSamples());
+		if (isTrio())
+			return ImmutableSet.of(FATHER, MOTHER, CHILD);
+		if (getSample() == null) {
+			if (useMultiplePopulations())
+				return ImmutableSet.copyOf(getPopulations());
 			return ImmutableSet.<String> builder().add("Sampled").build();
+		}
 		return ImmutableSet.<String> builder().add(getSample()).build();
 	}
 
-	private void setCounts(int counts) {
-		List<Integer> randomAlleles = new ArrayList<Integer>(counts);
-		for (int i = 0; i < counts; i++) {
-			randomAlleles.add(i);
-		}
-		Collections.shuffle(randomAlleles);
-		this.selectAlleles = new ArrayList<Integer>(getVariantsAmount());
-		for (int i = 0; i < getVariantsAmount(); i++) {
-			this.selectAlleles.add(randomAlleles.get(i));
-		}
-		Collections.sort(this.selectAlleles);
+	/**
+	 * @return The AF identifiers, or if not set the AC identifiers, of the populations sampled in one pass. Empty if
+	 *         neither is set.
+	 */
+	public List<String> getPopulations() {
+		if (useAF())
+			return afIdentifiers;
+		if (useAC())
+			return acIdentifiers;
+		return Collections.emptyList();
+	}
+
+	private boolean useMultiplePopulations() {
+		return !useSample() && !isTrio() && getPopulations().size() > 1;
+	}
+
+	/**
+	 * @return <code>true</code> if the file is already sampled, see {@link #setSampled(boolean)}.
+	 */
+	public boolean isSampled() {
+		return sampled;
+	}
+
+	/**
+	 * If set, the file is an already sampled individual, e.g. an earlier output of SIMdrom. Its variants are passed
+	 * through with their genotypes (only filters and intervals are used), so new mutations can be spiked in without
+	 * sampling the background again.
+	 * 
+	 * @param sampled
+	 *            <code>true</code> to pass the variants through.
+	 */
+	public void setSampled(boolean sampled) {
+		this.sampled = sampled;
+	}
+
+	/**
+	 * @return <code>true</code> if the allele frequencies are counted from the genotypes, see
+	 *         {@link #setGenotypeFrequencies(boolean)}.
+	 */
+	public boolean isGenotypeFrequencies() {
+		return genotypeFrequencies;
+	}
+
+	/**
+	 * If set, the allele frequencies are AC/AN counted from the GT fields of every record (see
+	 * {@link GenotypeAlleleCounts}) instead of read from the INFO field, e.g. for a cohort VCF without AF or AC/AN. The
+	 * individual is sampled by Hardy-Weinberg like with an AF identifier. Cannot be combined with AF or AC/AN identifiers.
+	 * 
+	 * @param genotypeFrequencies
+	 *            <code>true</code> to count the allele frequencies from the genotypes.
+	 */
+	public void setGenotypeFrequencies(boolean genotypeFrequencies) {
+		this.genotypeFrequencies = genotypeFrequencies;
+	}
+
+	public List<String> getGenotypeSamples() {
+		return genotypeSamples;
+	}
+
+	/**
+	 * Sets the samples whose genotypes are counted for {@link #setGenotypeFrequencies(boolean)}. Default is
+	 * <code>null</code>, all samples of the file.
+	 */
+	public void setGenotypeSamples(List<String> genotypeSamples) {
+		this.genotypeSamples = genotypeSamples;
+		this.genotypeSampleIndices = null;
+	}
+
+	public int getDecodeThreads() {
+		return decodeThreads;
+	}
+
+	/**
+	 * Sets the number of threads to decode and filter the records of the whole file, see {@link ParallelVCFReader}.
+	 * Not used for a single sample or intervals. Default is 1, decoding on the calling thread.
+	 */
+	public void setDecodeThreads(int decodeThreads) {
+		this.decodeThreads = decodeThreads;
+	}
+
+	public int getInflateThreads() {
+		return inflateThreads;
+	}
+
+	/**
+	 * Sets the number of threads to inflate the blocks of a bgzipped file ahead of the parsing, see
+	 * {@link BGZFReadAheadInputStream}. Used for the whole file and for intervals. Default is 0, the blocks are
+	 * inflated by htsjdk on the calling thread.
+	 */
+	public void setInflateThreads(int inflateThreads) {
+		this.inflateThreads = inflateThreads;
+	}
+
+	public InfoProjection getInfoProjection() {
+		return infoProjection;
+	}
+
+	/**
+	 * Sets the INFO fields of the output variants and of the {@link #getFileHeader()}. Default is
+	 * {@link InfoProjection#ALL}.
+	 */
+	public void setInfoProjection(InfoProjection infoProjection) {
+		this.infoProjection = infoProjection;
+	}
+
+	/**
+	 * @return <code>true</code> if a trio is sampled, see {@link #setTrio(boolean)}.
+	 */
+	public boolean isTrio() {
+		return trio;
+	}
+
+	/**
+	 * If set, a trio ({@link #FATHER}, {@link #MOTHER}, {@link #CHILD}) is sampled in one pass. The parents are drawn
+	 * like a single individual using the first AF or AC/AN identifier, the genotype frequencies or the probability, the
+	 * child by Mendelian transmission. Cannot be combined with a single sample or exact variant counts.
+	 * 
+	 * @param trio
+	 *            <code>true</code> to sample a trio.
+	 */
+	public void setTrio(boolean trio) {
+		this.trio = trio;
+	}
+
+	/**
+	 * @return <code>true</code> if haplotypes are copied from the phased panel, see {@link #setHaplotypeCopying(boolean)}.
+	 */
+	public boolean isHaplotypeCopying() {
+		return haplotypeCopying;
+	}
+
+	/**
+	 * If set, one individual is sampled by copying two haplotypes of the phased genotypes of the file with
+	 * recombination switches (see {@link HaplotypeCopyingModel}) instead of drawing every site on its own. So the
+	 * linkage of the panel is kept. Cannot be combined with a single sample, a trio or allele frequencies.
+	 * 
+	 * @param haplotypeCopying
+	 *            <code>true</code> to copy haplotypes.
+	 */
+	public void setHaplotypeCopying(boolean haplotypeCopying) {
+		this.haplotypeCopying = haplotypeCopying;
+	}
+
+	public double getRecombinationRate() {
+		return recombinationRate;
+	}
+
+	/**
+	 * Sets the population scaled recombination rate per base pair of the {@link HaplotypeCopyingModel}. Default is
+	 * {@link HaplotypeCopyingModel#DEFAULT_RECOMBINATION_RATE}.
+	 */
+	public void setRecombinationRate(double recombinationRate) {
+		this.recombinationRate = recombinationRate;
 	}
 
 	public void setAFIdentifier(String afIdentifier) {
-		this.afIdentifier = afIdentifier;
+		setAFIdentifiers(toList(afIdentifier));
+	}
+
+	/**
+	 * Sample one individual per AF identifier in the same pass. Each one gets its own genotype column named like the
+	 * identifier.
+	 * 
+	 * @param afIdentifiers
+	 *            INFO identifiers of the allele frequencies, one per population.
+	 */
+	public void setAFIdentifiers(List<String> afIdentifiers) {
+		this.afIdentifiers = afIdentifiers;
+	}
+
+	private static List<String> toList(String identifier) {
+		if (identifier == null)
+			return Collections.emptyList();
+		return Collections.singletonList(identifier);
 	}
 
 	public void setVariantsAmount(int variantsAmount) {
@@ -333,7 +938,11 @@ public class VCFSampler implements Iterator<VariantContext> {
 	}
 
 	public String getAFIdentifier() {
-		return afIdentifier;
+		return afIdentifiers.isEmpty() ? null : afIdentifiers.get(0);
+	}
+
+	public List<String> getAFIdentifiers() {
+		return afIdentifiers;
 	}
 
 	private boolean useAF() {
@@ -346,6 +955,12 @@ public class VCFSampler implements Iterator<VariantContext> {
 
 	public void close() {
 		parser.close();
+		if (sampleReader != null)
+			sampleReader.close();
+		if (parallelReader != null)
+			parallelReader.close();
+		if (readAheadReader != null)
+			readAheadReader.close();
 	}
 
 	public ImmutableSet<IFilter> getFilters() {
@@ -355,19 +970,43 @@ public class VCFSampler implements Iterator<VariantContext> {
 	}
 
 	public String getACIdentifier() {
-		return acIdentifier;
+		return acIdentifiers.isEmpty() ? null : acIdentifiers.get(0);
 	}
 
 	public void setACIdentifier(String acIdentifier) {
-		this.acIdentifier = acIdentifier;
+		setACIdentifiers(toList(acIdentifier));
+	}
+
+	public List<String> getACIdentifiers() {
+		return acIdentifiers;
+	}
+
+	/**
+	 * Sample one individual per AC/AN pair in the same pass. Each one gets its own genotype column named like the AC
+	 * identifier.
+	 * 
+	 * @param acIdentifiers
+	 *            INFO identifiers of the ALT allele counts, one per population. Same order as the
+	 *            {@link #setANIdentifiers(List)}.
+	 */
+	public void setACIdentifiers(List<String> acIdentifiers) {
+		this.acIdentifiers = acIdentifiers;
 	}
 
 	public String getANIdentifier() {
-		return anIdentifier;
+		return anIdentifiers.isEmpty() ? null : anIdentifiers.get(0);
 	}
 
 	public void setANIdentifier(String anIdentifier) {
-		this.anIdentifier = anIdentifier;
+		setANIdentifiers(toList(anIdentifier));
+	}
+
+	public List<String> getANIdentifiers() {
+		return anIdentifiers;
+	}
+
+	public void setANIdentifiers(List<String> anIdentifiers) {
+		this.anIdentifiers = anIdentifiers;
 	}
 
 	public IntervalList getIntervals() {
@@ -380,8 +1019,32 @@ public class VCFSampler implements Iterator<VariantContext> {
 		this.intervals = intervals.uniqued().sorted();
 	}
 	
+	/**
+	 * @return Name of the sampler, used as prefix of its counters in the {@link SIMdromMetrics}.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	public void setName(String name) {
+		this.name = name;
+		this.inputCounter = metrics.getCounter(SIMdromMetrics.INPUT_RECORDS);
+		this.readCounter = metrics.getCounter(name + ".records.read");
+		this.homCounter = metrics.getCounter(name + ".alleles.hom");
+		this.hetCounter = metrics.getCounter(name + ".alleles.het");
+		this.queryCounter = metrics.getCounter(name + ".tabix.queries");
+		this.filterCounters.clear();
+	}
+
 	public void setDeNovoGenerator(DeNovoSampler deNovoGenerator) {
 		this.deNovoGenerator = deNovoGenerator;
 	}
 
+	/**
+	 * @return De novo variants that are merged into the output of this sampler, <code>null</code> if not set.
+	 */
+	public DeNovoSampler getDeNovoGenerator() {
+		return deNovoGenerator;
+	}
+
 }
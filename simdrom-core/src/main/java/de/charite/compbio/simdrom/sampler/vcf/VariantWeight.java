@@ -0,0 +1,70 @@
+package de.charite.compbio.simdrom.sampler.vcf;
+
+import java.util.Map;
+
+import com.google.common.collect.ImmutableTable;
+import com.google.common.collect.Table;
+
+import htsjdk.variant.variantcontext.VariantContext;
+
+/**
+ * Weight of a variant for the weighted exact selection, see {@link VCFSampler#setWeight(VariantWeight)}. The weight is
+ * a numeric INFO field, a table of weights per INFO value (e.g. <code>CLNREVSTAT</code> or <code>GENEINFO</code>) or
+ * the product of both. Variants without the INFO field get weight 0, values that are not in the table weight 1. If an
+ * INFO field has several values, the highest weight of them is used.
+ *
+ * @author <a href="mailto:max.schubach@charite.de">Max Schubach</a>
+ *
+ */
+public class VariantWeight {
+
+	private final String identifier;
+	private final ImmutableTable<String, String, Double> table;
+
+	/**
+	 * @param identifier
+	 *            INFO field with the weight, <code>null</code> if not used.
+	 * @param table
+	 *            Weights by INFO field (row) and value (column), <code>null</code> if not used.
+	 */
+	public VariantWeight(String identifier, Table<String, String, Double> table) {
+		this.identifier = identifier;
+		this.table = table == null ? ImmutableTable.<String, String, Double> of() : ImmutableTable.copyOf(table);
+	}
+
+	/**
+	 * @return Weight of the variant, not negative.
+	 */
+	public double getWeight(VariantContext vc) {
+		double weight = 1.0;
+		if (identifier != null)
+			weight = getNumber(vc, identifier);
+		for (Map.Entry<String, Map<String, Double>> field : table.rowMap().entrySet())
+			if (weight > 0.0)
+				weight *= getTableWeight(vc, field.getKey(), field.getValue());
+		return weight;
+	}
+
+	private static double getNumber(VariantContext vc, String identifier) {
+		double max = 0.0;
+		for (Object value : vc.getCommonInfo().getAttributeAsList(identifier)) {
+			try {
+				max = Math.max(max, Double.parseDouble(value.toString()));
+			} catch (NumberFormatException e) {
+				// missing value (.) has no weight
+			}
+		}
+		return max;
+	}
+
+	private static double getTableWeight(VariantContext vc, String field, Map<String, Double> weights) {
+		Double max = null;
+		for (Object value : vc.getCommonInfo().getAttributeAsList(field)) {
+			Double weight = weights.get(value.toString());
+			if (weight != null && (max == null || weight > max))
+				max = weight;
+		}
+		return max == null ? 1.0 : max;
+	}
+
+}
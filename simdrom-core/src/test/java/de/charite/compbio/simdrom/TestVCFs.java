@@ -0,0 +1,66 @@
+package de.charite.compbio.simdrom;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Random;
+
+/**
+ * Writes small multi-sample VCFs for the tests, with and without other FORMAT fields after GT, multi-allelic sites,
+ * missing alleles and haploid calls.
+ *
+ * @author <a href="mailto:max.schubach@charite.de">Max Schubach</a>
+ *
+ */
+public final class TestVCFs {
+
+	private static final String[] BASES = { "A", "C", "G", "T" };
+
+	private TestVCFs() {
+	}
+
+	/**
+	 * Writes a plain VCF with the samples <code>S0</code>, <code>S1</code>, ... on contig 1.
+	 */
+	public static File writeGenotypes(File file, int records, int samples, long seed) throws IOException {
+		Random random = new Random(seed);
+		PrintWriter writer = new PrintWriter(file, "UTF-8");
+		writer.println("##fileformat=VCFv4.2");
+		writer.println("##contig=<ID=1,length=100000000>");
+		writer.println("##INFO=<ID=AF,Number=A,Type=Float,Description=\"Allele frequency\">");
+		writer.println("##FORMAT=<ID=GT,Number=1,Type=String,Description=\"Genotype\">");
+		writer.println("##FORMAT=<ID=DP,Number=1,Type=Integer,Description=\"Depth\">");
+		StringBuilder line = new StringBuilder("#CHROM\tPOS\tID\tREF\tALT\tQUAL\tFILTER\tINFO\tFORMAT");
+		for (int i = 0; i < samples; i++)
+			line.append("\tS").append(i);
+		writer.println(line);
+		for (int r = 0; r < records; r++) {
+			int ref = random.nextInt(4);
+			int alts = random.nextInt(10) == 0 ? 2 : 1;
+			line = new StringBuilder();
+			line.append("1\t").append(10 * r + 1).append("\t.\t").append(BASES[ref]).append('\t');
+			for (int a = 1; a <= alts; a++)
+				line.append(a > 1 ? "," : "").append(BASES[(ref + a) % 4]);
+			line.append("\t.\tPASS\tAF=0.5");
+			if (alts > 1)
+				line.append(",0.1");
+			boolean depth = r % 3 != 0;
+			line.append(depth ? "\tGT:DP" : "\tGT");
+			for (int i = 0; i < samples; i++) {
+				String gt;
+				int kind = random.nextInt(20);
+				if (kind == 0)
+					gt = ".|.";
+				else if (kind == 1)
+					gt = Integer.toString(random.nextInt(alts + 1));
+				else
+					gt = random.nextInt(alts + 1) + "|" + random.nextInt(alts + 1);
+				line.append('\t').append(depth ? gt + ":" + random.nextInt(50) : gt);
+			}
+			writer.println(line);
+		}
+		writer.close();
+		return file;
+	}
+
+}
@@ -0,0 +1,52 @@
+package de.charite.compbio.simdrom.io.reader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+
+import java.io.File;
+import java.util.Iterator;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.charite.compbio.simdrom.TestVCFs;
+import de.charite.compbio.simdrom.sampler.vcf.UndecodedGenotypes;
+import htsjdk.variant.variantcontext.VariantContext;
+import htsjdk.variant.vcf.VCFFileReader;
+
+/**
+ * Checks that the records come in file order with undecoded genotypes that decode like the ones of a
+ * {@link VCFFileReader}.
+ *
+ * @author <a href="mailto:max.schubach@charite.de">Max Schubach</a>
+ *
+ */
+public class ParallelVCFReaderTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testLazyGenotypes() throws Exception {
+		File vcf = TestVCFs.writeGenotypes(folder.newFile("genotypes.vcf"), 2500, 5, 1);
+		VCFFileReader expected = new VCFFileReader(vcf, false);
+		ParallelVCFReader reader = new ParallelVCFReader(vcf.getPath(), expected.getFileHeader(), null, 3, "test");
+		Iterator<VariantContext> expectedIterator = expected.iterator();
+		int records = 0;
+		while (reader.hasNext()) {
+			VariantContext vc = reader.next();
+			VariantContext other = expectedIterator.next();
+			assertEquals(other.getStart(), vc.getStart());
+			assertNotNull("genotypes of record " + records + " are decoded", UndecodedGenotypes.getColumns(vc));
+			assertEquals(other.getGenotypes().toString(), vc.getGenotypes().toString());
+			records++;
+		}
+		assertFalse(expectedIterator.hasNext());
+		assertEquals(2500, records);
+		reader.close();
+		expected.close();
+	}
+
+}
@@ -0,0 +1,82 @@
+package de.charite.compbio.simdrom.sampler.haplotype;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.charite.compbio.simdrom.TestVCFs;
+import de.charite.compbio.simdrom.sampler.vcf.UndecodedGenotypes;
+import de.charite.compbio.simdrom.sampler.vcf.VCFSampler;
+import htsjdk.variant.variantcontext.VariantContext;
+import htsjdk.variant.vcf.VCFFileReader;
+
+/**
+ * Checks that the records of a sampler with several decode threads are read from the raw GT text like the decoded
+ * genotypes, without decoding them.
+ *
+ * @author <a href="mailto:max.schubach@charite.de">Max Schubach</a>
+ *
+ */
+public class PhasedAlleleReaderTest {
+
+	private static final int[] HAPLOTYPES = { 0, 1, 5, 6, 11, 3 };
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testRawGenotypesWithDecodeThreads() throws Exception {
+		File vcf = TestVCFs.writeGenotypes(folder.newFile("genotypes.vcf"), 2500, 6, 2);
+		VCFSampler sampler = new VCFSampler(vcf.getPath());
+		sampler.setDecodeThreads(3);
+		VCFFileReader decoded = new VCFFileReader(vcf, false);
+		Iterator<VariantContext> expected = decoded.iterator();
+		Iterator<VariantContext> records = sampler.getIterator();
+		while (records.hasNext()) {
+			VariantContext vc = records.next();
+			VariantContext other = expected.next();
+			// decoded, so the expected alleles come from the genotype objects
+			other.getGenotypes().size();
+			assertNotNull(UndecodedGenotypes.getColumns(vc));
+			assertArrayEquals(PhasedAlleleReader.getAlleles(other, HAPLOTYPES),
+					PhasedAlleleReader.getAlleles(vc, HAPLOTYPES));
+			// the raw text is read, the genotypes are still not decoded
+			assertNotNull(UndecodedGenotypes.getColumns(vc));
+		}
+		assertFalse(expected.hasNext());
+		decoded.close();
+		sampler.close();
+	}
+
+	@Test
+	public void testHaplotypeCopyingWithDecodeThreads() throws Exception {
+		File vcf = TestVCFs.writeGenotypes(folder.newFile("genotypes.vcf"), 2500, 6, 3);
+		String expected = copyHaplotypes(vcf, 1);
+		assertFalse(expected.isEmpty());
+		assertEquals(expected, copyHaplotypes(vcf, 3));
+	}
+
+	private String copyHaplotypes(File vcf, int decodeThreads) {
+		VCFSampler sampler = new VCFSampler(vcf.getPath());
+		sampler.setHaplotypeCopying(true);
+		sampler.setDecodeThreads(decodeThreads);
+		sampler.setRandom(new Random(4));
+		StringBuilder output = new StringBuilder();
+		while (sampler.hasNext()) {
+			VariantContext vc = sampler.next();
+			output.append(vc.getStart()).append(vc.getGenotype(0).getGenotypeString()).append('\n');
+		}
+		sampler.close();
+		return output.toString();
+	}
+
+}
@@ -0,0 +1,66 @@
+package de.charite.compbio.simdrom.sampler.selection;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks the quotas against the mean k * N_i / N and the variance k * (N_i / N) * (1 - N_i / N) * (N - k) / (N - 1)
+ * of the multivariate hypergeometric distribution.
+ *
+ * @author <a href="mailto:max.schubach@charite.de">Max Schubach</a>
+ *
+ */
+public class HypergeometricAllocationTest {
+
+	@Test
+	public void testEqualBlocksBelowThreshold() {
+		assertMoments(15, new long[] { 40, 40, 40, 40, 40 }, 400000, 1);
+	}
+
+	@Test
+	public void testUnequalBlocks() {
+		assertMoments(70, new long[] { 10, 500, 0, 250, 240 }, 100000, 2);
+		assertMoments(300, new long[] { 100, 400, 500 }, 100000, 3);
+	}
+
+	@Test
+	public void testAll() {
+		assertArrayEquals(new long[] { 3, 0, 5 }, HypergeometricAllocation.allocate(20, new long[] { 3, 0, 5 },
+				new Random(4)));
+	}
+
+	private void assertMoments(long k, long[] counts, int trials, long seed) {
+		Random random = new Random(seed);
+		long total = 0;
+		for (long count : counts)
+			total += count;
+		double[] sums = new double[counts.length];
+		double[] squares = new double[counts.length];
+		for (int trial = 0; trial < trials; trial++) {
+			long[] quotas = HypergeometricAllocation.allocate(k, counts, random);
+			long size = 0;
+			for (int i = 0; i < counts.length; i++) {
+				assertTrue(quotas[i] <= counts[i]);
+				sums[i] += quotas[i];
+				squares[i] += quotas[i] * quotas[i];
+				size += quotas[i];
+			}
+			assertEquals(k, size);
+		}
+		for (int i = 0; i < counts.length; i++) {
+			double p = (double) counts[i] / total;
+			double mean = k * p;
+			double variance = k * p * (1.0 - p) * (total - k) / (total - 1.0);
+			// the sample mean is within 5 standard errors
+			assertEquals("mean of block " + i, mean, sums[i] / trials, 5.0 * Math.sqrt(variance / trials) + 1e-9);
+			double sampleVariance = squares[i] / trials - (sums[i] / trials) * (sums[i] / trials);
+			assertEquals("variance of block " + i, variance, sampleVariance, 0.05 * variance + 1e-9);
+		}
+	}
+
+}
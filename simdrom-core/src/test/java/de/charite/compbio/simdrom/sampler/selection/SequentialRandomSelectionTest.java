@@ -0,0 +1,68 @@
+package de.charite.compbio.simdrom.sampler.selection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks that every allele is selected with probability k/N, also if k/N is just below 1/13 where the selection
+ * switches from Algorithm D to Algorithm A.
+ *
+ * @author <a href="mailto:max.schubach@charite.de">Max Schubach</a>
+ *
+ */
+public class SequentialRandomSelectionTest {
+
+	@Test
+	public void testUniformBelowThreshold() {
+		assertUniform(15, 200, 100000, 1);
+		assertUniform(70, 1000, 50000, 2);
+	}
+
+	@Test
+	public void testUniformAlgorithmD() {
+		assertUniform(5, 1000, 50000, 3);
+	}
+
+	@Test
+	public void testUniformAlgorithmA() {
+		assertUniform(50, 200, 50000, 4);
+	}
+
+	@Test
+	public void testAll() {
+		SequentialRandomSelection selection = new SequentialRandomSelection(20, 10, new Random(5));
+		assertEquals(10, selection.getSize());
+		for (long index = 0; index < 10; index++)
+			assertEquals(index, selection.nextIndex());
+		assertEquals(Long.MAX_VALUE, selection.nextIndex());
+	}
+
+	/**
+	 * Chi-squared test of the per-index selection counts, with a bound far above the expected value of about N (the
+	 * standard deviation is about sqrt(2N)).
+	 */
+	private void assertUniform(int k, int N, int trials, long seed) {
+		Random random = new Random(seed);
+		long[] counts = new long[N];
+		for (int trial = 0; trial < trials; trial++) {
+			SequentialRandomSelection selection = new SequentialRandomSelection(k, N, random);
+			int size = 0;
+			for (long index = selection.nextIndex(); index != Long.MAX_VALUE; index = selection.nextIndex()) {
+				assertTrue(index < N);
+				counts[(int) index]++;
+				size++;
+			}
+			assertEquals(k, size);
+		}
+		double expected = (double) trials * k / N;
+		double chiSquared = 0.0;
+		for (long count : counts)
+			chiSquared += (count - expected) * (count - expected) / expected;
+		assertTrue("chi-squared " + chiSquared + " on " + (N - 1) + " df", chiSquared < N + 6 * Math.sqrt(2.0 * N));
+	}
+
+}
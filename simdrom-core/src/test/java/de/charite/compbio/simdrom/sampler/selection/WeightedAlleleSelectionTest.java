@@ -0,0 +1,64 @@
+package de.charite.compbio.simdrom.sampler.selection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks the selection against drawing the alleles one after another by their weights without replacement.
+ *
+ * @author <a href="mailto:max.schubach@charite.de">Max Schubach</a>
+ *
+ */
+public class WeightedAlleleSelectionTest {
+
+	@Test
+	public void testInclusionProbabilities() {
+		double[] weights = { 1.0, 2.0, 0.0, 3.0, 4.0 };
+		// probability to draw an allele first or second by weight
+		double sum = 10.0;
+		double[] expected = new double[weights.length];
+		for (int i = 0; i < weights.length; i++)
+			for (int j = 0; j < weights.length; j++)
+				if (i != j) {
+					double p = weights[i] / sum * weights[j] / (sum - weights[i]);
+					expected[i] += p;
+					expected[j] += p;
+				}
+		int trials = 200000;
+		long[] counts = new long[weights.length];
+		Random random = new Random(1);
+		for (int trial = 0; trial < trials; trial++) {
+			WeightedAlleleSelection selection = new WeightedAlleleSelection(2, weights, random);
+			assertEquals(2, selection.getSize());
+			for (int i = 0; i < weights.length; i++)
+				if (selection.isSelected(i))
+					counts[i]++;
+		}
+		for (int i = 0; i < weights.length; i++)
+			assertEquals("allele " + i, expected[i], (double) counts[i] / trials,
+					5.0 * Math.sqrt(expected[i] * (1.0 - expected[i]) / trials) + 1e-9);
+	}
+
+	@Test
+	public void testAllPositive() {
+		WeightedAlleleSelection selection = new WeightedAlleleSelection(5, new double[] { 0.5, 0.0, 2.0 },
+				new Random(2));
+		assertEquals(2, selection.getSize());
+		assertTrue(selection.isSelected(0));
+		assertFalse(selection.isSelected(1));
+		assertTrue(selection.isSelected(2));
+	}
+
+	@Test
+	public void testNone() {
+		WeightedAlleleSelection selection = new WeightedAlleleSelection(0, new double[] { 1.0, 1.0 }, new Random(3));
+		assertEquals(0, selection.getSize());
+		assertFalse(selection.isSelected(0));
+	}
+
+}
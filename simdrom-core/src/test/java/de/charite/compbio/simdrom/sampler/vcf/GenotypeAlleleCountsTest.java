@@ -0,0 +1,80 @@
+package de.charite.compbio.simdrom.sampler.vcf;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.charite.compbio.simdrom.TestVCFs;
+import htsjdk.variant.variantcontext.VariantContext;
+import htsjdk.variant.vcf.VCFFileReader;
+
+/**
+ * Checks that the alleles of the records of a sampler with several decode threads are counted from the raw GT text like
+ * from the decoded genotypes, without decoding them.
+ *
+ * @author <a href="mailto:max.schubach@charite.de">Max Schubach</a>
+ *
+ */
+public class GenotypeAlleleCountsTest {
+
+	private static final int[] SAMPLES = { 1, 2, 4 };
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testRawGenotypesWithDecodeThreads() throws Exception {
+		File vcf = TestVCFs.writeGenotypes(folder.newFile("genotypes.vcf"), 2500, 6, 5);
+		VCFSampler sampler = new VCFSampler(vcf.getPath());
+		sampler.setDecodeThreads(3);
+		VCFFileReader decoded = new VCFFileReader(vcf, false);
+		Iterator<VariantContext> expected = decoded.iterator();
+		Iterator<VariantContext> records = sampler.getIterator();
+		while (records.hasNext()) {
+			VariantContext vc = records.next();
+			VariantContext other = expected.next();
+			// decoded, so the expected counts come from the genotype objects
+			other.getGenotypes().size();
+			assertNotNull(UndecodedGenotypes.getColumns(vc));
+			assertArrayEquals(GenotypeAlleleCounts.count(other, null), GenotypeAlleleCounts.count(vc, null));
+			assertArrayEquals(GenotypeAlleleCounts.count(other, SAMPLES), GenotypeAlleleCounts.count(vc, SAMPLES));
+			// the raw text is counted, the genotypes are still not decoded
+			assertNotNull(UndecodedGenotypes.getColumns(vc));
+		}
+		assertFalse(expected.hasNext());
+		decoded.close();
+		sampler.close();
+	}
+
+	@Test
+	public void testGenotypeFrequenciesWithDecodeThreads() throws Exception {
+		File vcf = TestVCFs.writeGenotypes(folder.newFile("genotypes.vcf"), 2500, 6, 6);
+		String expected = sample(vcf, 1);
+		assertFalse(expected.isEmpty());
+		assertEquals(expected, sample(vcf, 3));
+	}
+
+	private String sample(File vcf, int decodeThreads) {
+		VCFSampler sampler = new VCFSampler(vcf.getPath());
+		sampler.setGenotypeFrequencies(true);
+		sampler.setDecodeThreads(decodeThreads);
+		sampler.setRandom(new Random(7));
+		StringBuilder output = new StringBuilder();
+		while (sampler.hasNext()) {
+			VariantContext vc = sampler.next();
+			output.append(vc.getStart()).append(vc.getGenotype(0).getGenotypeString()).append('\n');
+		}
+		sampler.close();
+		return output.toString();
+	}
+
+}